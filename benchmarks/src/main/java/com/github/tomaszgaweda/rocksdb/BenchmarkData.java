@@ -0,0 +1,64 @@
+package com.github.tomaszgaweda.rocksdb;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.stream.Stream;
+
+/**
+ * Keys, values and temporary databases shared by the benchmarks.
+ */
+final class BenchmarkData {
+
+    private BenchmarkData() {}
+
+    /**
+     * Returns key with given index, padded to given length, so keys of all indexes have the same size.
+     */
+    static String key(int index, int keySize) {
+        String suffix = Integer.toString(index);
+        return "k".repeat(Math.max(0, keySize - suffix.length())) + suffix;
+    }
+
+    /**
+     * Returns random, incompressible value of given size.
+     */
+    static byte[] value(int valueSize, Random random) {
+        var value = new byte[valueSize];
+        random.nextBytes(value);
+        return value;
+    }
+
+    /**
+     * Returns {@link RocksDbMapStore#SERIALIZER_PARAM} value for given benchmark serializer name.
+     */
+    static String serializerParam(String serializer) {
+        return switch (serializer) {
+            case SerializationUtils.JAVA_SERIALIZER -> SerializationUtils.JAVA_SERIALIZER;
+            case SerializationUtils.HAZELCAST_SERIALIZER -> StandaloneHazelcastSerializer.class.getName();
+            default -> throw new IllegalArgumentException("unknown serializer " + serializer);
+        };
+    }
+
+    static File createTempDirectory() {
+        try {
+            return Files.createTempDirectory("rocksdb-benchmark").toFile();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    static void deleteRecursively(File directory) {
+        try (Stream<Path> paths = Files.walk(directory.toPath())) {
+            paths.sorted(Comparator.reverseOrder())
+                    .map(Path::toFile)
+                    .forEach(File::delete);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package com.github.tomaszgaweda.rocksdb;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Lookup of an already opened database in {@link RocksDatabaseContainer}, done by every map store on init.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ContainerBenchmark {
+
+    private final RocksDbMapStore<String, byte[]> store = new RocksDbMapStore<>();
+    private final Properties properties = new Properties();
+    private File directory;
+    private String path;
+
+    @Setup
+    public void setUp() {
+        directory = BenchmarkData.createTempDirectory();
+        path = directory.getAbsolutePath();
+        RocksDatabaseContainer.getRocksDb(path, true, properties, store);
+    }
+
+    @TearDown
+    public void tearDown() {
+        RocksDatabaseContainer.dispose(path, store);
+        BenchmarkData.deleteRecursively(directory);
+    }
+
+    @Benchmark
+    public RocksDatabase getRocksDb() {
+        return RocksDatabaseContainer.getRocksDb(path, true, properties, store);
+    }
+}
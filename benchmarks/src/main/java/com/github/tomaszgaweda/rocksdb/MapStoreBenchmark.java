@@ -0,0 +1,128 @@
+package com.github.tomaszgaweda.rocksdb;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import static com.github.tomaszgaweda.rocksdb.RocksDbMapStore.*;
+
+/**
+ * Hot paths of {@link RocksDbMapStore}, run against a fresh database in a temporary directory.
+ *
+ * Number of threads is set with JMH's {@code -t} option, e.g. {@code java -jar target/benchmarks.jar -t 4}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class MapStoreBenchmark {
+
+    /**
+     * Number of keys stored before the measurement, from which loaded keys are picked.
+     */
+    private static final int KEY_COUNT = 100_000;
+
+    @Param({"16", "64"})
+    public int keySize;
+
+    @Param({"100", "4096"})
+    public int valueSize;
+
+    @Param({"100"})
+    public int batchSize;
+
+    @Param({"java", "hazelcast"})
+    public String serializer;
+
+    private File directory;
+    private RocksDbMapStore<String, byte[]> mapStore;
+    private byte[] value;
+
+    @State(Scope.Thread)
+    public static class ThreadState {
+        private final Map<String, byte[]> batch = new HashMap<>();
+        private final List<String> keys = new ArrayList<>();
+
+        @Setup(Level.Invocation)
+        public void nextBatch(MapStoreBenchmark benchmark) {
+            batch.clear();
+            keys.clear();
+            for (int i = 0; i < benchmark.batchSize; i++) {
+                String key = benchmark.randomKey();
+                batch.put(key, benchmark.value);
+                keys.add(key);
+            }
+        }
+    }
+
+    @Setup
+    public void setUp() {
+        directory = BenchmarkData.createTempDirectory();
+        var properties = new Properties();
+        properties.setProperty(DATABASE_PATH_PARAM, directory.getAbsolutePath());
+        properties.setProperty(VALUE_CLASS_PARAM, byte[].class.getName());
+        properties.setProperty(KEY_CLASS_PARAM, String.class.getName());
+        properties.setProperty(SERIALIZER_PARAM, BenchmarkData.serializerParam(serializer));
+        mapStore = new RocksDbMapStore<>();
+        mapStore.init(null, properties, "benchmark");
+
+        value = BenchmarkData.value(valueSize, new Random(42));
+        Map<String, byte[]> entries = new HashMap<>();
+        for (int i = 0; i < KEY_COUNT; i++) {
+            entries.put(BenchmarkData.key(i, keySize), value);
+            if (entries.size() == 1000) {
+                mapStore.storeAll(entries);
+                entries.clear();
+            }
+        }
+        mapStore.storeAll(entries);
+    }
+
+    @TearDown
+    public void tearDown() {
+        mapStore.destroy();
+        BenchmarkData.deleteRecursively(directory);
+    }
+
+    private String randomKey() {
+        return BenchmarkData.key(ThreadLocalRandom.current().nextInt(KEY_COUNT), keySize);
+    }
+
+    @Benchmark
+    public void store() {
+        mapStore.store(randomKey(), value);
+    }
+
+    @Benchmark
+    public void storeAll(ThreadState state) {
+        mapStore.storeAll(state.batch);
+    }
+
+    @Benchmark
+    public byte[] load() {
+        return mapStore.load(randomKey());
+    }
+
+    @Benchmark
+    public Map<String, byte[]> loadAll(ThreadState state) {
+        return mapStore.loadAll(state.keys);
+    }
+
+    /**
+     * Writes tombstones of existing and already deleted keys; the set of keys is not restored during measurement.
+     */
+    @Benchmark
+    public void delete() {
+        mapStore.delete(randomKey());
+    }
+
+    @Benchmark
+    public void deleteAll(ThreadState state) {
+        mapStore.deleteAll(state.keys);
+    }
+}
@@ -0,0 +1,45 @@
+package com.github.tomaszgaweda.rocksdb;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serialization of map values on its own, without RocksDB.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SerializationBenchmark {
+
+    @Param({"java", "hazelcast"})
+    public String serializer;
+
+    @Param({"100", "4096"})
+    public int valueSize;
+
+    private Serializer instance;
+    private byte[] value;
+    private byte[] serialized;
+
+    @Setup
+    public void setUp() {
+        instance = SerializationUtils.createSerializer(BenchmarkData.serializerParam(serializer), null);
+        value = BenchmarkData.value(valueSize, new Random(42));
+        serialized = instance.toBytes(value);
+    }
+
+    @Benchmark
+    public byte[] toBytes() {
+        return instance.toBytes(value);
+    }
+
+    @Benchmark
+    public byte[] fromBytes() {
+        return instance.fromBytes(serialized, byte[].class);
+    }
+}
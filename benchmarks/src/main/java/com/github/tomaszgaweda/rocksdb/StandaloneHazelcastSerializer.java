@@ -0,0 +1,24 @@
+package com.github.tomaszgaweda.rocksdb;
+
+import com.hazelcast.internal.serialization.impl.DefaultSerializationServiceBuilder;
+
+import javax.annotation.Nonnull;
+
+/**
+ * {@link HazelcastSerializer} backed by a standalone serialization service, so it can be benchmarked without
+ * starting a Hazelcast member.
+ */
+public final class StandaloneHazelcastSerializer implements Serializer {
+
+    private final Serializer delegate = new HazelcastSerializer(new DefaultSerializationServiceBuilder().build());
+
+    @Override
+    public byte[] toBytes(@Nonnull Object value) {
+        return delegate.toBytes(value);
+    }
+
+    @Override
+    public <V> V fromBytes(@Nonnull byte[] bytes, @Nonnull Class<V> valueClass) {
+        return delegate.fromBytes(bytes, valueClass);
+    }
+}
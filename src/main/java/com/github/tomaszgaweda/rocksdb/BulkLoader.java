@@ -0,0 +1,272 @@
+package com.github.tomaszgaweda.rocksdb;
+
+import org.rocksdb.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nonnull;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Loads large amount of entries into a map without going through memtables, WAL and compactions.
+ *
+ * Entries are read from the input in shards of given size; every shard is serialized, sorted and written to its own
+ * SST file with {@link SstFileWriter} by one of the loader's threads, while the input thread reads the next shards.
+ * If key ranges of the shard files do not overlap (e.g. the input is sorted), they are ingested as they are.
+ * Otherwise, the sorted shard files are merged into files with consecutive key ranges of about the target file size
+ * of the column family, keeping the entry of the latest shard of entries with equal keys. Either way, all files are
+ * attached to the column family with a single {@code ingestExternalFile} call, usually straight to the bottommost
+ * level, so the data is written to the database once, without L0 files and compactions.
+ *
+ * At most {@code parallelism + 1} shards are kept in memory at the same time; the merge holds only a block of every
+ * shard file.
+ */
+final class BulkLoader {
+
+    private static final Logger log = LoggerFactory.getLogger(BulkLoader.class);
+
+    private final RocksDB db;
+    private final RocksMap map;
+    private final ColumnFamilyOptions columnFamilyOptions;
+    private final File workDirectory;
+    private final int shardSize;
+    private final int parallelism;
+
+    private record Shard(File file, byte[] smallestKey, byte[] largestKey) {}
+
+    /**
+     * Position of the merge in a single shard file.
+     *
+     * @param index index of the shard in input order; entries of later shards win.
+     */
+    private record Run(int index, SstFileReaderIterator iterator) {}
+
+    /**
+     * Orders runs by their current key, and runs with equal keys from the latest shard.
+     */
+    private static final Comparator<Run> RUN_ORDER = (a, b) -> {
+        int byKey = Arrays.compareUnsigned(a.iterator().key(), b.iterator().key());
+        return byKey != 0 ? byKey : Integer.compare(b.index(), a.index());
+    };
+
+    /**
+     * @param columnFamilyOptions options of the map's column family, so files use the same table format
+     *                            and compression.
+     * @param workDirectory directory for the SST files; should be on the same file system as the database, so files
+     *                      are moved instead of copied.
+     */
+    BulkLoader(@Nonnull RocksDB db, @Nonnull RocksMap map, @Nonnull ColumnFamilyOptions columnFamilyOptions,
+               @Nonnull File workDirectory, int shardSize, int parallelism) {
+        if (shardSize <= 0 || parallelism <= 0) {
+            throw new IllegalArgumentException("shard size and parallelism must be positive");
+        }
+        this.db = db;
+        this.map = map;
+        this.columnFamilyOptions = columnFamilyOptions;
+        this.workDirectory = workDirectory;
+        this.shardSize = shardSize;
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Loads all entries of the iterator, returns number of loaded entries.
+     */
+    long load(@Nonnull Iterator<? extends Map.Entry<?, ?>> entries) {
+        ExecutorService executor = Executors.newFixedThreadPool(parallelism, runnable -> {
+            var thread = new Thread(runnable, "rocksdb-bulkLoad-" + map.name());
+            thread.setDaemon(true);
+            return thread;
+        });
+        var inFlight = new Semaphore(parallelism);
+        List<Future<Shard>> shards = new ArrayList<>();
+        long count = 0;
+        try (var dbOptions = new DBOptions();
+             var options = new Options(dbOptions, columnFamilyOptions);
+             var envOptions = new EnvOptions()) {
+            // writers must finish before the options are closed
+            try {
+                Files.createDirectories(workDirectory.toPath());
+                while (entries.hasNext()) {
+                    List<Map.Entry<?, ?>> shard = new ArrayList<>(Math.min(shardSize, 1024));
+                    while (shard.size() < shardSize && entries.hasNext()) {
+                        shard.add(entries.next());
+                    }
+                    count += shard.size();
+                    File file = new File(workDirectory, "shard-" + shards.size() + ".sst");
+                    inFlight.acquire();
+                    shards.add(executor.submit(() -> {
+                        try {
+                            return writeShard(shard, file, options, envOptions);
+                        } finally {
+                            inFlight.release();
+                        }
+                    }));
+                }
+                List<Shard> written = new ArrayList<>(shards.size());
+                for (Future<Shard> shard : shards) {
+                    written.add(shard.get());
+                }
+                ingest(written, options, envOptions);
+                log.info("bulk loaded {} entries in {} files into {}", count, written.size(), map);
+                return count;
+            } finally {
+                shards.forEach(shard -> shard.cancel(true));
+                executor.shutdownNow();
+                awaitTermination(executor);
+            }
+        } catch (IOException | RocksDBException e) {
+            throw new IllegalStateException("error bulk loading entries into " + map, e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("error bulk loading entries into " + map, e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("interrupted when bulk loading entries into " + map, e);
+        } finally {
+            deleteWorkDirectory();
+        }
+    }
+
+    private Shard writeShard(List<Map.Entry<?, ?>> entries, File file, Options options, EnvOptions envOptions)
+            throws RocksDBException {
+        List<byte[][]> serialized = new ArrayList<>(entries.size());
+        for (Map.Entry<?, ?> entry : entries) {
+            serialized.add(new byte[][]{map.keyBytes(entry.getKey()), map.valueBytes(entry.getValue())});
+        }
+        // sort is stable, so the last of equal keys is the latest entry
+        serialized.sort((a, b) -> Arrays.compareUnsigned(a[0], b[0]));
+        try (var writer = new SstFileWriter(envOptions, options)) {
+            writer.open(file.getAbsolutePath());
+            for (int i = 0; i < serialized.size(); i++) {
+                byte[][] entry = serialized.get(i);
+                if (i + 1 < serialized.size() && Arrays.equals(entry[0], serialized.get(i + 1)[0])) {
+                    continue;
+                }
+                writer.put(entry[0], entry[1]);
+            }
+            writer.finish();
+        }
+        return new Shard(file, serialized.get(0)[0], serialized.get(serialized.size() - 1)[0]);
+    }
+
+    private void ingest(List<Shard> shards, Options options, EnvOptions envOptions) throws RocksDBException {
+        if (shards.isEmpty()) {
+            return;
+        }
+        List<File> files = overlap(shards)
+                ? merge(shards, options, envOptions)
+                : shards.stream().map(Shard::file).toList();
+        try (var ingestOptions = new IngestExternalFileOptions().setMoveFiles(true)) {
+            db.ingestExternalFile(map.columnFamily(), files.stream().map(File::getAbsolutePath).toList(),
+                    ingestOptions);
+        }
+    }
+
+    /**
+     * Merges sorted shard files into new files with consecutive key ranges, returns the new files.
+     */
+    private List<File> merge(List<Shard> shards, Options options, EnvOptions envOptions) throws RocksDBException {
+        List<SstFileReader> readers = new ArrayList<>(shards.size());
+        List<SstFileReaderIterator> iterators = new ArrayList<>(shards.size());
+        List<File> merged = new ArrayList<>();
+        try (var readOptions = new ReadOptions().setFillCache(false)) {
+            var queue = new PriorityQueue<>(RUN_ORDER);
+            for (int i = 0; i < shards.size(); i++) {
+                var reader = new SstFileReader(options);
+                readers.add(reader);
+                reader.open(shards.get(i).file().getAbsolutePath());
+                var iterator = reader.newIterator(readOptions);
+                iterators.add(iterator);
+                iterator.seekToFirst();
+                advance(new Run(i, iterator), queue, false);
+            }
+            SstFileWriter writer = null;
+            try {
+                while (!queue.isEmpty()) {
+                    Run latest = queue.poll();
+                    byte[] key = latest.iterator().key();
+                    if (writer == null) {
+                        var file = new File(workDirectory, "merged-" + merged.size() + ".sst");
+                        writer = new SstFileWriter(envOptions, options);
+                        writer.open(file.getAbsolutePath());
+                        merged.add(file);
+                    }
+                    writer.put(key, latest.iterator().value());
+                    advance(latest, queue, true);
+                    // older entries with the same key are overwritten
+                    while (!queue.isEmpty() && Arrays.equals(queue.peek().iterator().key(), key)) {
+                        advance(queue.poll(), queue, true);
+                    }
+                    if (writer.fileSize() >= options.targetFileSizeBase()) {
+                        writer.finish();
+                        writer.close();
+                        writer = null;
+                    }
+                }
+                if (writer != null) {
+                    writer.finish();
+                }
+            } finally {
+                if (writer != null) {
+                    writer.close();
+                }
+            }
+        } finally {
+            iterators.forEach(SstFileReaderIterator::close);
+            readers.forEach(SstFileReader::close);
+        }
+        return merged;
+    }
+
+    /**
+     * Moves the run to its next entry, if requested, and puts it back in the queue unless it's exhausted.
+     */
+    private static void advance(Run run, PriorityQueue<Run> queue, boolean next) throws RocksDBException {
+        if (next) {
+            run.iterator().next();
+        }
+        if (run.iterator().isValid()) {
+            queue.add(run);
+        } else {
+            run.iterator().status();
+        }
+    }
+
+    private static boolean overlap(List<Shard> shards) {
+        List<Shard> sorted = new ArrayList<>(shards);
+        sorted.sort((a, b) -> Arrays.compareUnsigned(a.smallestKey(), b.smallestKey()));
+        for (int i = 1; i < sorted.size(); i++) {
+            if (Arrays.compareUnsigned(sorted.get(i - 1).largestKey(), sorted.get(i).smallestKey()) >= 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static void awaitTermination(ExecutorService executor) {
+        try {
+            while (!executor.awaitTermination(1, TimeUnit.MINUTES)) {
+                log.info("waiting for bulk load threads to finish");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void deleteWorkDirectory() {
+        File[] files = workDirectory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                if (!file.delete()) {
+                    log.warn("cannot delete bulk load file {}", file);
+                }
+            }
+        }
+        if (!workDirectory.delete() && workDirectory.exists()) {
+            log.warn("cannot delete bulk load directory {}", workDirectory);
+        }
+    }
+}
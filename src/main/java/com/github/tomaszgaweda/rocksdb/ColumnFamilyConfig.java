@@ -0,0 +1,241 @@
+package com.github.tomaszgaweda.rocksdb;
+
+import org.rocksdb.*;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.*;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+
+import static com.github.tomaszgaweda.rocksdb.RocksDbMapStore.*;
+
+/**
+ * Tuning of a single column family, that is of a single map stored in the database.
+ *
+ * Write buffer and blob file settings (except blob compression) can be changed for already existing column family;
+ * other settings are used only when column family is created or opened.
+ *
+ * By default upper levels, which are rewritten often, are compressed with LZ4 and the bottommost level
+ * with ZSTD. Config of every column family is remembered next to the database (see
+ * {@link #store}), so column families that already exist are opened with the config they were last used with.
+ */
+final class ColumnFamilyConfig {
+
+    /**
+     * Prefix of all map store properties that belong to the column family config.
+     */
+    static final String PROPERTY_PREFIX = "rocksdb.columnFamily.";
+
+    private final Properties properties = new Properties();
+    private final long writeBufferSize;
+    private final int maxWriteBufferNumber;
+    private final CompactionStyle compactionStyle;
+    private final double bloomFilterBitsPerKey;
+    private final boolean partitionPrefix;
+    private final long ttlSeconds;
+    private final KeyEncoding keyEncoding;
+    private final CompressionType compression;
+    private final List<CompressionType> compressionPerLevel;
+    private final CompressionType bottommostCompression;
+    private final int dictionaryBytes;
+    private final int zstdTrainingBytes;
+    private final boolean blobFiles;
+    private final long minBlobSize;
+    private final long blobFileSize;
+    private final CompressionType blobCompression;
+    private final boolean blobGarbageCollection;
+    private final double blobGarbageCollectionAgeCutoff;
+
+    /**
+     * Creates config with default values of all parameters.
+     */
+    ColumnFamilyConfig() {
+        this(new Properties());
+    }
+
+    /**
+     * Creates config from the map store properties; missing values are replaced with defaults.
+     */
+    ColumnFamilyConfig(@Nonnull Properties properties) {
+        for (String name : properties.stringPropertyNames()) {
+            if (name.startsWith(PROPERTY_PREFIX)) {
+                this.properties.setProperty(name, properties.getProperty(name));
+            }
+        }
+        this.writeBufferSize = Long.parseLong(properties.getProperty(WRITE_BUFFER_SIZE_PARAM,
+                WRITE_BUFFER_SIZE_DEFAULT));
+        this.maxWriteBufferNumber = Integer.parseInt(properties.getProperty(MAX_WRITE_BUFFER_NUMBER_PARAM,
+                MAX_WRITE_BUFFER_NUMBER_DEFAULT));
+        this.compactionStyle = CompactionStyle.valueOf(properties.getProperty(COMPACTION_STYLE_PARAM,
+                COMPACTION_STYLE_DEFAULT));
+        this.bloomFilterBitsPerKey = Double.parseDouble(properties.getProperty(BLOOM_FILTER_BITS_PARAM,
+                BLOOM_FILTER_BITS_DEFAULT));
+        this.partitionPrefix = Boolean.parseBoolean(properties.getProperty(PARTITION_PREFIX_PARAM,
+                PARTITION_PREFIX_DEFAULT));
+        this.ttlSeconds = Long.parseLong(properties.getProperty(TTL_SECONDS_PARAM, TTL_SECONDS_DEFAULT));
+        if (ttlSeconds < 0) {
+            throw new IllegalArgumentException("TTL must not be negative, was " + ttlSeconds);
+        }
+        this.keyEncoding = KeyEncoding.valueOf(properties.getProperty(KEY_ENCODING_PARAM, KEY_ENCODING_DEFAULT));
+        this.compression = CompressionType.valueOf(properties.getProperty(COMPRESSION_PARAM, COMPRESSION_DEFAULT));
+        this.compressionPerLevel = Arrays.stream(properties.getProperty(COMPRESSION_PER_LEVEL_PARAM,
+                        COMPRESSION_PER_LEVEL_DEFAULT).split(","))
+                .map(String::trim)
+                .filter(name -> !name.isEmpty())
+                .map(CompressionType::valueOf)
+                .toList();
+        this.bottommostCompression = CompressionType.valueOf(properties.getProperty(BOTTOMMOST_COMPRESSION_PARAM,
+                BOTTOMMOST_COMPRESSION_DEFAULT));
+        this.dictionaryBytes = Integer.parseInt(properties.getProperty(COMPRESSION_DICTIONARY_BYTES_PARAM,
+                COMPRESSION_DICTIONARY_BYTES_DEFAULT));
+        int trainingBytes = Integer.parseInt(properties.getProperty(ZSTD_TRAINING_BYTES_PARAM,
+                ZSTD_TRAINING_BYTES_DEFAULT));
+        this.zstdTrainingBytes = trainingBytes > 0 ? trainingBytes : (int) Math.min(Integer.MAX_VALUE,
+                100L * dictionaryBytes);
+        this.blobFiles = Boolean.parseBoolean(properties.getProperty(BLOB_FILES_PARAM, BLOB_FILES_DEFAULT));
+        this.minBlobSize = Long.parseLong(properties.getProperty(MIN_BLOB_SIZE_PARAM, MIN_BLOB_SIZE_DEFAULT));
+        this.blobFileSize = Long.parseLong(properties.getProperty(BLOB_FILE_SIZE_PARAM, BLOB_FILE_SIZE_DEFAULT));
+        this.blobCompression = CompressionType.valueOf(properties.getProperty(BLOB_COMPRESSION_PARAM,
+                BLOB_COMPRESSION_DEFAULT));
+        this.blobGarbageCollection = Boolean.parseBoolean(properties.getProperty(BLOB_GC_PARAM, BLOB_GC_DEFAULT));
+        this.blobGarbageCollectionAgeCutoff = Double.parseDouble(properties.getProperty(BLOB_GC_AGE_CUTOFF_PARAM,
+                BLOB_GC_AGE_CUTOFF_DEFAULT));
+        if (blobGarbageCollectionAgeCutoff < 0 || blobGarbageCollectionAgeCutoff > 1) {
+            throw new IllegalArgumentException("blob garbage collection age cutoff must be between 0 and 1, was "
+                    + blobGarbageCollectionAgeCutoff);
+        }
+    }
+
+    /**
+     * Loads config stored by {@link #store}; returns default config if there's no such file.
+     */
+    static ColumnFamilyConfig load(@Nonnull File file) {
+        var properties = new Properties();
+        if (file.exists()) {
+            try (var reader = new FileReader(file)) {
+                properties.load(reader);
+            } catch (IOException e) {
+                throw new IllegalStateException("error reading column family config " + file, e);
+            }
+        }
+        return new ColumnFamilyConfig(properties);
+    }
+
+    /**
+     * Stores the config in given file.
+     */
+    void store(@Nonnull File file) {
+        try (var writer = new FileWriter(file)) {
+            properties.store(writer, "column family config of RocksDB Hazelcast connector");
+        } catch (IOException e) {
+            throw new IllegalStateException("error writing column family config " + file, e);
+        }
+    }
+
+    /**
+     * Returns copy of the properties the config was created from.
+     */
+    Properties toProperties() {
+        var copy = new Properties();
+        copy.putAll(properties);
+        return copy;
+    }
+
+    /**
+     * Returns true if keys of the column family are prefixed with partition id.
+     */
+    boolean partitionPrefix() {
+        return partitionPrefix;
+    }
+
+    /**
+     * Returns time to live of entries in seconds; 0 if entries do not expire.
+     */
+    long ttlSeconds() {
+        return ttlSeconds;
+    }
+
+    /**
+     * Returns encoding of the keys.
+     */
+    KeyEncoding keyEncoding() {
+        return keyEncoding;
+    }
+
+    /**
+     * Creates new options for column family creation. Caller is responsible for closing them.
+     *
+     * @param blockCache cache shared with other column families, or null if column family should use its own.
+     */
+    ColumnFamilyOptions toOptions(@Nullable Cache blockCache) {
+        var options = new ColumnFamilyOptions()
+                .setWriteBufferSize(writeBufferSize)
+                .setMaxWriteBufferNumber(maxWriteBufferNumber)
+                .setCompactionStyle(compactionStyle)
+                .setCompressionType(compression)
+                .setBottommostCompressionType(bottommostCompression)
+                .setEnableBlobFiles(blobFiles)
+                .setMinBlobSize(minBlobSize)
+                .setBlobFileSize(blobFileSize)
+                .setBlobCompressionType(blobCompression)
+                .setEnableBlobGarbageCollection(blobGarbageCollection)
+                .setBlobGarbageCollectionAgeCutoff(blobGarbageCollectionAgeCutoff);
+        if (!compressionPerLevel.isEmpty()) {
+            options.setCompressionPerLevel(compressionPerLevel);
+        }
+        if (dictionaryBytes > 0) {
+            // options copy the compression settings, so they can be closed right away
+            try (var compressionOptions = new CompressionOptions()
+                    .setMaxDictBytes(dictionaryBytes)
+                    .setZStdMaxTrainBytes(zstdTrainingBytes);
+                 var bottommostOptions = new CompressionOptions()
+                         .setMaxDictBytes(dictionaryBytes)
+                         .setZStdMaxTrainBytes(zstdTrainingBytes)
+                         .setEnabled(true)) {
+                options.setCompressionOptions(compressionOptions)
+                        .setBottommostCompressionOptions(bottommostOptions);
+            }
+        }
+        var tableConfig = new BlockBasedTableConfig();
+        if (blockCache != null) {
+            // index and filter blocks are charged to the shared cache too, so they are within the budget
+            tableConfig.setBlockCache(blockCache)
+                    .setCacheIndexAndFilterBlocks(true)
+                    .setCacheIndexAndFilterBlocksWithHighPriority(true)
+                    .setPinL0FilterAndIndexBlocksInCache(true);
+        }
+        if (partitionPrefix) {
+            options.useFixedLengthPrefixExtractor(RocksMap.PARTITION_PREFIX_LENGTH);
+            options.setMemtablePrefixBloomSizeRatio(0.1);
+            // bloom filter contains both prefixes (for partition scans) and whole keys (for point lookups)
+            tableConfig.setWholeKeyFiltering(true);
+        }
+        if (bloomFilterBitsPerKey > 0) {
+            // table factory keeps its own reference to the filter, so it can be closed right away
+            try (var bloomFilter = new BloomFilter(bloomFilterBitsPerKey, false)) {
+                options.setTableFormatConfig(tableConfig.setFilterPolicy(bloomFilter));
+            }
+        } else {
+            options.setTableFormatConfig(tableConfig);
+        }
+        return options;
+    }
+
+    /**
+     * Returns the subset of options that can be applied to already opened column family.
+     */
+    MutableColumnFamilyOptions toMutableOptions() {
+        return MutableColumnFamilyOptions.builder()
+                .setWriteBufferSize(writeBufferSize)
+                .setMaxWriteBufferNumber(maxWriteBufferNumber)
+                .setEnableBlobFiles(blobFiles)
+                .setMinBlobSize(minBlobSize)
+                .setBlobFileSize(blobFileSize)
+                // blob compression is not included, as RocksJava passes it in a format RocksDB does not parse
+                .setEnableBlobGarbageCollection(blobGarbageCollection)
+                .setBlobGarbageCollectionAgeCutoff(blobGarbageCollectionAgeCutoff)
+                .build();
+    }
+}
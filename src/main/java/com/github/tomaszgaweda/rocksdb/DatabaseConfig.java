@@ -0,0 +1,159 @@
+package com.github.tomaszgaweda.rocksdb;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.File;
+import java.util.Properties;
+
+import static com.github.tomaszgaweda.rocksdb.RocksDbMapStore.*;
+
+/**
+ * Settings of a whole database, shared by all maps stored in it.
+ *
+ * Database is opened with the config of the map store that opens it first; configs of map stores that use
+ * already opened database are ignored.
+ */
+final class DatabaseConfig {
+
+    private final boolean groupCommit;
+    private final long walSyncIntervalMillis;
+    private final long memtableFlushIntervalMillis;
+    private final long expirySweepIntervalMillis;
+    private final File backupDirectory;
+    private final long backupIntervalMillis;
+    private final int backupsToKeep;
+    private final long rateLimitBytesPerSecond;
+    private final boolean rateLimitAutoTune;
+    private final int maxBackgroundJobs;
+    private final int maxSubcompactions;
+    private final String compactionWindow;
+
+    /**
+     * Creates config with default values of all parameters.
+     */
+    DatabaseConfig() {
+        this(new Properties());
+    }
+
+    /**
+     * Creates config from the map store properties; missing values are replaced with defaults.
+     */
+    DatabaseConfig(@Nonnull Properties properties) {
+        this.groupCommit = Boolean.parseBoolean(properties.getProperty(GROUP_COMMIT_PARAM, GROUP_COMMIT_DEFAULT));
+        this.walSyncIntervalMillis = Long.parseLong(properties.getProperty(WAL_SYNC_INTERVAL_PARAM,
+                WAL_SYNC_INTERVAL_DEFAULT));
+        this.memtableFlushIntervalMillis = Long.parseLong(properties.getProperty(MEMTABLE_FLUSH_INTERVAL_PARAM,
+                MEMTABLE_FLUSH_INTERVAL_DEFAULT));
+        this.expirySweepIntervalMillis = Long.parseLong(properties.getProperty(EXPIRY_SWEEP_INTERVAL_PARAM,
+                EXPIRY_SWEEP_INTERVAL_DEFAULT));
+        String backupPath = properties.getProperty(BACKUP_DIRECTORY_PARAM, BACKUP_DIRECTORY_DEFAULT);
+        this.backupDirectory = backupPath.isEmpty() ? null : new File(backupPath);
+        this.backupIntervalMillis = Long.parseLong(properties.getProperty(BACKUP_INTERVAL_PARAM,
+                BACKUP_INTERVAL_DEFAULT));
+        this.backupsToKeep = Integer.parseInt(properties.getProperty(BACKUPS_TO_KEEP_PARAM, BACKUPS_TO_KEEP_DEFAULT));
+        if (backupsToKeep <= 0) {
+            throw new IllegalArgumentException("number of backups to keep must be positive, was " + backupsToKeep);
+        }
+        this.rateLimitBytesPerSecond = Long.parseLong(properties.getProperty(RATE_LIMIT_PARAM, RATE_LIMIT_DEFAULT));
+        this.rateLimitAutoTune = Boolean.parseBoolean(properties.getProperty(RATE_LIMIT_AUTO_TUNE_PARAM,
+                RATE_LIMIT_AUTO_TUNE_DEFAULT));
+        this.maxBackgroundJobs = Integer.parseInt(properties.getProperty(MAX_BACKGROUND_JOBS_PARAM,
+                MAX_BACKGROUND_JOBS_DEFAULT));
+        this.maxSubcompactions = Integer.parseInt(properties.getProperty(MAX_SUBCOMPACTIONS_PARAM,
+                MAX_SUBCOMPACTIONS_DEFAULT));
+        if (rateLimitBytesPerSecond < 0 || maxBackgroundJobs <= 0 || maxSubcompactions <= 0) {
+            throw new IllegalArgumentException("rate limit must not be negative and background job limits must be "
+                    + "positive");
+        }
+        this.compactionWindow = properties.getProperty(COMPACTION_WINDOW_PARAM, COMPACTION_WINDOW_DEFAULT);
+        // fail before the database is opened
+        OffPeakCompaction.of(compactionWindow, continueWhile -> {});
+    }
+
+    /**
+     * Returns true if single-key writes of concurrent threads should be merged into one batch.
+     */
+    boolean groupCommit() {
+        return groupCommit;
+    }
+
+    /**
+     * Returns interval of background WAL fsync in milliseconds; 0 if WAL should not be synced in background.
+     */
+    long walSyncIntervalMillis() {
+        return walSyncIntervalMillis;
+    }
+
+    /**
+     * Returns interval of background memtable flush of maps without WAL in milliseconds; 0 if memtables should not
+     * be flushed in background.
+     */
+    long memtableFlushIntervalMillis() {
+        return memtableFlushIntervalMillis;
+    }
+
+    /**
+     * Returns interval of background deletion of expired entries in milliseconds; 0 if expired entries should not be
+     * deleted in background.
+     */
+    long expirySweepIntervalMillis() {
+        return expirySweepIntervalMillis;
+    }
+
+    /**
+     * Returns directory of scheduled backups or null if backups are not scheduled.
+     */
+    @Nullable
+    File backupDirectory() {
+        return backupDirectory;
+    }
+
+    /**
+     * Returns interval of scheduled backups in milliseconds; 0 if backups are not scheduled.
+     */
+    long backupIntervalMillis() {
+        return backupIntervalMillis;
+    }
+
+    /**
+     * Returns number of the latest backups kept in the backup directory.
+     */
+    int backupsToKeep() {
+        return backupsToKeep;
+    }
+
+    /**
+     * Returns limit of background I/O in bytes per second; 0 if background I/O is not limited.
+     */
+    long rateLimitBytesPerSecond() {
+        return rateLimitBytesPerSecond;
+    }
+
+    /**
+     * Returns true if the rate limit should be adjusted to the demand, up to {@link #rateLimitBytesPerSecond()}.
+     */
+    boolean rateLimitAutoTune() {
+        return rateLimitAutoTune;
+    }
+
+    /**
+     * Returns maximum number of concurrent background flushes and compactions.
+     */
+    int maxBackgroundJobs() {
+        return maxBackgroundJobs;
+    }
+
+    /**
+     * Returns maximum number of threads of a single compaction.
+     */
+    int maxSubcompactions() {
+        return maxSubcompactions;
+    }
+
+    /**
+     * Returns daily window of scheduled compaction as {@code HH:mm-HH:mm}; empty if compaction is not scheduled.
+     */
+    String compactionWindow() {
+        return compactionWindow;
+    }
+}
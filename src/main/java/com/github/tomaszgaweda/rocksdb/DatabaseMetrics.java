@@ -0,0 +1,144 @@
+package com.github.tomaszgaweda.rocksdb;
+
+import com.hazelcast.core.HazelcastInstance;
+import com.hazelcast.instance.impl.HazelcastInstanceImpl;
+import com.hazelcast.instance.impl.HazelcastInstanceProxy;
+import com.hazelcast.internal.metrics.DynamicMetricsProvider;
+import com.hazelcast.internal.metrics.MetricDescriptor;
+import com.hazelcast.internal.metrics.MetricsCollectionContext;
+import com.hazelcast.internal.metrics.MetricsRegistry;
+import org.rocksdb.RocksDB;
+import org.rocksdb.RocksDBException;
+import org.rocksdb.Statistics;
+import org.rocksdb.TickerType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.HashSet;
+import java.util.Set;
+
+import static com.hazelcast.internal.metrics.ProbeLevel.INFO;
+import static com.hazelcast.internal.metrics.ProbeUnit.*;
+
+/**
+ * Metrics of a single {@link RocksDatabase}, published in Hazelcast's metrics system, so they are available
+ * in Management Center and JMX.
+ *
+ * Database metrics are published with prefix {@value #DATABASE_PREFIX} and the database path as discriminator:
+ * RocksDB statistics and properties (block cache hits and misses, stalls, pending compaction bytes, memtable size),
+ * {@linkplain WriteStallMonitor write pressure} and {@link OperationMetrics} of all maps using the database.
+ * Metrics of single maps are published by {@link RocksDbMapStore} with prefix {@value #MAP_PREFIX}.
+ */
+final class DatabaseMetrics implements DynamicMetricsProvider, AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(DatabaseMetrics.class);
+
+    /**
+     * Prefix of metrics of a database.
+     */
+    static final String DATABASE_PREFIX = "rocksdb.database";
+
+    /**
+     * Prefix of metrics of a single map.
+     */
+    static final String MAP_PREFIX = "rocksdb.map";
+
+    private final String path;
+    private final RocksDB db;
+    private final Statistics statistics;
+    private final WriteStallMonitor writeStallMonitor;
+    private final OperationMetrics operations = new OperationMetrics();
+    private final Set<MetricsRegistry> registries = new HashSet<>();
+    private boolean closed;
+
+    /**
+     * @param statistics statistics set in the options of the database.
+     */
+    DatabaseMetrics(@Nonnull String path, @Nonnull RocksDB db, @Nonnull Statistics statistics,
+                    @Nonnull WriteStallMonitor writeStallMonitor) {
+        this.path = path;
+        this.db = db;
+        this.statistics = statistics;
+        this.writeStallMonitor = writeStallMonitor;
+    }
+
+    /**
+     * Returns metrics registry of given member, or null if metrics cannot be published (e.g. instance is a client).
+     */
+    @Nullable
+    static MetricsRegistry registryOf(@Nullable HazelcastInstance hazelcastInstance) {
+        if (hazelcastInstance instanceof HazelcastInstanceProxy proxy) {
+            hazelcastInstance = proxy.getOriginal();
+        }
+        if (hazelcastInstance instanceof HazelcastInstanceImpl instance) {
+            return instance.node.getNodeEngine().getMetricsRegistry();
+        }
+        return null;
+    }
+
+    /**
+     * Returns statistics of operations of all maps using the database.
+     */
+    OperationMetrics operations() {
+        return operations;
+    }
+
+    /**
+     * Publishes metrics of the database in given registry until the database is closed.
+     * Registering in the same registry more than once has no effect.
+     */
+    synchronized void register(@Nonnull MetricsRegistry registry) {
+        if (!closed && registries.add(registry)) {
+            registry.registerDynamicMetricsProvider(this);
+        }
+    }
+
+    @Override
+    public synchronized void provideDynamicMetrics(MetricDescriptor descriptor, MetricsCollectionContext context) {
+        if (closed) {
+            return;
+        }
+        MetricDescriptor databaseDescriptor = descriptor.withPrefix(DATABASE_PREFIX).withDiscriminator("path", path);
+        long hits = statistics.getTickerCount(TickerType.BLOCK_CACHE_HIT);
+        long misses = statistics.getTickerCount(TickerType.BLOCK_CACHE_MISS);
+        context.collect(databaseDescriptor, "blockCacheHits", INFO, COUNT, hits);
+        context.collect(databaseDescriptor, "blockCacheMisses", INFO, COUNT, misses);
+        context.collect(databaseDescriptor, "blockCacheHitRate", INFO, PERCENT,
+                hits + misses == 0 ? 0 : 100.0 * hits / (hits + misses));
+        context.collect(databaseDescriptor, "bytesWritten", INFO, BYTES,
+                statistics.getTickerCount(TickerType.BYTES_WRITTEN));
+        context.collect(databaseDescriptor, "bytesRead", INFO, BYTES, statistics.getTickerCount(TickerType.BYTES_READ));
+        context.collect(databaseDescriptor, "stallMicros", INFO, US,
+                statistics.getTickerCount(TickerType.STALL_MICROS));
+        try {
+            context.collect(databaseDescriptor, "writeStopped", INFO, BOOLEAN,
+                    db.getLongProperty("rocksdb.is-write-stopped"));
+            context.collect(databaseDescriptor, "delayedWriteRate", INFO, BYTES,
+                    db.getLongProperty("rocksdb.actual-delayed-write-rate"));
+            context.collect(databaseDescriptor, "compactionPendingBytes", INFO, BYTES,
+                    db.getAggregatedLongProperty("rocksdb.estimate-pending-compaction-bytes"));
+            context.collect(databaseDescriptor, "runningCompactions", INFO, COUNT,
+                    db.getLongProperty("rocksdb.num-running-compactions"));
+            context.collect(databaseDescriptor, "memtableBytes", INFO, BYTES,
+                    db.getAggregatedLongProperty("rocksdb.cur-size-all-mem-tables"));
+            context.collect(databaseDescriptor, "blobFileBytes", INFO, BYTES,
+                    db.getAggregatedLongProperty("rocksdb.total-blob-file-size"));
+        } catch (RocksDBException e) {
+            log.warn("cannot read properties of RocksDB {}", path, e);
+        }
+        writeStallMonitor.collect(databaseDescriptor, context);
+        operations.collect(databaseDescriptor, context);
+    }
+
+    /**
+     * Stops publishing the metrics; must be called before the database is closed.
+     */
+    @Override
+    public synchronized void close() {
+        closed = true;
+        registries.forEach(registry -> registry.deregisterDynamicMetricsProvider(this));
+        registries.clear();
+    }
+}
@@ -0,0 +1,126 @@
+package com.github.tomaszgaweda.rocksdb;
+
+import org.rocksdb.WriteBatch;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.nio.ByteBuffer;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Per-thread, reusable direct buffers and write batch of a single {@link RocksDatabase}, so that steady state reads
+ * and writes do not allocate native memory on every call.
+ *
+ * Buffers grow on demand up to {@link #MAX_POOLED_CAPACITY}; larger keys and values are not pooled and callers should
+ * fall back to the {@code byte[]} API. All pooled write batches are closed by {@link #close()}.
+ */
+final class DirectBuffers implements AutoCloseable {
+
+    /**
+     * Maximum capacity of pooled buffers; also the size of write batch after which it's not reused.
+     */
+    static final int MAX_POOLED_CAPACITY = 1 << 20;
+
+    private static final int INITIAL_KEY_CAPACITY = 256;
+    private static final int INITIAL_VALUE_CAPACITY = 16 * 1024;
+
+    private final Set<ThreadBuffers> allBuffers = ConcurrentHashMap.newKeySet();
+    private final ThreadLocal<ThreadBuffers> threadBuffers = ThreadLocal.withInitial(() -> {
+        var buffers = new ThreadBuffers();
+        allBuffers.add(buffers);
+        return buffers;
+    });
+
+    private static final class ThreadBuffers {
+        private ByteBuffer key = ByteBuffer.allocateDirect(INITIAL_KEY_CAPACITY);
+        private ByteBuffer value = ByteBuffer.allocateDirect(INITIAL_VALUE_CAPACITY);
+        private WriteBatch writeBatch;
+    }
+
+    /**
+     * Returns thread's key buffer filled with given bytes and ready to be read, or null if key is too big to be pooled.
+     */
+    @Nullable
+    ByteBuffer key(@Nonnull byte[] bytes) {
+        ThreadBuffers buffers = threadBuffers.get();
+        buffers.key = fill(buffers.key, bytes);
+        return bytes.length > MAX_POOLED_CAPACITY ? null : buffers.key;
+    }
+
+    /**
+     * Returns thread's value buffer filled with given bytes and ready to be read, or null if value is too big
+     * to be pooled.
+     */
+    @Nullable
+    ByteBuffer value(@Nonnull byte[] bytes) {
+        ThreadBuffers buffers = threadBuffers.get();
+        buffers.value = fill(buffers.value, bytes);
+        return bytes.length > MAX_POOLED_CAPACITY ? null : buffers.value;
+    }
+
+    /**
+     * Returns thread's empty value buffer with at least given capacity, to which value can be read, or null
+     * if requested capacity is too big to be pooled.
+     */
+    @Nullable
+    ByteBuffer valueForRead(int capacity) {
+        if (capacity > MAX_POOLED_CAPACITY) {
+            return null;
+        }
+        ThreadBuffers buffers = threadBuffers.get();
+        if (buffers.value.capacity() < capacity) {
+            buffers.value = ByteBuffer.allocateDirect(grownCapacity(capacity));
+        }
+        return buffers.value.clear();
+    }
+
+    /**
+     * Returns thread's empty write batch. Batch should be passed back to {@link #release} after the write.
+     */
+    WriteBatch writeBatch() {
+        ThreadBuffers buffers = threadBuffers.get();
+        if (buffers.writeBatch == null) {
+            buffers.writeBatch = new WriteBatch();
+        }
+        return buffers.writeBatch;
+    }
+
+    /**
+     * Clears write batch obtained by {@link #writeBatch()}; batches that grew too big are closed instead of reused.
+     */
+    void release(@Nonnull WriteBatch writeBatch) {
+        ThreadBuffers buffers = threadBuffers.get();
+        if (writeBatch.getDataSize() > MAX_POOLED_CAPACITY) {
+            writeBatch.close();
+            buffers.writeBatch = null;
+        } else {
+            writeBatch.clear();
+        }
+    }
+
+    @Override
+    public void close() {
+        for (ThreadBuffers buffers : allBuffers) {
+            if (buffers.writeBatch != null) {
+                buffers.writeBatch.close();
+                buffers.writeBatch = null;
+            }
+        }
+        allBuffers.clear();
+    }
+
+    private static ByteBuffer fill(ByteBuffer buffer, byte[] bytes) {
+        if (bytes.length > MAX_POOLED_CAPACITY) {
+            return buffer;
+        }
+        if (buffer.capacity() < bytes.length) {
+            buffer = ByteBuffer.allocateDirect(grownCapacity(bytes.length));
+        }
+        return buffer.clear().put(bytes).flip();
+    }
+
+    private static int grownCapacity(int required) {
+        return Math.min(MAX_POOLED_CAPACITY, Integer.highestOneBit(required - 1) << 1);
+    }
+}
@@ -0,0 +1,29 @@
+package com.github.tomaszgaweda.rocksdb;
+
+/**
+ * Defines when writes of a map are considered persisted.
+ *
+ * @see RocksDbMapStore#DURABILITY_PARAM
+ */
+public enum Durability {
+
+    /**
+     * Every write is appended to the WAL and fsynced before it completes. Nothing is lost on power failure,
+     * but every write waits for the disk.
+     */
+    SYNC,
+
+    /**
+     * Every write is appended to the WAL without fsync; the WAL is fsynced in background every
+     * {@link RocksDbMapStore#WAL_SYNC_INTERVAL_PARAM}. Nothing is lost if the process crashes, writes from the last
+     * interval may be lost on power failure.
+     */
+    ASYNC,
+
+    /**
+     * Writes skip the WAL and stay in memtables, which are flushed in background every
+     * {@link RocksDbMapStore#MEMTABLE_FLUSH_INTERVAL_PARAM} and when the database is closed. Fastest, but writes
+     * from the last interval are lost if the process crashes. Suitable for write-behind maps and caches.
+     */
+    NO_WAL
+}
@@ -0,0 +1,159 @@
+package com.github.tomaszgaweda.rocksdb;
+
+import org.rocksdb.*;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Merges single-key writes of concurrent threads into one write batch.
+ *
+ * Writes are put on a lock-free queue; the first writing thread that finds no other thread committing becomes
+ * the leader, writes all queued writes (up to {@link #MAX_GROUP_SIZE}) in a single batch and releases their threads
+ * once the batch is written. After the leader finishes, the next waiting thread takes over, so each group pays for
+ * a single JNI call and a single WAL append (and fsync, for synchronous writes).
+ *
+ * Once closed, the committer waits for the current leader to finish and fails all writes that are still queued or
+ * submitted later, so no thread uses the database after it's closed and no thread waits forever.
+ */
+final class GroupCommitter implements AutoCloseable {
+
+    /**
+     * Maximum number of writes committed in a single batch.
+     */
+    static final int MAX_GROUP_SIZE = 1024;
+
+    private final RocksDB db;
+    private final WriteOptions writeOptions;
+    private final ConcurrentLinkedQueue<Write> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean committing = new AtomicBoolean();
+    private volatile boolean closed;
+    // used only by the leader
+    private final WriteBatch batch = new WriteBatch();
+    private final List<Write> group = new ArrayList<>();
+
+    private static final class Write {
+        private final ColumnFamilyHandle columnFamily;
+        private final byte[] key;
+        private final byte[] value;
+        private final Thread thread = Thread.currentThread();
+        private volatile boolean done;
+        private volatile Exception failure;
+
+        private Write(ColumnFamilyHandle columnFamily, byte[] key, @Nullable byte[] value) {
+            this.columnFamily = columnFamily;
+            this.key = key;
+            this.value = value;
+        }
+    }
+
+    /**
+     * @param writeOptions options used for all batches; not closed by this committer.
+     */
+    GroupCommitter(@Nonnull RocksDB db, @Nonnull WriteOptions writeOptions) {
+        this.db = db;
+        this.writeOptions = writeOptions;
+    }
+
+    /**
+     * Puts given entry, returns once it's written.
+     */
+    void put(@Nonnull ColumnFamilyHandle columnFamily, @Nonnull byte[] key, @Nonnull byte[] value)
+            throws RocksDBException {
+        submit(new Write(columnFamily, key, value));
+    }
+
+    /**
+     * Deletes given key, returns once the tombstone is written.
+     */
+    void delete(@Nonnull ColumnFamilyHandle columnFamily, @Nonnull byte[] key) throws RocksDBException {
+        submit(new Write(columnFamily, key, null));
+    }
+
+    private void submit(Write write) throws RocksDBException {
+        queue.add(write);
+        boolean interrupted = false;
+        while (!write.done) {
+            if (committing.compareAndSet(false, true)) {
+                try {
+                    commitGroup();
+                } finally {
+                    committing.set(false);
+                }
+                // writes queued during the commit are committed by the next leader
+                Write next = queue.peek();
+                if (next != null) {
+                    LockSupport.unpark(next.thread);
+                }
+            } else if (closed && queue.remove(write)) {
+                // queued after close drained the queue; the closing thread keeps the leadership forever
+                throw new IllegalStateException("group committer is closed");
+            } else {
+                // park returns immediately while the interrupt flag is set, so it's restored once the write is done
+                interrupted |= Thread.interrupted();
+                LockSupport.park(this);
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        if (write.failure instanceof RocksDBException e) {
+            throw e;
+        }
+        if (write.failure != null) {
+            throw new IllegalStateException("error when committing group of writes", write.failure);
+        }
+    }
+
+    private void commitGroup() {
+        Exception failure = null;
+        try {
+            Write write;
+            while (group.size() < MAX_GROUP_SIZE && (write = queue.poll()) != null) {
+                group.add(write);
+                if (write.value == null) {
+                    batch.delete(write.columnFamily, write.key);
+                } else {
+                    batch.put(write.columnFamily, write.key, write.value);
+                }
+            }
+            db.write(writeOptions, batch);
+        } catch (RocksDBException | RuntimeException e) {
+            failure = e;
+        } finally {
+            for (Write write : group) {
+                write.failure = failure;
+                write.done = true;
+                LockSupport.unpark(write.thread);
+            }
+            group.clear();
+            batch.clear();
+        }
+    }
+
+    /**
+     * Waits until the current group is committed and fails all queued writes; must be called before the database
+     * is closed.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        // taking the leadership for good, so no other thread writes to the database anymore
+        while (!committing.compareAndSet(false, true)) {
+            Thread.onSpinWait();
+        }
+        var failure = new IllegalStateException("group committer is closed");
+        Write write;
+        while ((write = queue.poll()) != null) {
+            write.failure = failure;
+            write.done = true;
+            LockSupport.unpark(write.thread);
+        }
+        batch.close();
+    }
+}
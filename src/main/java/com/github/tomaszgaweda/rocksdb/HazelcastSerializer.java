@@ -0,0 +1,48 @@
+package com.github.tomaszgaweda.rocksdb;
+
+import com.hazelcast.core.HazelcastInstance;
+import com.hazelcast.internal.serialization.Data;
+import com.hazelcast.internal.serialization.SerializationService;
+import com.hazelcast.internal.serialization.impl.HeapData;
+import com.hazelcast.spi.impl.SerializationServiceSupport;
+
+import javax.annotation.Nonnull;
+
+/**
+ * {@linkplain Serializer} that delegates to the {@code SerializationService} of the Hazelcast instance, so Compact,
+ * IdentifiedDataSerializable, Portable and custom serializers registered in the Hazelcast config are used.
+ * Classes without any Hazelcast serializer still fall back to Java serialization inside Hazelcast.
+ */
+// impl note: SerializationService is not a public API; it's the same service Hazelcast uses for the IMap itself,
+// so the bytes are compact and we avoid the ObjectOutputStream overhead.
+public final class HazelcastSerializer implements Serializer {
+
+    private final SerializationService serializationService;
+
+    public HazelcastSerializer(@Nonnull HazelcastInstance hazelcastInstance) {
+        if (!(hazelcastInstance instanceof SerializationServiceSupport support)) {
+            throw new IllegalArgumentException("provided Hazelcast instance %s does not expose SerializationService"
+                    .formatted(hazelcastInstance));
+        }
+        this.serializationService = support.getSerializationService();
+    }
+
+    HazelcastSerializer(@Nonnull SerializationService serializationService) {
+        this.serializationService = serializationService;
+    }
+
+    @Override
+    public byte[] toBytes(@Nonnull Object value) {
+        Data data = serializationService.toData(value);
+        return data.toByteArray();
+    }
+
+    @Override
+    public <V> V fromBytes(@Nonnull byte[] bytes, @Nonnull Class<V> valueClass) {
+        try {
+            return valueClass.cast(serializationService.toObject(new HeapData(bytes)));
+        } catch (RuntimeException e) {
+            throw new IllegalStateException("error when reading " + valueClass, e);
+        }
+    }
+}
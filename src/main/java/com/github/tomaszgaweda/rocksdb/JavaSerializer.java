@@ -0,0 +1,25 @@
+package com.github.tomaszgaweda.rocksdb;
+
+import javax.annotation.Nonnull;
+
+/**
+ * {@linkplain Serializer} using standard Java serialization. Slow and verbose, but works for any
+ * {@linkplain java.io.Serializable} class without any configuration; used as a fallback.
+ */
+public final class JavaSerializer implements Serializer {
+
+    /**
+     * Shared instance; serializer is stateless.
+     */
+    public static final JavaSerializer INSTANCE = new JavaSerializer();
+
+    @Override
+    public byte[] toBytes(@Nonnull Object value) {
+        return SerializationUtils.toBytes(value);
+    }
+
+    @Override
+    public <V> V fromBytes(@Nonnull byte[] bytes, @Nonnull Class<V> valueClass) {
+        return SerializationUtils.fromBytes(bytes, valueClass);
+    }
+}
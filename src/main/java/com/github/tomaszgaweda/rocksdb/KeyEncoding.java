@@ -0,0 +1,24 @@
+package com.github.tomaszgaweda.rocksdb;
+
+/**
+ * Defines how keys of a map are encoded in the database.
+ *
+ * @see RocksDbMapStore#KEY_ENCODING_PARAM
+ */
+public enum KeyEncoding {
+
+    /**
+     * Keys are encoded with the map's {@linkplain Serializer serializer}, like values. Works for any key class,
+     * but keys are stored in no meaningful order.
+     */
+    SERIALIZER,
+
+    /**
+     * {@link Long}, {@link Integer}, {@link java.util.UUID} and {@link String} keys are encoded in compact form
+     * whose byte order matches the order of the keys: numbers as big-endian bytes with flipped sign bit, strings
+     * as UTF-8. Strings are therefore ordered by Unicode code points, which differs from {@link String#compareTo}
+     * for supplementary characters. Enables range scans, see {@link RocksDbMapStore#scan}.
+     * Other key classes are not supported.
+     */
+    ORDERED
+}
@@ -0,0 +1,37 @@
+package com.github.tomaszgaweda.rocksdb;
+
+/**
+ * Defines how {@link RocksDbMapStore#loadAllKeys()} provides keys for the initial load of the map. Unrelated to
+ * Hazelcast's {@link com.hazelcast.config.MapStoreConfig.InitialLoadMode}, which defines when the initial load
+ * happens; key load mode only defines how the keys are read once it does.
+ *
+ * @see RocksDbMapStore#KEY_LOAD_MODE_PARAM
+ */
+public enum KeyLoadMode {
+
+    /**
+     * No keys are returned, map starts empty and entries are loaded one by one on first access.
+     */
+    NONE,
+
+    /**
+     * Keys are streamed from a consistent snapshot of the database, decoded in chunks; only one chunk is held
+     * on heap at a time.
+     */
+    STREAMING,
+
+    /**
+     * Keys are streamed from a consistent snapshot of the database like in {@link #STREAMING} mode, but ranges of keys
+     * split at SST file boundaries are read and decoded by multiple threads at the same time, in no particular order.
+     * Suitable for large maps, where initial load is limited by a single thread.
+     *
+     * @see RocksDbMapStore#KEY_LOAD_PARALLELISM_PARAM
+     */
+    PARALLEL,
+
+    /**
+     * All keys are read from the database at once; the snapshot is released immediately, but all keys are held
+     * on heap until Hazelcast consumes them. Suitable for small maps only.
+     */
+    MATERIALIZED
+}
@@ -0,0 +1,45 @@
+package com.github.tomaszgaweda.rocksdb;
+
+import com.hazelcast.partition.Partition;
+import com.hazelcast.partition.PartitionService;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Resolves Hazelcast partitions of the keys for the partition-aware key layout.
+ *
+ * @see RocksDbMapStore#PARTITION_PREFIX_PARAM
+ */
+interface KeyPartitioner {
+
+    /**
+     * Returns id of the partition to which given key belongs.
+     */
+    int partitionId(@Nonnull Object key);
+
+    /**
+     * Returns ids of partitions currently owned by the local member, in ascending order.
+     */
+    int[] localPartitions();
+
+    /**
+     * Creates partitioner backed by Hazelcast's partition service, so keys land in the same partitions as in the IMap.
+     */
+    static KeyPartitioner of(@Nonnull PartitionService partitionService) {
+        return new KeyPartitioner() {
+            @Override
+            public int partitionId(@Nonnull Object key) {
+                return partitionService.getPartition(key).getPartitionId();
+            }
+
+            @Override
+            public int[] localPartitions() {
+                return partitionService.getPartitions().stream()
+                        .filter(partition -> partition.getOwner() != null && partition.getOwner().localMember())
+                        .mapToInt(Partition::getPartitionId)
+                        .sorted()
+                        .toArray();
+            }
+        };
+    }
+}
@@ -0,0 +1,81 @@
+package com.github.tomaszgaweda.rocksdb;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static com.github.tomaszgaweda.rocksdb.RocksMap.PARTITION_PREFIX_LENGTH;
+
+/**
+ * Range of raw keys of the database, compared lexicographically as unsigned bytes.
+ *
+ * @param from first key of the range (inclusive), null if range is unbounded from below.
+ * @param to end of the range (exclusive), null if range is unbounded from above.
+ */
+record KeyRange(@Nullable byte[] from, @Nullable byte[] to) {
+
+    private static final KeyRange ALL = new KeyRange(null, null);
+
+    /**
+     * Returns range covering all keys.
+     */
+    static KeyRange all() {
+        return ALL;
+    }
+
+    /**
+     * Returns range covering all keys of given partition in partition-aware key layout.
+     */
+    static KeyRange partition(int partitionId) {
+        return new KeyRange(RocksMap.partitionPrefix(partitionId), RocksMap.partitionPrefix(partitionId + 1));
+    }
+
+    /**
+     * Returns range covering keys of given partition in partition-aware key layout that are, without the partition
+     * prefix, within given bounds.
+     *
+     * @param from first key without the prefix (inclusive), null if range is unbounded from below.
+     * @param to end of the range without the prefix (exclusive), null if range is unbounded from above.
+     */
+    static KeyRange partition(int partitionId, @Nullable byte[] from, @Nullable byte[] to) {
+        byte[] prefix = RocksMap.partitionPrefix(partitionId);
+        return new KeyRange(from == null ? prefix : concat(prefix, from),
+                to == null ? RocksMap.partitionPrefix(partitionId + 1) : concat(prefix, to));
+    }
+
+    private static byte[] concat(byte[] prefix, byte[] key) {
+        return ByteBuffer.allocate(prefix.length + key.length).put(prefix).put(key).array();
+    }
+
+    /**
+     * Splits the range into consecutive sub-ranges at given points; points outside the range are ignored.
+     *
+     * @param points split points sorted as unsigned bytes.
+     */
+    List<KeyRange> split(@Nonnull List<byte[]> points) {
+        List<KeyRange> parts = new ArrayList<>();
+        byte[] start = from;
+        for (byte[] point : points) {
+            boolean afterStart = start == null || Arrays.compareUnsigned(point, start) > 0;
+            boolean beforeEnd = to == null || Arrays.compareUnsigned(point, to) < 0;
+            if (afterStart && beforeEnd) {
+                parts.add(new KeyRange(start, point));
+                start = point;
+            }
+        }
+        parts.add(new KeyRange(start, to));
+        return parts;
+    }
+
+    /**
+     * Returns true if range covers exactly one partition, so all its keys share the same prefix.
+     */
+    boolean isSinglePartition() {
+        return from != null && to != null
+                && from.length == PARTITION_PREFIX_LENGTH && to.length == PARTITION_PREFIX_LENGTH
+                && ByteBuffer.wrap(to).getInt() == ByteBuffer.wrap(from).getInt() + 1;
+    }
+}
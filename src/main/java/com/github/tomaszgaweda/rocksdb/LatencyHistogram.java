@@ -0,0 +1,123 @@
+package com.github.tomaszgaweda.rocksdb;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free histogram of latencies in nanoseconds.
+ *
+ * Values are counted in logarithmic buckets, each split into {@value #SUB_BUCKETS} linear sub-buckets, so reported
+ * percentiles are at most 12.5% above the real value. Histogram covers the last one to two
+ * {@linkplain #WINDOW_NANOS windows}, so percentiles follow recent latency instead of the whole lifetime of the map.
+ */
+final class LatencyHistogram {
+
+    /**
+     * Length of a single window of recorded values.
+     */
+    static final long WINDOW_NANOS = TimeUnit.MINUTES.toNanos(1);
+
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKETS = (Long.SIZE - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+    private volatile Window current;
+    private volatile Window previous;
+
+    private static final class Window {
+        private final long start;
+        private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+
+        private Window(long start) {
+            this.start = start;
+        }
+    }
+
+    /**
+     * Recorded values of the current and previous window.
+     *
+     * @param count number of recorded values.
+     * @param elapsedNanos time in which values were recorded.
+     */
+    record Snapshot(long count, long elapsedNanos, long[] counts) {
+
+        /**
+         * Returns value below which given fraction of recorded values falls, or 0 if there are no values.
+         */
+        long percentile(double fraction) {
+            long target = (long) Math.ceil(fraction * count);
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= target && seen > 0) {
+                    return upperBound(i);
+                }
+            }
+            return 0;
+        }
+
+        /**
+         * Returns number of recorded values per second.
+         */
+        double ratePerSecond() {
+            return elapsedNanos <= 0 ? 0 : count * (double) TimeUnit.SECONDS.toNanos(1) / elapsedNanos;
+        }
+    }
+
+    LatencyHistogram() {
+        this.current = new Window(System.nanoTime());
+    }
+
+    void record(long nanos) {
+        window(System.nanoTime()).counts.incrementAndGet(index(Math.max(0, nanos)));
+    }
+
+    Snapshot snapshot() {
+        long now = System.nanoTime();
+        Window window = window(now);
+        Window previousWindow = previous;
+        long[] counts = new long[BUCKETS];
+        long count = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] = window.counts.get(i) + (previousWindow == null ? 0 : previousWindow.counts.get(i));
+            count += counts[i];
+        }
+        long start = previousWindow == null ? window.start : previousWindow.start;
+        return new Snapshot(count, now - start, counts);
+    }
+
+    private Window window(long now) {
+        Window window = current;
+        return now - window.start < WINDOW_NANOS ? window : rotate(now);
+    }
+
+    private synchronized Window rotate(long now) {
+        Window window = current;
+        if (now - window.start >= WINDOW_NANOS) {
+            // after a long pause the last window is too old to be reported
+            previous = now - window.start < 2 * WINDOW_NANOS ? window : new Window(now - WINDOW_NANOS);
+            window = new Window(now);
+            current = window;
+        }
+        return window;
+    }
+
+    static int index(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int highestBit = Long.SIZE - 1 - Long.numberOfLeadingZeros(value);
+        int shift = highestBit - SUB_BUCKET_BITS;
+        int subBucket = (int) (value >>> shift) & (SUB_BUCKETS - 1);
+        return (highestBit - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    static long upperBound(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int shift = index / SUB_BUCKETS - 1;
+        long lowerBound = (long) (SUB_BUCKETS + index % SUB_BUCKETS) << shift;
+        return lowerBound + (1L << shift) - 1;
+    }
+}
@@ -0,0 +1,88 @@
+package com.github.tomaszgaweda.rocksdb;
+
+import org.rocksdb.*;
+
+import javax.annotation.Nonnull;
+import java.util.*;
+
+import static com.github.tomaszgaweda.rocksdb.RocksDbMapStore.*;
+
+/**
+ * Native memory shared by all databases opened by {@link RocksDatabaseContainer}: one block cache and one
+ * {@linkplain WriteBufferManager} charging memtables to that cache, so block cache, index and filter blocks and
+ * memtables of all databases together stay within a single configured budget.
+ */
+final class MemoryBudget implements AutoCloseable {
+
+    /**
+     * Share of the cache capacity reserved for high priority blocks (index and filter blocks).
+     */
+    private static final double HIGH_PRIORITY_POOL_RATIO = 0.1;
+
+    static {
+        // budget is created before the first database, so the library may not be loaded yet
+        RocksDB.loadLibrary();
+    }
+
+    private final long capacity;
+    private final double writeBufferRatio;
+    private final String cacheType;
+    private final Cache cache;
+    private final WriteBufferManager writeBufferManager;
+
+    /**
+     * Creates the shared cache and write buffer manager from the map store properties.
+     */
+    MemoryBudget(@Nonnull Properties properties) {
+        this.capacity = Long.parseLong(properties.getProperty(MEMORY_BUDGET_PARAM, MEMORY_BUDGET_DEFAULT));
+        this.writeBufferRatio = Double.parseDouble(properties.getProperty(MEMORY_WRITE_BUFFER_RATIO_PARAM,
+                MEMORY_WRITE_BUFFER_RATIO_DEFAULT));
+        if (writeBufferRatio <= 0 || writeBufferRatio >= 1) {
+            throw new IllegalArgumentException("write buffer ratio must be between 0 and 1, was " + writeBufferRatio);
+        }
+        this.cacheType = properties.getProperty(MEMORY_CACHE_TYPE_PARAM, MEMORY_CACHE_TYPE_DEFAULT);
+        this.cache = switch (cacheType) {
+            case "LRU" -> new LRUCache(capacity, -1, false, HIGH_PRIORITY_POOL_RATIO);
+            // ClockCache is not compiled into rocksdbjni and would silently leave the budget without a cache
+            case "CLOCK" -> throw new IllegalArgumentException("CLOCK cache is not supported by RocksDB library");
+            default -> throw new IllegalArgumentException("unknown cache type " + cacheType);
+        };
+        // memtables are charged to the cache, so the cache capacity is the limit for both
+        this.writeBufferManager = new WriteBufferManager((long) (capacity * writeBufferRatio), cache);
+    }
+
+    /**
+     * Returns true if given properties describe the same budget as this one.
+     */
+    boolean matches(@Nonnull Properties properties) {
+        return capacity == Long.parseLong(properties.getProperty(MEMORY_BUDGET_PARAM, MEMORY_BUDGET_DEFAULT))
+                && writeBufferRatio == Double.parseDouble(properties.getProperty(MEMORY_WRITE_BUFFER_RATIO_PARAM,
+                        MEMORY_WRITE_BUFFER_RATIO_DEFAULT))
+                && cacheType.equals(properties.getProperty(MEMORY_CACHE_TYPE_PARAM, MEMORY_CACHE_TYPE_DEFAULT));
+    }
+
+    long capacity() {
+        return capacity;
+    }
+
+    Cache blockCache() {
+        return cache;
+    }
+
+    WriteBufferManager writeBufferManager() {
+        return writeBufferManager;
+    }
+
+    /**
+     * Returns approximate memory usage of given databases and of the shared cache.
+     */
+    Map<MemoryUsageType, Long> usage(@Nonnull List<RocksDB> databases) {
+        return MemoryUtil.getApproximateMemoryUsageByType(databases, Set.of(cache));
+    }
+
+    @Override
+    public void close() {
+        writeBufferManager.close();
+        cache.close();
+    }
+}
@@ -0,0 +1,85 @@
+package com.github.tomaszgaweda.rocksdb;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.time.Clock;
+import java.time.LocalTime;
+import java.time.format.DateTimeParseException;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+
+/**
+ * Task that runs manual compaction once per daily off-peak window, e.g. {@code 01:00-05:00}. Windows may span
+ * midnight, e.g. {@code 22:00-04:00}.
+ *
+ * The task should be run periodically, see {@link #CHECK_INTERVAL_MILLIS}; the first run within a window starts
+ * compaction, which is given a condition that turns false once the window ends, so no new compactions are started
+ * after the window.
+ */
+final class OffPeakCompaction implements Runnable {
+
+    /**
+     * Interval in which the task should be run.
+     */
+    static final long CHECK_INTERVAL_MILLIS = 60_000;
+
+    private final LocalTime start;
+    private final LocalTime end;
+    private final Consumer<BooleanSupplier> compaction;
+    private final Clock clock;
+    private boolean compactedInWindow;
+
+    /**
+     * @param compaction compacts the database while given condition holds.
+     */
+    OffPeakCompaction(@Nonnull LocalTime start, @Nonnull LocalTime end, @Nonnull Consumer<BooleanSupplier> compaction,
+                      @Nonnull Clock clock) {
+        if (start.equals(end)) {
+            throw new IllegalArgumentException("compaction window must not be empty");
+        }
+        this.start = start;
+        this.end = end;
+        this.compaction = compaction;
+        this.clock = clock;
+    }
+
+    /**
+     * Creates task for window given as {@code HH:mm-HH:mm}; returns null if window is empty.
+     */
+    @Nullable
+    static OffPeakCompaction of(@Nonnull String window, @Nonnull Consumer<BooleanSupplier> compaction) {
+        if (window.isBlank()) {
+            return null;
+        }
+        String[] bounds = window.split("-");
+        if (bounds.length != 2) {
+            throw new IllegalArgumentException("compaction window must be given as HH:mm-HH:mm, was " + window);
+        }
+        try {
+            return new OffPeakCompaction(LocalTime.parse(bounds[0].trim()), LocalTime.parse(bounds[1].trim()),
+                    compaction, Clock.systemDefaultZone());
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("compaction window must be given as HH:mm-HH:mm, was " + window, e);
+        }
+    }
+
+    @Override
+    public void run() {
+        if (!inWindow()) {
+            compactedInWindow = false;
+            return;
+        }
+        if (!compactedInWindow) {
+            compactedInWindow = true;
+            compaction.accept(this::inWindow);
+        }
+    }
+
+    boolean inWindow() {
+        LocalTime now = LocalTime.now(clock);
+        if (start.isBefore(end)) {
+            return !now.isBefore(start) && now.isBefore(end);
+        }
+        return !now.isBefore(start) || now.isBefore(end);
+    }
+}
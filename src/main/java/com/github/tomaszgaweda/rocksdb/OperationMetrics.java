@@ -0,0 +1,99 @@
+package com.github.tomaszgaweda.rocksdb;
+
+import com.hazelcast.internal.metrics.MetricDescriptor;
+import com.hazelcast.internal.metrics.MetricsCollectionContext;
+
+import javax.annotation.Nonnull;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+import static com.hazelcast.internal.metrics.ProbeLevel.INFO;
+import static com.hazelcast.internal.metrics.ProbeUnit.*;
+
+/**
+ * Latency, throughput and size statistics of map store operations of a single map or database.
+ *
+ * Every operation is published with tag {@value #OPERATION_TAG} and following metrics: {@code count}, {@code entries}
+ * (sum of batch sizes), {@code bytes} (serialized keys and values written, values read), {@code opsPerSecond},
+ * {@code latencyP50}, {@code latencyP99} and {@code latencyP999}. Throughput and latency cover the last 1-2 minutes.
+ */
+final class OperationMetrics {
+
+    /**
+     * Name of the metric tag with operation name.
+     */
+    static final String OPERATION_TAG = "operation";
+
+    /**
+     * Operations of the map store.
+     */
+    enum Operation {
+        STORE("store"),
+        STORE_ALL("storeAll"),
+        LOAD("load"),
+        LOAD_ALL("loadAll"),
+        DELETE("delete"),
+        DELETE_ALL("deleteAll"),
+        SCAN("scan");
+
+        private final String metricName;
+
+        Operation(String metricName) {
+            this.metricName = metricName;
+        }
+    }
+
+    private static final class Stats {
+        private final LongAdder count = new LongAdder();
+        private final LongAdder entries = new LongAdder();
+        private final LongAdder bytes = new LongAdder();
+        private final LatencyHistogram latency = new LatencyHistogram();
+    }
+
+    private final Map<Operation, Stats> stats = new EnumMap<>(Operation.class);
+
+    OperationMetrics() {
+        for (Operation operation : Operation.values()) {
+            stats.put(operation, new Stats());
+        }
+    }
+
+    /**
+     * Records single completed operation.
+     *
+     * @param entries number of entries processed by the operation.
+     * @param bytes number of bytes written or read by the operation.
+     */
+    void record(@Nonnull Operation operation, long latencyNanos, int entries, long bytes) {
+        Stats operationStats = stats.get(operation);
+        operationStats.count.increment();
+        operationStats.entries.add(entries);
+        operationStats.bytes.add(bytes);
+        operationStats.latency.record(latencyNanos);
+    }
+
+    /**
+     * Returns number of completed operations of given type.
+     */
+    long count(@Nonnull Operation operation) {
+        return stats.get(operation).count.sum();
+    }
+
+    /**
+     * Publishes metrics of all operations under given descriptor.
+     */
+    void collect(@Nonnull MetricDescriptor descriptor, @Nonnull MetricsCollectionContext context) {
+        stats.forEach((operation, operationStats) -> {
+            MetricDescriptor operationDescriptor = descriptor.copy().withTag(OPERATION_TAG, operation.metricName);
+            LatencyHistogram.Snapshot latency = operationStats.latency.snapshot();
+            context.collect(operationDescriptor, "count", INFO, COUNT, operationStats.count.sum());
+            context.collect(operationDescriptor, "entries", INFO, COUNT, operationStats.entries.sum());
+            context.collect(operationDescriptor, "bytes", INFO, BYTES, operationStats.bytes.sum());
+            context.collect(operationDescriptor, "opsPerSecond", INFO, COUNT, latency.ratePerSecond());
+            context.collect(operationDescriptor, "latencyP50", INFO, NS, latency.percentile(0.5));
+            context.collect(operationDescriptor, "latencyP99", INFO, NS, latency.percentile(0.99));
+            context.collect(operationDescriptor, "latencyP999", INFO, NS, latency.percentile(0.999));
+        });
+    }
+}
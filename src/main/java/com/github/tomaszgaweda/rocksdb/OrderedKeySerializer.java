@@ -0,0 +1,75 @@
+package com.github.tomaszgaweda.rocksdb;
+
+import javax.annotation.Nonnull;
+import java.nio.ByteBuffer;
+import java.util.Set;
+import java.util.UUID;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * {@linkplain Serializer} of keys in {@link KeyEncoding#ORDERED} encoding: unsigned lexicographical order of the bytes
+ * is a well-defined order of the keys, so RocksDB stores keys sorted and ranges of keys can be scanned.
+ *
+ * Numbers are written as big-endian bytes with the sign bit flipped, so negative numbers come before positive ones,
+ * matching their natural order. {@link UUID UUIDs} are written as two such longs, matching {@link UUID#compareTo}.
+ * Strings are written as UTF-8, which orders them by Unicode code points. This is not {@link String#compareTo}, which
+ * compares UTF-16 chars: supplementary characters sort after U+E000-U+FFFF here, but before them in
+ * {@link String#compareTo}.
+ */
+final class OrderedKeySerializer implements Serializer {
+
+    /**
+     * Shared instance; serializer is stateless.
+     */
+    static final OrderedKeySerializer INSTANCE = new OrderedKeySerializer();
+
+    private static final Set<Class<?>> SUPPORTED_CLASSES = Set.of(Long.class, Integer.class, UUID.class, String.class);
+
+    private OrderedKeySerializer() {}
+
+    /**
+     * Returns true if keys of given class can be encoded.
+     */
+    static boolean supports(@Nonnull Class<?> keyClass) {
+        return SUPPORTED_CLASSES.contains(keyClass);
+    }
+
+    @Override
+    public byte[] toBytes(@Nonnull Object value) {
+        if (value instanceof Long longValue) {
+            return ByteBuffer.allocate(Long.BYTES).putLong(longValue ^ Long.MIN_VALUE).array();
+        }
+        if (value instanceof Integer intValue) {
+            return ByteBuffer.allocate(Integer.BYTES).putInt(intValue ^ Integer.MIN_VALUE).array();
+        }
+        if (value instanceof UUID uuid) {
+            return ByteBuffer.allocate(2 * Long.BYTES)
+                    .putLong(uuid.getMostSignificantBits() ^ Long.MIN_VALUE)
+                    .putLong(uuid.getLeastSignificantBits() ^ Long.MIN_VALUE)
+                    .array();
+        }
+        if (value instanceof String string) {
+            return string.getBytes(UTF_8);
+        }
+        throw new IllegalArgumentException("ordered key encoding does not support " + value.getClass());
+    }
+
+    @Override
+    public <V> V fromBytes(@Nonnull byte[] bytes, @Nonnull Class<V> valueClass) {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        Object key;
+        if (valueClass == Long.class) {
+            key = buffer.getLong() ^ Long.MIN_VALUE;
+        } else if (valueClass == Integer.class) {
+            key = buffer.getInt() ^ Integer.MIN_VALUE;
+        } else if (valueClass == UUID.class) {
+            key = new UUID(buffer.getLong() ^ Long.MIN_VALUE, buffer.getLong() ^ Long.MIN_VALUE);
+        } else if (valueClass == String.class) {
+            key = new String(bytes, UTF_8);
+        } else {
+            throw new IllegalArgumentException("ordered key encoding does not support " + valueClass);
+        }
+        return valueClass.cast(key);
+    }
+}
@@ -0,0 +1,206 @@
+package com.github.tomaszgaweda.rocksdb;
+
+import org.rocksdb.*;
+
+import javax.annotation.Nonnull;
+import java.io.Closeable;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * View of keys of a {@link RocksMap} read by multiple threads at the same time, for fast initial load of large maps.
+ *
+ * Every {@link #iterator()} starts a scan of all given key ranges from its own consistent snapshot of the database.
+ * Ranges are scanned by a pool of threads, which decode keys in chunks and pass them to the iterator through
+ * a bounded queue, so at most {@code 2 * parallelism} chunks wait for the consumer. Scans use large readahead and do
+ * not fill the block cache, so reading the whole map does not evict the working set.
+ *
+ * Keys are returned in no particular order. Iterators release their resources once exhausted; {@link #close()}
+ * stops scans of iterators that were abandoned in the middle.
+ *
+ * @param <K> type of keys
+ */
+final class ParallelKeyIterable<K> implements Iterable<K>, Closeable {
+
+    /**
+     * Readahead of range scans; sequential reads of SST files are done in blocks of this size.
+     */
+    static final long READAHEAD_SIZE = 2 * 1024 * 1024;
+
+    private final RocksDB db;
+    private final RocksMap map;
+    private final Class<K> keyClass;
+    private final List<KeyRange> ranges;
+    private final int chunkSize;
+    private final int parallelism;
+    private final Set<ParallelScan> openScans = Collections.synchronizedSet(new HashSet<>());
+
+    /**
+     * @param ranges disjoint ranges to scan; each of them is scanned by a single thread.
+     */
+    ParallelKeyIterable(@Nonnull RocksDB db, @Nonnull RocksMap map, @Nonnull Class<K> keyClass,
+                        @Nonnull List<KeyRange> ranges, int chunkSize, int parallelism) {
+        if (chunkSize <= 0 || parallelism <= 0) {
+            throw new IllegalArgumentException("chunk size and parallelism must be positive");
+        }
+        this.db = db;
+        this.map = map;
+        this.keyClass = keyClass;
+        this.ranges = List.copyOf(ranges);
+        this.chunkSize = chunkSize;
+        this.parallelism = parallelism;
+    }
+
+    @Nonnull
+    @Override
+    public Iterator<K> iterator() {
+        var scan = new ParallelScan();
+        openScans.add(scan);
+        scan.start();
+        return scan;
+    }
+
+    @Override
+    public void close() {
+        List<ParallelScan> toRelease;
+        synchronized (openScans) {
+            toRelease = new ArrayList<>(openScans);
+        }
+        toRelease.forEach(ParallelScan::release);
+    }
+
+    /**
+     * Chunk of decoded keys; empty chunk with {@code last} set marks the end of a range.
+     */
+    private record Chunk<K>(List<K> keys, boolean last) {}
+
+    private final class ParallelScan implements Iterator<K> {
+
+        private final Snapshot snapshot = db.getSnapshot();
+        private final BlockingQueue<Chunk<K>> queue = new ArrayBlockingQueue<>(2 * parallelism);
+        private final ExecutorService executor = Executors.newFixedThreadPool(parallelism, runnable -> {
+            var thread = new Thread(runnable, "rocksdb-keyLoad-" + map.name());
+            thread.setDaemon(true);
+            return thread;
+        });
+        private final ArrayDeque<K> current = new ArrayDeque<>();
+        private int remainingRanges = ranges.size();
+        private volatile Exception failure;
+        private boolean released;
+
+        void start() {
+            for (KeyRange range : ranges) {
+                executor.submit(() -> scan(range));
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (current.isEmpty() && remainingRanges > 0 && failure == null) {
+                Chunk<K> chunk = take();
+                if (chunk.last()) {
+                    remainingRanges--;
+                } else {
+                    current.addAll(chunk.keys());
+                }
+            }
+            if (failure != null) {
+                release();
+                throw new IllegalStateException("error when reading keys of " + map, failure);
+            }
+            if (current.isEmpty()) {
+                release();
+                return false;
+            }
+            return true;
+        }
+
+        @Override
+        public K next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return current.poll();
+        }
+
+        private Chunk<K> take() {
+            try {
+                return queue.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                release();
+                throw new IllegalStateException("interrupted when reading keys of " + map, e);
+            }
+        }
+
+        private void scan(KeyRange range) {
+            try (var readOptions = new ReadOptions()
+                         .setSnapshot(snapshot)
+                         .setReadaheadSize(READAHEAD_SIZE)
+                         .setFillCache(false)
+                         .setTotalOrderSeek(!range.isSinglePartition());
+                 var lowerBound = range.from() == null ? null : new Slice(range.from());
+                 var upperBound = range.to() == null ? null : new Slice(range.to())) {
+                if (lowerBound != null) {
+                    readOptions.setIterateLowerBound(lowerBound);
+                }
+                if (upperBound != null) {
+                    readOptions.setIterateUpperBound(upperBound);
+                }
+                try (var iterator = db.newIterator(map.columnFamily(), readOptions)) {
+                    if (lowerBound == null) {
+                        iterator.seekToFirst();
+                    } else {
+                        iterator.seek(range.from());
+                    }
+                    List<K> keys = new ArrayList<>(chunkSize);
+                    while (iterator.isValid() && !Thread.currentThread().isInterrupted()) {
+                        keys.add(map.key(iterator.key(), keyClass));
+                        if (keys.size() == chunkSize) {
+                            queue.put(new Chunk<>(keys, false));
+                            keys = new ArrayList<>(chunkSize);
+                        }
+                        iterator.next();
+                    }
+                    iterator.status();
+                    if (!keys.isEmpty()) {
+                        queue.put(new Chunk<>(keys, false));
+                    }
+                }
+            } catch (InterruptedException e) {
+                // scan was released
+                return;
+            } catch (RocksDBException | RuntimeException e) {
+                failure = e;
+            }
+            try {
+                queue.put(new Chunk<>(List.of(), true));
+            } catch (InterruptedException e) {
+                // scan was released
+            }
+        }
+
+        private synchronized void release() {
+            if (released) {
+                return;
+            }
+            released = true;
+            openScans.remove(this);
+            executor.shutdownNow();
+            // scanning threads must not use the snapshot after it's released
+            boolean interrupted = false;
+            boolean terminated = false;
+            while (!terminated) {
+                try {
+                    terminated = executor.awaitTermination(1, TimeUnit.MINUTES);
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+            db.releaseSnapshot(snapshot);
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package com.github.tomaszgaweda.rocksdb;
+
+import com.hazelcast.nio.ObjectDataInput;
+import com.hazelcast.nio.ObjectDataOutput;
+import com.hazelcast.spi.impl.operationservice.Operation;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Replication operation of {@link PartitionHandoffService}: carries SST files with entries of one partition of every
+ * handed over map and ingests them into the databases of the partition's new owner.
+ *
+ * Content of the files is copied between the files and the operation's stream in chunks, so entries are never
+ * deserialized; received files are kept in a temporary directory until they are ingested.
+ */
+final class PartitionHandoffOperation extends Operation {
+
+    private static final Logger log = LoggerFactory.getLogger(PartitionHandoffOperation.class);
+
+    private static final int CHUNK_SIZE = 64 * 1024;
+
+    /**
+     * Map name -> SST files with entries of the partition.
+     */
+    private Map<String, List<File>> files;
+
+    @SuppressWarnings("unused") // for deserialization
+    public PartitionHandoffOperation() {}
+
+    PartitionHandoffOperation(Map<String, List<File>> files) {
+        this.files = files;
+    }
+
+    @Override
+    public void run() {
+        PartitionHandoffService service = getService();
+        try {
+            files.forEach((mapName, mapFiles) -> {
+                RocksDbMapStore<?, ?> store = service.store(mapName);
+                if (store == null) {
+                    log.warn("map {} does not use partition handoff on this member, {} files of partition {} dropped",
+                            mapName, mapFiles.size(), getPartitionId());
+                    return;
+                }
+                store.importPartition(getPartitionId(), mapFiles);
+                service.imported(getPartitionId(), mapName);
+            });
+        } finally {
+            files.values().forEach(PartitionHandoffService::deleteFiles);
+        }
+    }
+
+    @Override
+    public String getServiceName() {
+        return PartitionHandoffService.SERVICE_NAME;
+    }
+
+    @Override
+    protected void writeInternal(ObjectDataOutput out) throws IOException {
+        byte[] chunk = new byte[CHUNK_SIZE];
+        out.writeInt(files.size());
+        for (Map.Entry<String, List<File>> mapFiles : files.entrySet()) {
+            out.writeString(mapFiles.getKey());
+            out.writeInt(mapFiles.getValue().size());
+            for (File file : mapFiles.getValue()) {
+                long length = file.length();
+                out.writeLong(length);
+                try (var input = new FileInputStream(file)) {
+                    for (long remaining = length; remaining > 0; ) {
+                        int read = input.read(chunk, 0, (int) Math.min(chunk.length, remaining));
+                        if (read < 0) {
+                            throw new EOFException("partition handoff file " + file + " is truncated");
+                        }
+                        out.write(chunk, 0, read);
+                        remaining -= read;
+                    }
+                }
+            }
+        }
+    }
+
+    @Override
+    protected void readInternal(ObjectDataInput in) throws IOException {
+        byte[] chunk = new byte[CHUNK_SIZE];
+        int maps = in.readInt();
+        files = new HashMap<>(maps);
+        File directory = null;
+        List<File> received = new ArrayList<>();
+        try {
+            for (int i = 0; i < maps; i++) {
+                String mapName = in.readString();
+                int count = in.readInt();
+                List<File> mapFiles = new ArrayList<>(count);
+                for (int j = 0; j < count; j++) {
+                    if (directory == null) {
+                        directory = Files.createTempDirectory("rocksdb-handoff").toFile();
+                    }
+                    var file = new File(directory, i + "-" + j + ".sst");
+                    received.add(file);
+                    try (var output = new FileOutputStream(file)) {
+                        for (long remaining = in.readLong(); remaining > 0; ) {
+                            int length = (int) Math.min(chunk.length, remaining);
+                            in.readFully(chunk, 0, length);
+                            output.write(chunk, 0, length);
+                            remaining -= length;
+                        }
+                    }
+                    mapFiles.add(file);
+                }
+                files.put(mapName, mapFiles);
+            }
+        } catch (IOException | RuntimeException e) {
+            PartitionHandoffService.deleteFiles(received);
+            throw e;
+        }
+    }
+}
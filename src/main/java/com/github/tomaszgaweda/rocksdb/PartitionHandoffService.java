@@ -0,0 +1,289 @@
+package com.github.tomaszgaweda.rocksdb;
+
+import com.hazelcast.cluster.Address;
+import com.hazelcast.config.Config;
+import com.hazelcast.config.ConfigAccessor;
+import com.hazelcast.config.ServiceConfig;
+import com.hazelcast.core.HazelcastInstance;
+import com.hazelcast.instance.impl.HazelcastInstanceImpl;
+import com.hazelcast.instance.impl.HazelcastInstanceProxy;
+import com.hazelcast.internal.partition.MigrationAwareService;
+import com.hazelcast.internal.partition.MigrationEndpoint;
+import com.hazelcast.internal.partition.PartitionMigrationEvent;
+import com.hazelcast.internal.partition.PartitionReplicationEvent;
+import com.hazelcast.internal.services.ManagedService;
+import com.hazelcast.map.impl.MapService;
+import com.hazelcast.spi.impl.NodeEngine;
+import com.hazelcast.spi.impl.operationservice.Operation;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.File;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+
+/**
+ * Hands over entries of maps with partition-aware key layout (see {@link RocksDbMapStore#PARTITION_PREFIX_PARAM})
+ * between members when partitions migrate, so entries stay in the database of the member that owns their partition
+ * and can be loaded there, e.g. after eviction, without reloading the whole map.
+ *
+ * When the primary replica of a partition migrates, entries of the partition are written from the database of the old
+ * owner into SST files, which are sent to the new owner together with the migration and ingested into its database
+ * in place of the partition's entries before the new owner starts serving the partition. Once the migration is
+ * committed, the partition is deleted from the old owner's database with a range tombstone; if it's rolled back,
+ * the imported partition is deleted from the new owner's database instead. The commit of the last migrations
+ * of a member that shuts down may reach it only after its map stores are disposed, or not at all, so partitions handed
+ * over by migrations not committed yet are also deleted when the member shuts down gracefully, by which time all its
+ * partitions are migrated away, and when a map store is destroyed, if the member no longer owns them. Maps of members
+ * in one JVM that share the database are not handed over between them, as the entries already are where the new owner
+ * reads them. Entries of members that crash are not handed over.
+ *
+ * The service must be registered on every member with {@link #register(Config)}; map stores of partition-aware maps
+ * register themselves in the service of their member.
+ */
+// impl note: MigrationAwareService is not a public API; unlike MigrationListener, which is notified after
+// the migration, it sends the data as a part of the migration, so no writes to the partition are missed.
+public final class PartitionHandoffService implements ManagedService, MigrationAwareService {
+
+    /**
+     * Name of the service in Hazelcast.
+     */
+    public static final String SERVICE_NAME = "rocksdb:partitionHandoffService";
+
+    private static final Logger log = LoggerFactory.getLogger(PartitionHandoffService.class);
+
+    /**
+     * Member address -> service of members in this JVM, to find out if a partition migrates to a member that shares
+     * the database.
+     */
+    private static final Map<Address, PartitionHandoffService> LOCAL_SERVICES = new ConcurrentHashMap<>();
+
+    /**
+     * Map name -> map store of the map on this member.
+     */
+    private final Map<String, RocksDbMapStore<?, ?>> stores = new ConcurrentHashMap<>();
+
+    /**
+     * Partition id -> names of maps whose partition was handed over by a migration that is not finished yet, to be
+     * deleted from the database once the partition is owned by the new owner. Maps whose new owner shares
+     * the database are not included, as their entries must stay in the database.
+     */
+    private final Map<Integer, Set<String>> exportedMaps = new ConcurrentHashMap<>();
+
+    /**
+     * Partition id -> names of maps whose partition was imported by a migration that is not finished yet.
+     */
+    private final Map<Integer, Set<String>> importedMaps = new ConcurrentHashMap<>();
+
+    /**
+     * Partition id -> files exported by a migration that is not finished yet.
+     */
+    private final Map<Integer, List<File>> exportedFiles = new ConcurrentHashMap<>();
+    private NodeEngine nodeEngine;
+
+    /**
+     * Registers the service in given member config.
+     */
+    public static Config register(@Nonnull Config config) {
+        ConfigAccessor.getServicesConfig(config).addServiceConfig(new ServiceConfig()
+                .setEnabled(true)
+                .setName(SERVICE_NAME)
+                .setImplementation(new PartitionHandoffService()));
+        return config;
+    }
+
+    /**
+     * Returns the service of given member, or null if it's not registered or instance is not a member.
+     */
+    @Nullable
+    static PartitionHandoffService of(@Nullable HazelcastInstance hazelcastInstance) {
+        if (hazelcastInstance instanceof HazelcastInstanceProxy proxy) {
+            hazelcastInstance = proxy.getOriginal();
+        }
+        if (hazelcastInstance instanceof HazelcastInstanceImpl instance) {
+            return instance.node.getNodeEngine().getServiceOrNull(SERVICE_NAME);
+        }
+        return null;
+    }
+
+    /**
+     * Hands over entries of given map from now on.
+     */
+    void register(@Nonnull String mapName, @Nonnull RocksDbMapStore<?, ?> store) {
+        stores.put(mapName, store);
+    }
+
+    /**
+     * Stops handing over entries of given map, if they are handed over by given store, deleting partitions of the map
+     * handed over by migrations not committed yet, if this member no longer owns them.
+     */
+    void deregister(@Nonnull String mapName, @Nonnull RocksDbMapStore<?, ?> store) {
+        if (stores.get(mapName) != store) {
+            return;
+        }
+        exportedMaps.forEach((partitionId, mapNames) -> {
+            if (mapNames.contains(mapName) && !nodeEngine.getPartitionService().getPartition(partitionId).isLocal()) {
+                removePartition(partitionId, mapName::equals);
+                mapNames.remove(mapName);
+            }
+        });
+        stores.remove(mapName, store);
+    }
+
+    /**
+     * Returns map store of given map on this member, creating the map if it does not exist on this member yet;
+     * returns null if the map is not handed over by this service.
+     */
+    @Nullable
+    RocksDbMapStore<?, ?> store(@Nonnull String mapName) {
+        RocksDbMapStore<?, ?> store = stores.get(mapName);
+        if (store == null) {
+            // map store is initialized together with the map container
+            MapService mapService = nodeEngine.getService(MapService.SERVICE_NAME);
+            mapService.getMapServiceContext().getMapContainer(mapName);
+            store = stores.get(mapName);
+        }
+        return store;
+    }
+
+    /**
+     * Records that the partition of given map was imported by a running migration, so it's deleted again if the
+     * migration is rolled back.
+     */
+    void imported(int partitionId, @Nonnull String mapName) {
+        importedMaps.computeIfAbsent(partitionId, id -> ConcurrentHashMap.newKeySet()).add(mapName);
+    }
+
+    @Override
+    public void init(NodeEngine nodeEngine, Properties properties) {
+        this.nodeEngine = nodeEngine;
+        LOCAL_SERVICES.put(nodeEngine.getThisAddress(), this);
+    }
+
+    @Override
+    public void reset() {
+    }
+
+    @Override
+    public void shutdown(boolean terminate) {
+        LOCAL_SERVICES.remove(nodeEngine.getThisAddress(), this);
+        exportedFiles.values().forEach(PartitionHandoffService::deleteFiles);
+        exportedFiles.clear();
+        // services are shut down before map stores are disposed; if the member is not terminated, all its partitions
+        // were migrated away by now, even if the commit of the migration did not reach this member
+        if (!terminate) {
+            exportedMaps.forEach((partitionId, mapNames) -> removePartition(partitionId, mapNames::contains));
+        }
+        exportedMaps.clear();
+        stores.clear();
+    }
+
+    @Override
+    public Operation prepareReplicationOperation(PartitionReplicationEvent event) {
+        // entries are stored only by the owner of the partition
+        if (event.getReplicaIndex() != 0 || stores.isEmpty()) {
+            return null;
+        }
+        int partitionId = event.getPartitionId();
+        PartitionHandoffService target = LOCAL_SERVICES.get(event.getTarget());
+        Map<String, List<File>> files = new HashMap<>();
+        try {
+            stores.forEach((mapName, store) -> {
+                RocksDbMapStore<?, ?> targetStore = target != null ? target.store(mapName) : null;
+                // entries of maps whose new owner shares the database are where it reads them already
+                if (targetStore == null || !targetStore.sharesDatabase(store)) {
+                    files.put(mapName, store.exportPartition(partitionId));
+                }
+            });
+        } catch (RuntimeException e) {
+            files.values().forEach(PartitionHandoffService::deleteFiles);
+            throw e;
+        }
+        Set<String> exported = ConcurrentHashMap.newKeySet();
+        exported.addAll(files.keySet());
+        exportedMaps.put(partitionId, exported);
+        List<File> previous = exportedFiles.put(partitionId,
+                files.values().stream().flatMap(List::stream).toList());
+        if (previous != null) {
+            deleteFiles(previous);
+        }
+        return new PartitionHandoffOperation(files);
+    }
+
+    @Override
+    public void beforeMigration(PartitionMigrationEvent event) {
+    }
+
+    @Override
+    public void commitMigration(PartitionMigrationEvent event) {
+        int partitionId = event.getPartitionId();
+        if (event.getMigrationEndpoint() == MigrationEndpoint.SOURCE) {
+            Set<String> exported = finishExport(partitionId);
+            if (event.getCurrentReplicaIndex() == 0 && event.getNewReplicaIndex() != 0) {
+                removePartition(partitionId, exported::contains);
+            }
+        } else {
+            importedMaps.remove(partitionId);
+        }
+    }
+
+    @Override
+    public void rollbackMigration(PartitionMigrationEvent event) {
+        int partitionId = event.getPartitionId();
+        if (event.getMigrationEndpoint() == MigrationEndpoint.SOURCE) {
+            finishExport(partitionId);
+        } else {
+            Set<String> imported = importedMaps.remove(partitionId);
+            if (imported != null && event.getNewReplicaIndex() == 0) {
+                removePartition(partitionId, imported::contains);
+            }
+        }
+    }
+
+    /**
+     * Deletes files exported for the migration of given partition, returns names of maps whose partition was handed
+     * over by the migration.
+     */
+    private Set<String> finishExport(int partitionId) {
+        List<File> files = exportedFiles.remove(partitionId);
+        if (files != null) {
+            deleteFiles(files);
+        }
+        Set<String> exported = exportedMaps.remove(partitionId);
+        return exported != null ? exported : Set.of();
+    }
+
+    private void removePartition(int partitionId, Predicate<String> mapFilter) {
+        stores.forEach((mapName, store) -> {
+            if (!mapFilter.test(mapName)) {
+                return;
+            }
+            try {
+                store.removePartition(partitionId);
+            } catch (RuntimeException e) {
+                log.warn("cannot delete partition {} of map {} from the database", partitionId, mapName, e);
+            }
+        });
+    }
+
+    /**
+     * Deletes given files and their directories, once empty.
+     */
+    static void deleteFiles(@Nonnull List<File> files) {
+        Set<File> directories = new HashSet<>();
+        for (File file : files) {
+            if (!file.delete() && file.exists()) {
+                log.warn("cannot delete partition handoff file {}", file);
+            }
+            directories.add(file.getParentFile());
+        }
+        for (File directory : directories) {
+            if (!directory.delete() && directory.exists()) {
+                log.warn("cannot delete partition handoff directory {}", directory);
+            }
+        }
+    }
+}
@@ -5,37 +5,164 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import java.io.*;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.ByteBuffer;
 import java.nio.file.Files;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.BooleanSupplier;
+import java.util.function.Function;
 
-import static com.github.tomaszgaweda.rocksdb.SerializationUtils.fromBytes;
-import static com.github.tomaszgaweda.rocksdb.SerializationUtils.toBytes;
+import static com.github.tomaszgaweda.rocksdb.OperationMetrics.Operation;
+import static java.nio.charset.StandardCharsets.UTF_8;
 
 /**
  * Container for a single RocksDB database with methods for convenient usage of the database.
  *
+ * Every map using the database has its own column family, so maps with equal keys do not overwrite each other
+ * and each of them can be tuned separately. Databases written by versions that kept all entries in the default column
+ * family, recognized by having only the default column family with some entries in it, keep using the default column
+ * family for all maps, so their entries stay visible.
+ *
+ * Single-key reads and writes go through the {@code ByteBuffer} API with per-thread direct buffers, and all
+ * operations share read and write options created once per database, so steady state store and load do not allocate
+ * native memory.
+ *
+ * Writes of every map use write options of the map's {@link Durability}; WAL of the database and memtables of
+ * {@link Durability#NO_WAL} maps are persisted by {@link #syncWal()} and {@link #flushMemtables()}, called
+ * periodically by {@link RocksDatabaseContainer}.
+ *
+ * If {@linkplain DatabaseConfig#groupCommit() group commit} is enabled, single-key writes of concurrent threads
+ * are merged by {@link GroupCommitter}.
+ *
+ * Every operation is recorded in {@link OperationMetrics} of the map and of the database, see {@link DatabaseMetrics}.
+ *
  * By default, all exceptions will be rethrown.
  */
 class RocksDatabase {
 
     private static final Logger log = LoggerFactory.getLogger(RocksDatabase.class);
 
+    /**
+     * Name of the column family that always exists in RocksDB.
+     */
+    static final String DEFAULT_COLUMN_FAMILY = new String(RocksDB.DEFAULT_COLUMN_FAMILY, UTF_8);
+
+    private static final String CONFIG_FILE_PREFIX = "columnfamily-";
+
+    /**
+     * Number of entries scanned at once by {@link #removeExpired()}.
+     */
+    static final int EXPIRY_SWEEP_CHUNK_SIZE = 1000;
+
+    /**
+     * Separates column family name from property name in backup metadata, which holds column family configs.
+     */
+    private static final char METADATA_SEPARATOR = '/';
+
+    /**
+     * Refill period of the rate limiter; shorter periods give smoother I/O at the cost of more CPU.
+     */
+    private static final long RATE_LIMITER_REFILL_MICROS = 100_000;
+
+    /**
+     * Chance of low-priority requests being served first by the rate limiter; default of RocksDB.
+     */
+    private static final int RATE_LIMITER_FAIRNESS = 10;
+
     static {
         RocksDB.loadLibrary();
     }
 
     private final File directory;
+    private final DatabaseConfig config;
+    private final MemoryBudget memoryBudget;
+    private final DBOptions options;
+    @Nullable
+    private final RateLimiter rateLimiter;
+    private final Statistics statistics = new Statistics();
     private final RocksDB db;
+    private final DatabaseMetrics metrics;
+    private final WriteStallMonitor writeStallMonitor;
+    /**
+     * Column family name -> opened column family.
+     */
+    private final Map<String, ColumnFamily> columnFamilies = new ConcurrentHashMap<>();
+    private final Map<String, ReadWriteLock> expiryLocks = new ConcurrentHashMap<>();
+    private final Map<Durability, WriteOptions> writeOptions = new EnumMap<>(Durability.class);
+    /**
+     * Column families with {@link Durability#NO_WAL} writes, which must be flushed to be persisted.
+     */
+    private final Set<ColumnFamilyHandle> noWalColumnFamilies = ConcurrentHashMap.newKeySet();
+    private final ReadOptions readOptions = new ReadOptions();
+    private final DirectBuffers buffers = new DirectBuffers();
+    private final Map<Durability, GroupCommitter> groupCommitters = new EnumMap<>(Durability.class);
+    /**
+     * True if the database keeps entries of all maps in the default column family, see {@link #openMap}.
+     */
+    private final boolean legacyLayout;
     private volatile boolean open;
+    /**
+     * Number of running manual compactions; guarded by this instance. The database is not closed until they finish.
+     */
+    private int runningCompactions;
+    /**
+     * Number of running backups; guarded by this instance. The database is not closed until they finish.
+     */
+    private int runningBackups;
+    /**
+     * Serializes backups, which share the backup directory; held instead of this instance's monitor, so long backups
+     * do not block WAL syncs, flushes and other operations synchronized on the instance.
+     */
+    private final Lock backupLock = new ReentrantLock();
 
     /**
-     * Creates new instance and initializes connection to the RocksDB database.
+     * @param handle handle of opened column family.
+     * @param options options with which column family was opened; must be closed after the handle.
+     * @param config config from which the options were created.
+     * @param deduplicator fingerprints of values written to the column family, kept up to date by all writes to it,
+     *                     or null if writes are not deduplicated.
+     * @param valueCache cache of deserialized values of the column family, kept up to date by all writes to it,
+     *                   or null if values are not cached.
+     */
+    private record ColumnFamily(ColumnFamilyHandle handle, ColumnFamilyOptions options, ColumnFamilyConfig config,
+                                @Nullable WriteDeduplicator deduplicator,
+                                @Nullable ValueCache<Object, Object> valueCache) {}
+
+    /**
+     * Creates new instance with its own, default-sized caches and memtables.
      *
      * Should not be used directly; prefer using {@link  RocksDatabaseContainer#getRocksDb} method.
      */
     RocksDatabase(@Nonnull String dbDirectory, boolean autoCreate) {
+        this(dbDirectory, autoCreate, null, new DatabaseConfig());
+    }
+
+    /**
+     * Creates new instance and initializes connection to the RocksDB database.
+     *
+     * Should not be used directly; prefer using {@link  RocksDatabaseContainer#getRocksDb} method.
+     *
+     * @param memoryBudget block cache and write buffer manager shared with other databases, or null if database
+     *                     should use its own.
+     * @param databaseConfig settings of the whole database.
+     */
+    RocksDatabase(@Nonnull String dbDirectory, boolean autoCreate, @Nullable MemoryBudget memoryBudget,
+                  @Nonnull DatabaseConfig databaseConfig) {
         this.directory = new File(dbDirectory);
+        this.memoryBudget = memoryBudget;
+        this.config = databaseConfig;
 
         if (!directory.exists() && !autoCreate) {
             throw new IllegalArgumentException("provided directory %s does not exist and auto creation was turned off".formatted(dbDirectory));
@@ -44,113 +171,1241 @@ class RocksDatabase {
             throw new IllegalArgumentException("provided RocksDB directory %s is not a directory".formatted(dbDirectory));
         }
 
-        final Options options = new Options();
+        writeOptions.put(Durability.SYNC, new WriteOptions().setSync(true));
+        writeOptions.put(Durability.ASYNC, new WriteOptions());
+        writeOptions.put(Durability.NO_WAL, new WriteOptions().setDisableWAL(true));
+
+        options = new DBOptions();
         options.setCreateIfMissing(autoCreate);
+        options.setStatistics(statistics);
+        if (memoryBudget != null) {
+            options.setWriteBufferManager(memoryBudget.writeBufferManager());
+        }
+        options.setMaxBackgroundJobs(databaseConfig.maxBackgroundJobs());
+        options.setMaxSubcompactions(databaseConfig.maxSubcompactions());
+        if (databaseConfig.rateLimitBytesPerSecond() > 0) {
+            // only flushes and compactions are limited, user writes are throttled by write stalls
+            rateLimiter = new RateLimiter(databaseConfig.rateLimitBytesPerSecond(), RATE_LIMITER_REFILL_MICROS,
+                    RATE_LIMITER_FAIRNESS, RateLimiterMode.WRITES_ONLY, databaseConfig.rateLimitAutoTune());
+            options.setRateLimiter(rateLimiter);
+        } else {
+            rateLimiter = null;
+        }
         try {
             if (autoCreate) {
                 Files.createDirectories(directory.getParentFile().toPath());
                 Files.createDirectories(directory.getAbsoluteFile().toPath());
             }
-            db = RocksDB.open(options, directory.getAbsolutePath());
+            List<String> names = existingColumnFamilies();
+            List<ColumnFamilyConfig> configs = new ArrayList<>();
+            List<ColumnFamilyDescriptor> descriptors = new ArrayList<>();
+            for (String name : names) {
+                ColumnFamilyConfig config = ColumnFamilyConfig.load(configFile(name));
+                configs.add(config);
+                descriptors.add(new ColumnFamilyDescriptor(name.getBytes(UTF_8), config.toOptions(blockCache())));
+            }
+            List<ColumnFamilyHandle> handles = new ArrayList<>();
+            db = RocksDB.open(options, directory.getAbsolutePath(), descriptors, handles);
+            for (int i = 0; i < descriptors.size(); i++) {
+                columnFamilies.put(names.get(i),
+                        new ColumnFamily(handles.get(i), descriptors.get(i).getOptions(), configs.get(i), null,
+                                null));
+            }
+            legacyLayout = names.equals(List.of(DEFAULT_COLUMN_FAMILY))
+                    && !isEmpty(columnFamilies.get(DEFAULT_COLUMN_FAMILY).handle);
+            if (legacyLayout) {
+                log.warn("database {} keeps entries in the default column family, all maps will use it", directory);
+            }
+            writeStallMonitor = new WriteStallMonitor(db, directory.getAbsolutePath(), this::openColumnFamilies);
+            metrics = new DatabaseMetrics(directory.getAbsolutePath(), db, statistics, writeStallMonitor);
+            if (databaseConfig.groupCommit()) {
+                // writes with different options cannot share a batch
+                writeOptions.forEach((durability, durabilityOptions) ->
+                        groupCommitters.put(durability, new GroupCommitter(db, durabilityOptions)));
+            }
             open = true;
         } catch (IOException | RocksDBException e) {
             throw new IllegalArgumentException("error initializing RocksDB connection", e);
         }
 
-        log.info("connection to database {} is opened successfully", directory);
+        log.info("connection to database {} is opened successfully, column families: {}", directory,
+                columnFamilies.keySet());
+    }
+
+    private List<String> existingColumnFamilies() {
+        try (var listOptions = new Options()) {
+            List<String> names = RocksDB.listColumnFamilies(listOptions, directory.getAbsolutePath()).stream()
+                    .map(name -> new String(name, UTF_8))
+                    .toList();
+            return names.isEmpty() ? List.of(DEFAULT_COLUMN_FAMILY) : names;
+        } catch (RocksDBException e) {
+            // database does not exist yet
+            return List.of(DEFAULT_COLUMN_FAMILY);
+        }
+    }
+
+    @Nullable
+    private Cache blockCache() {
+        return memoryBudget == null ? null : memoryBudget.blockCache();
+    }
+
+    private File configFile(String columnFamily) {
+        return configFile(directory, columnFamily);
+    }
+
+    private static File configFile(File directory, String columnFamily) {
+        return new File(directory, CONFIG_FILE_PREFIX + URLEncoder.encode(columnFamily, UTF_8) + ".properties");
+    }
+
+    /**
+     * Returns view of given map, creating its column family if it does not exist yet.
+     *
+     * If column family already exists, only the mutable part of the config is applied to it; the whole config
+     * is remembered and used when the database is opened next time.
+     *
+     * If the database was written by a version that kept entries of all maps in the default column family, maps
+     * without their own column family use the default one instead of creating it.
+     *
+     * @param partitioner partitioner of keys; must be provided if and only if config uses partition-aware layout.
+     * @param durability durability of writes to the map.
+     */
+    RocksMap openMap(@Nonnull String name, @Nonnull ColumnFamilyConfig config, @Nonnull Serializer serializer,
+                     @Nullable KeyPartitioner partitioner, @Nonnull Durability durability) {
+        return openMap(name, config, serializer, partitioner, durability, 0, 0);
+    }
+
+    /**
+     * Returns view of given map like {@link #openMap(String, ColumnFamilyConfig, Serializer, KeyPartitioner,
+     * Durability)}, creating the write deduplicator and the value cache of the column family if it has none yet.
+     * Both are shared by all views of the column family and kept up to date by writes through any of them.
+     *
+     * @param dedupCapacity capacity of the {@link WriteDeduplicator}, 0 if writes should not be deduplicated.
+     * @param valueCacheSize capacity of the {@link ValueCache}, 0 if values should not be cached.
+     */
+    synchronized RocksMap openMap(@Nonnull String name, @Nonnull ColumnFamilyConfig config,
+                                  @Nonnull Serializer serializer, @Nullable KeyPartitioner partitioner,
+                                  @Nonnull Durability durability, int dedupCapacity, int valueCacheSize) {
+        checkOpened();
+        if (config.partitionPrefix() != (partitioner != null)) {
+            throw new IllegalArgumentException("partitioner must be provided only for partition-aware key layout");
+        }
+        if (config.ttlSeconds() > 0 && dedupCapacity > 0) {
+            throw new IllegalArgumentException("writes of map with TTL cannot be deduplicated, as every write "
+                    + "stores new expiration time");
+        }
+        if (config.ttlSeconds() > 0 && valueCacheSize > 0) {
+            throw new IllegalArgumentException("value cache cannot be used for map with TTL, as cached values "
+                    + "do not expire");
+        }
+        if (legacyLayout && !columnFamilies.containsKey(name)) {
+            name = DEFAULT_COLUMN_FAMILY;
+        }
+        try {
+            ColumnFamily columnFamily = columnFamilies.get(name);
+            if (columnFamily == null) {
+                ColumnFamilyOptions cfOptions = config.toOptions(blockCache());
+                ColumnFamilyHandle handle = db.createColumnFamily(new ColumnFamilyDescriptor(name.getBytes(UTF_8),
+                        cfOptions));
+                columnFamily = new ColumnFamily(handle, cfOptions, config,
+                        dedupCapacity > 0 ? new WriteDeduplicator(dedupCapacity) : null,
+                        valueCacheSize > 0 ? new ValueCache<>(valueCacheSize) : null);
+                columnFamilies.put(name, columnFamily);
+                log.info("created column family {} in database {}", name, directory);
+            } else {
+                if (columnFamily.config.partitionPrefix() != config.partitionPrefix() && !isEmpty(columnFamily.handle)) {
+                    throw new IllegalArgumentException(("column family %s in RocksDB %s already contains keys "
+                            + "in different layout; partition prefix cannot be changed").formatted(name, directory));
+                }
+                boolean ttlChanged = (columnFamily.config.ttlSeconds() > 0) != (config.ttlSeconds() > 0);
+                if (ttlChanged && !isEmpty(columnFamily.handle)) {
+                    throw new IllegalArgumentException(("column family %s in RocksDB %s already contains values "
+                            + "in different layout; TTL cannot be turned on or off").formatted(name, directory));
+                }
+                if (columnFamily.config.keyEncoding() != config.keyEncoding() && !isEmpty(columnFamily.handle)) {
+                    throw new IllegalArgumentException(("column family %s in RocksDB %s already contains keys "
+                            + "in different encoding; key encoding cannot be changed").formatted(name, directory));
+                }
+                db.setOptions(columnFamily.handle, config.toMutableOptions());
+                // entries with TTL are not deduplicated, whoever opened the column family first
+                WriteDeduplicator deduplicator = config.ttlSeconds() > 0 ? null
+                        : columnFamily.deduplicator == null && dedupCapacity > 0
+                        ? new WriteDeduplicator(dedupCapacity)
+                        : columnFamily.deduplicator;
+                ValueCache<Object, Object> valueCache = columnFamily.valueCache == null && valueCacheSize > 0
+                        ? new ValueCache<>(valueCacheSize)
+                        : columnFamily.valueCache;
+                columnFamily = new ColumnFamily(columnFamily.handle, columnFamily.options, config, deduplicator,
+                        valueCache);
+                columnFamilies.put(name, columnFamily);
+            }
+            config.store(configFile(name));
+            if (durability == Durability.NO_WAL) {
+                noWalColumnFamilies.add(columnFamily.handle);
+            }
+            ReadWriteLock expiryLock = config.ttlSeconds() > 0 ? expiryLock(name) : null;
+            Serializer keySerializer = config.keyEncoding() == KeyEncoding.ORDERED
+                    ? OrderedKeySerializer.INSTANCE
+                    : serializer;
+            return new RocksMap(name, columnFamily.handle, serializer, keySerializer, partitioner, durability,
+                    TimeUnit.SECONDS.toMillis(config.ttlSeconds()), expiryLock, columnFamily.deduplicator,
+                    columnFamily.valueCache);
+        } catch (RocksDBException e) {
+            throw new IllegalStateException("error opening column family %s in RocksDB %s".formatted(name, directory), e);
+        }
+    }
+
+    private ReadWriteLock expiryLock(String columnFamily) {
+        return expiryLocks.computeIfAbsent(columnFamily, name -> new ReentrantReadWriteLock());
     }
 
+    private boolean isEmpty(ColumnFamilyHandle columnFamily) {
+        try (var iterator = db.newIterator(columnFamily)) {
+            iterator.seekToFirst();
+            return !iterator.isValid();
+        }
+    }
 
     /**
      * Put given key-value pair into the database. Both key and value cannot be null.
+     * If the map deduplicates writes and the same value was the last one written under the key, nothing is written.
      */
-    void put(@Nonnull Object key, @Nonnull Object value) {
+    void put(@Nonnull RocksMap map, @Nonnull Object key, @Nonnull Object value) {
         checkOpened();
+        long start = System.nanoTime();
+        boolean written = false;
+        lockStores(map);
         try {
-            db.put(toBytes(key), toBytes(value));
+            byte[] keyBytes = map.keyBytes(key);
+            byte[] valueBytes = map.valueBytes(value);
+            WriteDeduplicator deduplicator = deduplicator(map);
+            long keyHash = 0;
+            long fingerprint = 0;
+            if (deduplicator != null) {
+                keyHash = WriteDeduplicator.keyHash(keyBytes);
+                fingerprint = WriteDeduplicator.fingerprint(keyHash, valueBytes);
+                if (deduplicator.isStored(keyHash, fingerprint)) {
+                    written = true;
+                    record(map, Operation.STORE, start, 1, 0);
+                    return;
+                }
+            }
+            GroupCommitter groupCommitter = groupCommitters.get(map.durability());
+            ByteBuffer keyBuffer = groupCommitter == null ? buffers.key(keyBytes) : null;
+            ByteBuffer valueBuffer = groupCommitter == null ? buffers.value(valueBytes) : null;
+            if (groupCommitter != null) {
+                groupCommitter.put(map.columnFamily(), keyBytes, valueBytes);
+            } else if (keyBuffer != null && valueBuffer != null) {
+                db.put(map.columnFamily(), writeOptions(map), keyBuffer, valueBuffer);
+            } else {
+                db.put(map.columnFamily(), writeOptions(map), keyBytes, valueBytes);
+            }
+            if (deduplicator != null) {
+                deduplicator.record(keyHash, fingerprint);
+            }
+            written = true;
+            record(map, Operation.STORE, start, 1, keyBytes.length + valueBytes.length);
         } catch (RocksDBException e) {
             throw new IllegalStateException("error when writing to RocksDB " + directory, e);
+        } finally {
+            unlockStores(map);
+            cacheWritten(map, key, value, written);
         }
     }
 
     /**
-     * Puts all elements of the map into the db. No key nor values should be null.
+     * Puts all elements of the map into the db in a single batch. No key nor values should be null.
      */
-    void putAll(@Nonnull Map<?, ?> map) {
+    void putAll(@Nonnull RocksMap map, @Nonnull Map<?, ?> entries) {
+        putAll(map, entries, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Puts all elements of the map into the db in batches of given size, so large writes do not hold a lot of
+     * memory and do not block other writers for a long time. No key nor values should be null.
+     *
+     * Under {@link WritePressure}, all entries are written in a single batch: every write waits for the delayed
+     * write rate, so fewer, larger writes get through a stall faster.
+     *
+     * If the map deduplicates writes, entries whose value was the last one written under the key are skipped.
+     */
+    void putAll(@Nonnull RocksMap map, @Nonnull Map<?, ?> entries, int chunkSize) {
         checkOpened();
-        WriteBatch batch = new WriteBatch();
+        long start = System.nanoTime();
+        int batchSize = writeStallMonitor.pressure() == WritePressure.NONE ? chunkSize : Integer.MAX_VALUE;
+        WriteDeduplicator deduplicator = deduplicator(map);
+        // key hashes and fingerprints of entries in the batch, recorded once the batch is written
+        long[] batched = deduplicator == null ? null : new long[2 * Math.min(entries.size(), batchSize)];
+        int batchedCount = 0;
+        boolean written = false;
+        WriteBatch batch = buffers.writeBatch();
+        lockStores(map);
         try {
-            for (Map.Entry<?, ?> entry : map.entrySet()) {
-                batch.put(toBytes(entry.getKey()), toBytes(entry.getValue()));
+            long bytes = 0;
+            for (Map.Entry<?, ?> entry : entries.entrySet()) {
+                byte[] keyBytes = map.keyBytes(entry.getKey());
+                byte[] valueBytes = map.valueBytes(entry.getValue());
+                if (deduplicator != null) {
+                    long keyHash = WriteDeduplicator.keyHash(keyBytes);
+                    long fingerprint = WriteDeduplicator.fingerprint(keyHash, valueBytes);
+                    if (deduplicator.isStored(keyHash, fingerprint)) {
+                        continue;
+                    }
+                    batched[2 * batchedCount] = keyHash;
+                    batched[2 * batchedCount + 1] = fingerprint;
+                    batchedCount++;
+                }
+                batch.put(map.columnFamily(), keyBytes, valueBytes);
+                if (batch.count() >= batchSize) {
+                    bytes += batch.getDataSize();
+                    db.write(writeOptions(map), batch);
+                    batch.clear();
+                    batchedCount = recordWritten(deduplicator, batched, batchedCount);
+                }
             }
-
-            db.write(new WriteOptions(), batch);
+            if (batch.count() > 0) {
+                bytes += batch.getDataSize();
+                db.write(writeOptions(map), batch);
+                recordWritten(deduplicator, batched, batchedCount);
+            }
+            written = true;
+            record(map, Operation.STORE_ALL, start, entries.size(), bytes);
         } catch (RocksDBException e) {
             throw new IllegalStateException("error when writing to RocksDB " + directory, e);
+        } finally {
+            unlockStores(map);
+            buffers.release(batch);
+            for (Map.Entry<?, ?> entry : entries.entrySet()) {
+                cacheWritten(map, entry.getKey(), entry.getValue(), written);
+            }
+        }
+    }
+
+    /**
+     * Records fingerprints of given number of written entries, returns 0 as the new number of batched entries.
+     */
+    private static int recordWritten(@Nullable WriteDeduplicator deduplicator, long[] batched, int count) {
+        if (deduplicator == null) {
+            return 0;
+        }
+        for (int i = 0; i < count; i++) {
+            deduplicator.record(batched[2 * i], batched[2 * i + 1]);
         }
+        return 0;
     }
 
     /**
      * Returns value read from RocksDB from given key or null if there's no such value in the database.
      */
-    <V> V get(@Nonnull Object key, @Nonnull Class<V> valueClass) {
+    <V> V get(@Nonnull RocksMap map, @Nonnull Object key, @Nonnull Class<V> valueClass) {
         checkOpened();
+        long start = System.nanoTime();
         try {
-            byte[] keyBytes = toBytes(key);
-            byte[] bytesFromDb = db.get(keyBytes);
-            return bytesFromDb == null ? null : fromBytes(bytesFromDb, valueClass);
+            byte[] keyBytes = map.keyBytes(key);
+            byte[] bytesFromDb = read(map.columnFamily(), keyBytes);
+            V value = bytesFromDb == null ? null : map.value(bytesFromDb, valueClass);
+            record(map, Operation.LOAD, start, 1, bytesFromDb == null ? 0 : bytesFromDb.length);
+            return value;
         } catch (RocksDBException e) {
             throw new IllegalStateException("error when writing to RocksDB " + directory, e);
         }
     }
 
+    @Nullable
+    private byte[] read(ColumnFamilyHandle columnFamily, byte[] keyBytes) throws RocksDBException {
+        ByteBuffer keyBuffer = buffers.key(keyBytes);
+        if (keyBuffer == null) {
+            return db.get(columnFamily, readOptions, keyBytes);
+        }
+        ByteBuffer valueBuffer = buffers.valueForRead(0);
+        int size = db.get(columnFamily, readOptions, keyBuffer, valueBuffer);
+        if (size == RocksDB.NOT_FOUND) {
+            return null;
+        }
+        if (size > valueBuffer.capacity()) {
+            // value did not fit, read it again into a bigger buffer
+            valueBuffer = buffers.valueForRead(size);
+            if (valueBuffer == null) {
+                return db.get(columnFamily, readOptions, keyBytes);
+            }
+            size = db.get(columnFamily, readOptions, keyBuffer.rewind(), valueBuffer);
+            if (size == RocksDB.NOT_FOUND) {
+                return null;
+            }
+            if (size > valueBuffer.capacity()) {
+                // value was replaced in the meantime
+                return db.get(columnFamily, readOptions, keyBytes);
+            }
+        }
+        byte[] value = new byte[size];
+        valueBuffer.get(value);
+        return value;
+    }
+
     /**
      * Gets all keys mentioned in the collection. If some key is missing in the db, no value for it will be provided
      * (and no exception will be thrown).
      */
-    <K, V> Map<K, V> get(@Nonnull Collection<K> keys, @Nonnull Class<V> valueClass) {
+    <K, V> Map<K, V> get(@Nonnull RocksMap map, @Nonnull Collection<K> keys, @Nonnull Class<V> valueClass) {
+        return get(map, keys, valueClass, Integer.MAX_VALUE, null);
+    }
+
+    /**
+     * Gets all keys mentioned in the collection like {@link #get(RocksMap, Collection, Class)}, splitting requests
+     * of more than {@code chunkSize} keys into chunks processed in parallel in given pool.
+     *
+     * Keys are serialized in parallel and sorted, so every chunk reads a separate range of keys, then each chunk
+     * is read with a single {@code multiGet} and deserialized by a pool thread. The calling thread waits for
+     * all chunks.
+     *
+     * @param pool pool running the chunks or null to read all keys on the calling thread.
+     */
+    <K, V> Map<K, V> get(@Nonnull RocksMap map, @Nonnull Collection<K> keys, @Nonnull Class<V> valueClass,
+                         int chunkSize, @Nullable ForkJoinPool pool) {
         checkOpened();
+        long start = System.nanoTime();
+        List<K> keyList = List.copyOf(keys);
+        var bytesRead = new LongAdder();
+        Map<K, V> resultMap;
+        if (pool == null || keyList.size() <= chunkSize) {
+            resultMap = multiGet(map, serialize(map, keyList), valueClass, bytesRead);
+        } else {
+            List<SerializedKey<K>> serialized = new ArrayList<>(keyList.size());
+            submitChunks(pool, keyList, chunkSize, chunk -> serialize(map, chunk))
+                    .forEach(task -> serialized.addAll(task.join()));
+            serialized.sort((a, b) -> Arrays.compareUnsigned(a.bytes(), b.bytes()));
+
+            resultMap = new HashMap<>(keyList.size());
+            submitChunks(pool, serialized, chunkSize, chunk -> multiGet(map, chunk, valueClass, bytesRead))
+                    .forEach(task -> resultMap.putAll(task.join()));
+        }
+        record(map, Operation.LOAD_ALL, start, keyList.size(), bytesRead.sum());
+        return resultMap;
+    }
+
+    private record SerializedKey<K>(K key, byte[] bytes) {}
+
+    private static <K> List<SerializedKey<K>> serialize(RocksMap map, List<K> keys) {
+        List<SerializedKey<K>> serialized = new ArrayList<>(keys.size());
+        for (K key : keys) {
+            serialized.add(new SerializedKey<>(key, map.keyBytes(key)));
+        }
+        return serialized;
+    }
+
+    private <K, V> Map<K, V> multiGet(RocksMap map, List<SerializedKey<K>> keys, Class<V> valueClass,
+                                      LongAdder bytesRead) {
+        List<byte[]> keysSerialized = keys.stream()
+                .map(SerializedKey::bytes)
+                .toList();
+        List<ColumnFamilyHandle> columnFamilyList = Collections.nCopies(keysSerialized.size(), map.columnFamily());
+        List<byte[]> resultList;
         try {
-            List<byte[]> keysSerialized = keys.stream()
-                    .map(SerializationUtils::toBytes)
-                    .toList();
+            resultList = db.multiGetAsList(readOptions, columnFamilyList, keysSerialized);
+        } catch (RocksDBException e) {
+            throw new IllegalStateException("error when reading from RocksDB " + directory, e);
+        }
+        Map<K, V> resultMap = new HashMap<>(resultList.size());
+        for (int i = 0; i < keys.size(); i++) {
+            byte[] result = resultList.get(i);
+            V value = result == null ? null : map.value(result, valueClass);
+            if (value != null) {
+                resultMap.put(keys.get(i).key(), value);
+                bytesRead.add(result.length);
+            }
+        }
+        return resultMap;
+    }
+
+    private static <T, R> List<ForkJoinTask<R>> submitChunks(ForkJoinPool pool, List<T> list, int chunkSize,
+                                                             Function<List<T>, R> action) {
+        List<ForkJoinTask<R>> tasks = new ArrayList<>();
+        for (int from = 0; from < list.size(); from += chunkSize) {
+            List<T> chunk = list.subList(from, Math.min(from + chunkSize, list.size()));
+            tasks.add(pool.submit(() -> action.apply(chunk)));
+        }
+        return tasks;
+    }
 
-            List<byte[]> resultList = db.multiGetAsList(keysSerialized);
+    /**
+     * Returns lazy view of all keys of given map, read from a consistent snapshot in chunks of given size.
+     * Keys of all partitions are read, also in partition-aware layout: Hazelcast calls {@code loadAllKeys} on a single
+     * member and distributes the keys from there, so keys of partitions of other members sharing the database must
+     * not be skipped. Returned iterable should be closed if its iterators are not exhausted.
+     */
+    <K> RocksKeyIterable<K> keys(@Nonnull RocksMap map, @Nonnull Class<K> keyClass, int chunkSize) {
+        checkOpened();
+        return new RocksKeyIterable<>(db, map, keyClass, List.of(KeyRange.all()), chunkSize);
+    }
 
-            Iterator<K> keyIterator;
-            Iterator<byte[]> resultIterator;
-            Map<K, V> resultMap = new HashMap<>(resultList.size());
-            for (keyIterator = keys.iterator(), resultIterator = resultList.iterator();
-                 keyIterator.hasNext();) {
-                K key = keyIterator.next();
-                byte[] result = resultIterator.next();
-                if (result != null) {
-                    resultMap.put(key, fromBytes(result, valueClass));
+    /**
+     * Returns view of all keys of given map read by given number of threads, see {@link ParallelKeyIterable}.
+     * Like {@link #keys}, keys of all partitions are read. Keys are split into about {@code 4 * parallelism} ranges,
+     * so threads that finish early can take over remaining ranges.
+     * Returned iterable should be closed if its iterators are not exhausted.
+     */
+    <K> ParallelKeyIterable<K> parallelKeys(@Nonnull RocksMap map, @Nonnull Class<K> keyClass, int chunkSize,
+                                            int parallelism) {
+        checkOpened();
+        return new ParallelKeyIterable<>(db, map, keyClass, splitRanges(map, List.of(KeyRange.all()),
+                4 * parallelism), chunkSize, parallelism);
+    }
+
+    /**
+     * Returns local ranges of given map split at boundaries of the map's SST files into about given number
+     * of ranges of similar size. For partition-aware key layout ranges cover only partitions owned by the local
+     * member, otherwise all keys.
+     */
+    List<KeyRange> splitLocalRanges(@Nonnull RocksMap map, int count) {
+        checkOpened();
+        return splitRanges(map, map.localRanges(), count);
+    }
+
+    private List<KeyRange> splitRanges(RocksMap map, List<KeyRange> ranges, int count) {
+        List<byte[]> boundaries = db.getLiveFilesMetaData().stream()
+                .filter(file -> Arrays.equals(file.columnFamilyName(), map.name().getBytes(UTF_8)))
+                .map(SstFileMetaData::smallestKey)
+                .sorted(Arrays::compareUnsigned)
+                .toList();
+        int step = Math.max(1, boundaries.size() / Math.max(1, count));
+        List<byte[]> splitPoints = new ArrayList<>();
+        for (int i = step; i < boundaries.size(); i += step) {
+            splitPoints.add(boundaries.get(i));
+        }
+        return ranges.stream()
+                .flatMap(range -> range.split(splitPoints).stream())
+                .toList();
+    }
+
+    /**
+     * Returns reader of not expired entries of given map within given ranges, see {@link RocksEntryReader}.
+     * Returned reader must be closed.
+     */
+    <K, V> RocksEntryReader<K, V> entries(@Nonnull RocksMap map, @Nonnull List<KeyRange> ranges,
+                                          @Nonnull Class<K> keyClass, @Nonnull Class<V> valueClass) {
+        checkOpened();
+        return new RocksEntryReader<>(db, map, ranges, keyClass, valueClass);
+    }
+
+    /**
+     * Returns entries of given map with keys from {@code fromKey} (inclusive) to {@code toKey} (exclusive), in key
+     * order, up to given limit; null bound means that the range is unbounded on that side. Map must use
+     * {@link KeyEncoding#ORDERED} key encoding, so keys are stored sorted; expired entries are skipped.
+     *
+     * Entries are read from a consistent snapshot of the database. In partition-aware layout keys are sorted only
+     * within a partition, so the range is read from every local partition and the results are merged.
+     */
+    <K, V> List<Map.Entry<K, V>> scan(@Nonnull RocksMap map, @Nullable Object fromKey, @Nullable Object toKey,
+                                      int limit, @Nonnull Class<K> keyClass, @Nonnull Class<V> valueClass) {
+        checkOpened();
+        if (!map.orderedKeys()) {
+            throw new IllegalStateException("range scan of %s requires %s key encoding"
+                    .formatted(map, KeyEncoding.ORDERED));
+        }
+        if (limit <= 0) {
+            throw new IllegalArgumentException("limit must be positive, was " + limit);
+        }
+        long start = System.nanoTime();
+        byte[] from = fromKey == null ? null : OrderedKeySerializer.INSTANCE.toBytes(fromKey);
+        byte[] to = toKey == null ? null : OrderedKeySerializer.INSTANCE.toBytes(toKey);
+        KeyPartitioner partitioner = map.partitioner();
+        List<KeyRange> ranges = partitioner == null
+                ? List.of(new KeyRange(from, to))
+                : Arrays.stream(partitioner.localPartitions())
+                        .mapToObj(partitionId -> KeyRange.partition(partitionId, from, to))
+                        .toList();
+        int prefixLength = partitioner == null ? 0 : RocksMap.PARTITION_PREFIX_LENGTH;
+        List<ScannedEntry<K, V>> scanned = new ArrayList<>();
+        long bytes = 0;
+        Snapshot snapshot = db.getSnapshot();
+        try {
+            for (KeyRange range : ranges) {
+                bytes += scan(map, range, snapshot, limit, keyClass, valueClass, prefixLength, scanned);
+            }
+        } catch (RocksDBException e) {
+            throw new IllegalStateException("error when reading from RocksDB " + directory, e);
+        } finally {
+            db.releaseSnapshot(snapshot);
+        }
+        if (ranges.size() > 1) {
+            scanned.sort((a, b) -> Arrays.compareUnsigned(a.orderKey(), b.orderKey()));
+        }
+        List<Map.Entry<K, V>> result = scanned.stream()
+                .limit(limit)
+                .<Map.Entry<K, V>>map(entry -> new AbstractMap.SimpleImmutableEntry<>(entry.key(), entry.value()))
+                .toList();
+        record(map, Operation.SCAN, start, result.size(), bytes);
+        return result;
+    }
+
+    /**
+     * Entry read by {@link #scan}, with its key bytes without partition prefix.
+     */
+    private record ScannedEntry<K, V>(byte[] orderKey, K key, V value) {}
+
+    /**
+     * Reads up to {@code limit} not expired entries of given range into given list; returns number of value bytes.
+     */
+    private <K, V> long scan(RocksMap map, KeyRange range, Snapshot snapshot, int limit, Class<K> keyClass,
+                             Class<V> valueClass, int prefixLength, List<ScannedEntry<K, V>> scanned)
+            throws RocksDBException {
+        long bytes = 0;
+        try (var scanOptions = new ReadOptions().setSnapshot(snapshot).setTotalOrderSeek(true);
+             var lowerBound = range.from() == null ? null : new Slice(range.from());
+             var upperBound = range.to() == null ? null : new Slice(range.to())) {
+            if (lowerBound != null) {
+                scanOptions.setIterateLowerBound(lowerBound);
+            }
+            if (upperBound != null) {
+                scanOptions.setIterateUpperBound(upperBound);
+            }
+            try (var iterator = db.newIterator(map.columnFamily(), scanOptions)) {
+                if (range.from() == null) {
+                    iterator.seekToFirst();
+                } else {
+                    iterator.seek(range.from());
+                }
+                int found = 0;
+                for (; iterator.isValid() && found < limit; iterator.next()) {
+                    byte[] valueBytes = iterator.value();
+                    V value = map.value(valueBytes, valueClass);
+                    if (value == null) {
+                        continue;
+                    }
+                    byte[] keyBytes = iterator.key();
+                    scanned.add(new ScannedEntry<>(Arrays.copyOfRange(keyBytes, prefixLength, keyBytes.length),
+                            map.key(keyBytes, keyClass), value));
+                    bytes += valueBytes.length;
+                    found++;
                 }
+                iterator.status();
             }
-            return resultMap;
+        }
+        return bytes;
+    }
+
+    /**
+     * Writes all entries of given partition of a map in partition-aware layout into SST files of about the target file
+     * size of the column family, e.g. to hand the partition over to another member. Entries are streamed from
+     * an iterator into the files, so the partition is never held in memory.
+     *
+     * @param directory directory for the files, created if there are any entries.
+     * @return files with consecutive key ranges, empty if the partition is empty.
+     */
+    List<File> exportPartition(@Nonnull RocksMap map, int partitionId, @Nonnull File directory) {
+        checkOpened();
+        KeyRange range = KeyRange.partition(partitionId);
+        List<File> files = new ArrayList<>();
+        try (var dbOptions = new DBOptions();
+             var options = new Options(dbOptions, columnFamilies.get(map.name()).options());
+             var envOptions = new EnvOptions();
+             var upperBound = new Slice(range.to());
+             var exportOptions = new ReadOptions().setFillCache(false).setIterateUpperBound(upperBound);
+             var iterator = db.newIterator(map.columnFamily(), exportOptions)) {
+            SstFileWriter writer = null;
+            try {
+                for (iterator.seek(range.from()); iterator.isValid(); iterator.next()) {
+                    if (writer == null) {
+                        var file = new File(directory, "partition-" + partitionId + "-" + files.size() + ".sst");
+                        Files.createDirectories(directory.toPath());
+                        writer = new SstFileWriter(envOptions, options);
+                        writer.open(file.getAbsolutePath());
+                        files.add(file);
+                    }
+                    writer.put(iterator.key(), iterator.value());
+                    if (writer.fileSize() >= options.targetFileSizeBase()) {
+                        writer.finish();
+                        writer.close();
+                        writer = null;
+                    }
+                }
+                iterator.status();
+                if (writer != null) {
+                    writer.finish();
+                }
+            } finally {
+                if (writer != null) {
+                    writer.close();
+                }
+            }
+        } catch (IOException | RocksDBException e) {
+            throw new IllegalStateException("error when exporting partition %d of %s from RocksDB %s"
+                    .formatted(partitionId, map, this.directory), e);
+        }
+        return files;
+    }
+
+    /**
+     * Replaces all entries of given partition of a map in partition-aware layout with entries of given SST files
+     * exported by {@link #exportPartition}. The partition is empty until the files are ingested, so it must not be
+     * in use meanwhile.
+     */
+    void importPartition(@Nonnull RocksMap map, int partitionId, @Nonnull List<File> files) {
+        checkOpened();
+        KeyRange range = KeyRange.partition(partitionId);
+        lockStores(map);
+        try (var ingestOptions = new IngestExternalFileOptions().setMoveFiles(true)) {
+            db.deleteRange(map.columnFamily(), writeOptions(map), range.from(), range.to());
+            if (!files.isEmpty()) {
+                // ingested entries are newer than the range tombstone
+                db.ingestExternalFile(map.columnFamily(), files.stream().map(File::getAbsolutePath).toList(),
+                        ingestOptions);
+            }
+        } catch (RocksDBException e) {
+            throw new IllegalStateException("error when writing to RocksDB " + directory, e);
+        } finally {
+            unlockStores(map);
+            forgetWrites(map);
+        }
+    }
+
+    /**
+     * Deletes all entries of given partition of a map in partition-aware layout with a single range tombstone.
+     */
+    void deletePartition(@Nonnull RocksMap map, int partitionId) {
+        checkOpened();
+        KeyRange range = KeyRange.partition(partitionId);
+        try {
+            db.deleteRange(map.columnFamily(), writeOptions(map), range.from(), range.to());
+        } catch (RocksDBException e) {
+            throw new IllegalStateException("error when writing to RocksDB " + directory, e);
+        } finally {
+            forgetWrites(map);
+        }
+    }
+
+    void delete (@Nonnull RocksMap map, @Nonnull Object key) {
+        checkOpened();
+        long start = System.nanoTime();
+        try {
+            byte[] keyBytes = map.keyBytes(key);
+            WriteDeduplicator deduplicator = deduplicator(map);
+            if (deduplicator != null) {
+                deduplicator.remove(WriteDeduplicator.keyHash(keyBytes));
+            }
+            GroupCommitter groupCommitter = groupCommitters.get(map.durability());
+            ByteBuffer keyBuffer = groupCommitter == null ? buffers.key(keyBytes) : null;
+            if (groupCommitter != null) {
+                groupCommitter.delete(map.columnFamily(), keyBytes);
+            } else if (keyBuffer != null) {
+                db.delete(map.columnFamily(), writeOptions(map), keyBuffer);
+            } else {
+                db.delete(map.columnFamily(), writeOptions(map), keyBytes);
+            }
+            record(map, Operation.DELETE, start, 1, keyBytes.length);
         } catch (RocksDBException e) {
             throw new IllegalStateException("error when writing to RocksDB " + directory, e);
+        } finally {
+            cacheWritten(map, key, null, false);
+        }
+    }
+
+    /**
+     * Deletes all given keys in a single write batch.
+     */
+    void deleteAll(@Nonnull RocksMap map, @Nonnull Collection<?> keys) {
+        checkOpened();
+        long start = System.nanoTime();
+        WriteDeduplicator deduplicator = deduplicator(map);
+        WriteBatch batch = buffers.writeBatch();
+        try {
+            for (Object key : keys) {
+                byte[] keyBytes = map.keyBytes(key);
+                if (deduplicator != null) {
+                    deduplicator.remove(WriteDeduplicator.keyHash(keyBytes));
+                }
+                batch.delete(map.columnFamily(), keyBytes);
+            }
+            db.write(writeOptions(map), batch);
+            record(map, Operation.DELETE_ALL, start, keys.size(), batch.getDataSize());
+        } catch (RocksDBException e) {
+            throw new IllegalStateException("error when writing to RocksDB " + directory, e);
+        } finally {
+            buffers.release(batch);
+            for (Object key : keys) {
+                cacheWritten(map, key, null, false);
+            }
+        }
+    }
+
+    private WriteOptions writeOptions(RocksMap map) {
+        return writeOptions.get(map.durability());
+    }
+
+    private static void lockStores(RocksMap map) {
+        if (map.expiryLock() != null) {
+            map.expiryLock().readLock().lock();
+        }
+    }
+
+    private static void unlockStores(RocksMap map) {
+        if (map.expiryLock() != null) {
+            map.expiryLock().readLock().unlock();
+        }
+    }
+
+    /**
+     * Removes all fingerprints of deduplicated writes and all cached values of the map, after entries were changed
+     * in bulk. Must be called once the change is done, so fingerprints and values recorded by concurrent stores
+     * and loads in the meantime are removed too.
+     */
+    private void forgetWrites(RocksMap map) {
+        WriteDeduplicator deduplicator = deduplicator(map);
+        if (deduplicator != null) {
+            deduplicator.clear();
+        }
+        ValueCache<Object, Object> valueCache = valueCache(map);
+        if (valueCache != null) {
+            valueCache.invalidateAll();
+        }
+    }
+
+    /**
+     * Updates cached value of given key once it was written to the database; removes it if the key was deleted
+     * or the write failed, as the stored value is then unknown.
+     *
+     * @param value written value, or null if the key was deleted.
+     */
+    private void cacheWritten(RocksMap map, Object key, @Nullable Object value, boolean written) {
+        ValueCache<Object, Object> valueCache = valueCache(map);
+        if (valueCache == null) {
+            return;
+        }
+        if (written && value != null) {
+            valueCache.put(key, value);
+        } else {
+            valueCache.invalidate(key);
+        }
+    }
+
+    /**
+     * Returns the current write deduplicator of the map's column family; it may have been created after the map was
+     * opened.
+     */
+    @Nullable
+    WriteDeduplicator deduplicator(RocksMap map) {
+        ColumnFamily columnFamily = columnFamilies.get(map.name());
+        return columnFamily == null ? null : columnFamily.deduplicator;
+    }
+
+    /**
+     * Returns the current value cache of the map's column family; it may have been created after the map was opened.
+     */
+    @Nullable
+    ValueCache<Object, Object> valueCache(RocksMap map) {
+        ColumnFamily columnFamily = columnFamilies.get(map.name());
+        return columnFamily == null ? null : columnFamily.valueCache;
+    }
+
+    /**
+     * Deletes expired entries of all maps with TTL, returns number of deleted entries. Does nothing if database
+     * is closed.
+     *
+     * Entries are scanned in chunks of {@value #EXPIRY_SWEEP_CHUNK_SIZE}; expired keys of every chunk are read again
+     * and deleted while holding the write lock of {@link RocksMap#expiryLock()}, so entries stored after the scan
+     * are never deleted. Tombstones are dropped together with the values by compactions.
+     */
+    long removeExpired() {
+        List<String> names = columnFamilies.entrySet().stream()
+                .filter(entry -> entry.getValue().config.ttlSeconds() > 0)
+                .map(Map.Entry::getKey)
+                .toList();
+        long removed = 0;
+        for (String name : names) {
+            long removedFromMap = 0;
+            var sweep = new ExpirySweep(null, 0);
+            do {
+                synchronized (this) {
+                    ColumnFamily columnFamily = columnFamilies.get(name);
+                    if (!open || columnFamily == null) {
+                        return removed + removedFromMap;
+                    }
+                    sweep = removeExpired(name, columnFamily, sweep.next());
+                }
+                removedFromMap += sweep.removed();
+            } while (sweep.next() != null);
+            if (removedFromMap > 0) {
+                log.info("deleted {} expired entries of {} in database {}", removedFromMap, name, directory);
+            }
+            removed += removedFromMap;
+        }
+        return removed;
+    }
+
+    /**
+     * Result of deletion of expired entries of a single chunk.
+     *
+     * @param next the first key of the next chunk or null if there are no more entries.
+     */
+    private record ExpirySweep(@Nullable byte[] next, int removed) {}
+
+    private ExpirySweep removeExpired(String name, ColumnFamily columnFamily, @Nullable byte[] from) {
+        long now = System.currentTimeMillis();
+        List<byte[]> expired = new ArrayList<>();
+        byte[] next;
+        try (var scanOptions = new ReadOptions().setFillCache(false).setTotalOrderSeek(true);
+             var iterator = db.newIterator(columnFamily.handle, scanOptions)) {
+            if (from == null) {
+                iterator.seekToFirst();
+            } else {
+                iterator.seek(from);
+            }
+            for (int i = 0; i < EXPIRY_SWEEP_CHUNK_SIZE && iterator.isValid(); i++, iterator.next()) {
+                if (RocksMap.isExpired(iterator.value(), now)) {
+                    expired.add(iterator.key());
+                }
+            }
+            if (iterator.isValid()) {
+                next = iterator.key();
+            } else {
+                iterator.status();
+                next = null;
+            }
+        } catch (RocksDBException e) {
+            throw new IllegalStateException("error when scanning expired entries of RocksDB " + directory, e);
+        }
+        if (expired.isEmpty()) {
+            return new ExpirySweep(next, 0);
+        }
+        int removed = 0;
+        Lock lock = expiryLock(name).writeLock();
+        lock.lock();
+        try (var batch = new WriteBatch()) {
+            List<byte[]> current = db.multiGetAsList(readOptions,
+                    Collections.nCopies(expired.size(), columnFamily.handle), expired);
+            for (int i = 0; i < expired.size(); i++) {
+                if (current.get(i) != null && RocksMap.isExpired(current.get(i), now)) {
+                    batch.delete(columnFamily.handle, expired.get(i));
+                    removed++;
+                }
+            }
+            Durability durability = noWalColumnFamilies.contains(columnFamily.handle)
+                    ? Durability.NO_WAL
+                    : Durability.ASYNC;
+            db.write(writeOptions.get(durability), batch);
+        } catch (RocksDBException e) {
+            throw new IllegalStateException("error when deleting expired entries of RocksDB " + directory, e);
+        } finally {
+            lock.unlock();
+        }
+        return new ExpirySweep(next, removed);
+    }
+
+    private void record(RocksMap map, Operation operation, long start, int entries, long bytes) {
+        long latency = System.nanoTime() - start;
+        map.metrics().record(operation, latency, entries, bytes);
+        metrics.operations().record(operation, latency, entries, bytes);
+    }
+
+    /**
+     * Loads entries into the map by writing SST files and ingesting them, bypassing memtables and WAL;
+     * see {@link BulkLoader}. Entries with keys already present in the map overwrite them.
+     *
+     * @param shardSize number of entries written to a single SST file.
+     * @param parallelism number of threads writing SST files.
+     * @return number of loaded entries.
+     */
+    long bulkLoad(@Nonnull RocksMap map, @Nonnull Iterator<? extends Map.Entry<?, ?>> entries, int shardSize,
+                  int parallelism) {
+        checkOpened();
+        long start = System.nanoTime();
+        var workDirectory = new File(directory, "bulk-load-" + UUID.randomUUID());
+        var loader = new BulkLoader(db, map, columnFamilies.get(map.name()).options(), workDirectory, shardSize,
+                parallelism);
+        long count;
+        lockStores(map);
+        try {
+            count = loader.load(entries);
+        } finally {
+            unlockStores(map);
+            forgetWrites(map);
         }
+        record(map, Operation.STORE_ALL, start, (int) Math.min(Integer.MAX_VALUE, count), 0);
+        return count;
     }
 
-    void delete (@Nonnull Object key) {
+    /**
+     * Deletes all keys of the map within given range using a single range tombstone instead of a tombstone per key.
+     * Unbounded ends of the range are replaced with the first and the last key of the map.
+     */
+    void deleteRange(@Nonnull RocksMap map, @Nonnull KeyRange range) {
         checkOpened();
         try {
-            db.delete(toBytes(key));
+            byte[] from = range.from();
+            byte[] to = range.to();
+            if (from == null || to == null) {
+                try (var readOptions = new ReadOptions().setTotalOrderSeek(true);
+                     var iterator = db.newIterator(map.columnFamily(), readOptions)) {
+                    iterator.seekToFirst();
+                    if (!iterator.isValid()) {
+                        return; // nothing to delete
+                    }
+                    if (from == null) {
+                        from = iterator.key();
+                    }
+                    if (to == null) {
+                        iterator.seekToLast();
+                        // the smallest key greater than the last one
+                        to = Arrays.copyOf(iterator.key(), iterator.key().length + 1);
+                    }
+                }
+            }
+            db.deleteRange(map.columnFamily(), writeOptions(map), from, to);
         } catch (RocksDBException e) {
             throw new IllegalStateException("error when writing to RocksDB " + directory, e);
+        } finally {
+            forgetWrites(map);
+        }
+    }
+
+    /**
+     * Fsyncs the WAL, persisting all {@link Durability#ASYNC} writes done so far. Does nothing if database is closed.
+     */
+    synchronized void syncWal() {
+        if (!open) {
+            return;
+        }
+        try {
+            db.flushWal(true);
+        } catch (RocksDBException e) {
+            throw new IllegalStateException("error when syncing WAL of RocksDB " + directory, e);
+        }
+    }
+
+    /**
+     * Starts flush of memtables of {@link Durability#NO_WAL} maps, so their writes are persisted.
+     * Does nothing if database is closed.
+     */
+    synchronized void flushMemtables() {
+        if (open) {
+            flushMemtables(false);
+        }
+    }
+
+    private void flushMemtables(boolean wait) {
+        if (noWalColumnFamilies.isEmpty()) {
+            return;
+        }
+        try (var flushOptions = new FlushOptions().setWaitForFlush(wait)) {
+            db.flush(flushOptions, new ArrayList<>(noWalColumnFamilies));
+        } catch (RocksDBException e) {
+            throw new IllegalStateException("error when flushing memtables of RocksDB " + directory, e);
         }
     }
 
+    /**
+     * Compacts all entries of given map down to the bottommost level and waits for the compaction to finish.
+     * Compaction is subject to the database's rate limit and runs alongside automatic compactions.
+     * Closing the database cancels running compactions.
+     */
+    void compact(@Nonnull RocksMap map) {
+        synchronized (this) {
+            checkOpened();
+            runningCompactions++;
+        }
+        compact(map.columnFamily(), map.name());
+    }
+
+    /**
+     * Compacts column families of the database one by one, as long as given condition holds and the database
+     * is open. Does nothing if database is closed.
+     */
+    void compactAll(@Nonnull BooleanSupplier continueWhile) {
+        List<String> names = new ArrayList<>(columnFamilies.keySet());
+        long start = System.nanoTime();
+        for (String name : names) {
+            ColumnFamilyHandle handle;
+            synchronized (this) {
+                ColumnFamily columnFamily = columnFamilies.get(name);
+                if (!open || columnFamily == null || !continueWhile.getAsBoolean()) {
+                    return;
+                }
+                handle = columnFamily.handle;
+                runningCompactions++;
+            }
+            compact(handle, name);
+        }
+        log.info("compacted {} column families of database {} in {} ms", names.size(), directory,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    }
+
+    /**
+     * Compacts given column family; {@link #runningCompactions} must be incremented before.
+     */
+    private void compact(ColumnFamilyHandle handle, String name) {
+        try (var compactOptions = new CompactRangeOptions()
+                .setExclusiveManualCompaction(false)
+                .setBottommostLevelCompaction(CompactRangeOptions.BottommostLevelCompaction.kForce)) {
+            db.compactRange(handle, null, null, compactOptions);
+        } catch (RocksDBException e) {
+            if (!open) {
+                log.info("compaction of column family {} of database {} cancelled by close", name, directory);
+                return;
+            }
+            throw new IllegalStateException("error when compacting column family %s of RocksDB %s"
+                    .formatted(name, directory), e);
+        } finally {
+            synchronized (this) {
+                runningCompactions--;
+                notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Creates a checkpoint of the database in given directory, which must not exist yet. The checkpoint is a complete
+     * database, consistent across all maps, that can be opened in place of this one. SST files are hard-linked
+     * if the directory is on the same file system as the database, so the checkpoint is created almost instantly.
+     */
+    synchronized void checkpoint(@Nonnull File target) {
+        checkOpened();
+        try (var checkpoint = Checkpoint.create(db)) {
+            // memtables are flushed first, so writes to maps without WAL are included too
+            checkpoint.createCheckpoint(target.getAbsolutePath());
+            for (String name : columnFamilies.keySet()) {
+                columnFamilies.get(name).config.store(configFile(target, name));
+            }
+        } catch (RocksDBException e) {
+            throw new IllegalStateException("error when creating checkpoint of RocksDB " + directory, e);
+        }
+        log.info("created checkpoint of database {} in {}", directory, target);
+    }
+
+    /**
+     * Creates a new backup of the database in the {@linkplain DatabaseConfig#backupDirectory() backup directory},
+     * keeping {@linkplain DatabaseConfig#backupsToKeep() configured number} of the latest backups.
+     * Backups are incremental: SST files are shared between backups, so only files created since the previous
+     * backup are copied. Writes are not stopped during the backup, and neither are other operations of the database;
+     * only {@link #close()} waits for the backup to finish.
+     */
+    void backup() {
+        File backupDirectory = config.backupDirectory();
+        if (backupDirectory == null) {
+            throw new IllegalStateException("backup directory of RocksDB %s is not configured".formatted(directory));
+        }
+        synchronized (this) {
+            checkOpened();
+            runningBackups++;
+        }
+        backupLock.lock();
+        try {
+            Files.createDirectories(backupDirectory.toPath());
+            var metadata = new Properties();
+            columnFamilies.forEach((name, columnFamily) -> columnFamily.config.toProperties().forEach((key, value) ->
+                    metadata.put(URLEncoder.encode(name, UTF_8) + METADATA_SEPARATOR + key, value)));
+            try (var backupOptions = new BackupableDBOptions(backupDirectory.getAbsolutePath());
+                 var backupEngine = BackupEngine.open(Env.getDefault(), backupOptions)) {
+                var writer = new StringWriter();
+                metadata.store(writer, null);
+                // memtables are flushed, so writes to maps without WAL are included too
+                backupEngine.createNewBackupWithMetadata(db, writer.toString(), true);
+                backupEngine.purgeOldBackups(config.backupsToKeep());
+            }
+        } catch (IOException | RocksDBException e) {
+            throw new IllegalStateException("error when backing up RocksDB %s to %s".formatted(directory,
+                    backupDirectory), e);
+        } finally {
+            backupLock.unlock();
+            synchronized (this) {
+                runningBackups--;
+                notifyAll();
+            }
+        }
+        log.info("created backup of database {} in {}", directory, backupDirectory);
+    }
+
+    /**
+     * Restores the latest backup created by {@link #backup} into given database directory, replacing its content.
+     * The database must not be open; it's opened with the restored content next time it's used.
+     */
+    static void restore(@Nonnull File backupDirectory, @Nonnull File databaseDirectory) {
+        try (var backupOptions = new BackupableDBOptions(backupDirectory.getAbsolutePath());
+             var backupEngine = BackupEngine.open(Env.getDefault(), backupOptions);
+             var restoreOptions = new RestoreOptions(false)) {
+            List<BackupInfo> backups = backupEngine.getBackupInfo();
+            if (backups.isEmpty()) {
+                throw new IllegalArgumentException("there is no backup in " + backupDirectory);
+            }
+            BackupInfo latest = backups.stream()
+                    .max(Comparator.comparingInt(BackupInfo::backupId))
+                    .orElseThrow();
+            Files.createDirectories(databaseDirectory.toPath());
+            String path = databaseDirectory.getAbsolutePath();
+            backupEngine.restoreDbFromBackup(latest.backupId(), path, path, restoreOptions);
+            restoreConfigs(latest.appMetadata(), databaseDirectory);
+        } catch (IOException | RocksDBException e) {
+            throw new IllegalStateException("error when restoring RocksDB %s from %s".formatted(databaseDirectory,
+                    backupDirectory), e);
+        }
+        log.info("restored database {} from {}", databaseDirectory, backupDirectory);
+    }
+
+    private static void restoreConfigs(String metadata, File databaseDirectory) throws IOException {
+        File[] oldConfigs = databaseDirectory.listFiles((dir, name) -> name.startsWith(CONFIG_FILE_PREFIX));
+        for (File oldConfig : oldConfigs == null ? new File[0] : oldConfigs) {
+            Files.delete(oldConfig.toPath());
+        }
+        var properties = new Properties();
+        properties.load(new StringReader(metadata));
+        Map<String, Properties> configs = new HashMap<>();
+        for (String key : properties.stringPropertyNames()) {
+            int separator = key.indexOf(METADATA_SEPARATOR);
+            String columnFamily = URLDecoder.decode(key.substring(0, separator), UTF_8);
+            configs.computeIfAbsent(columnFamily, name -> new Properties())
+                    .setProperty(key.substring(separator + 1), properties.getProperty(key));
+        }
+        configs.forEach((name, config) -> new ColumnFamilyConfig(config).store(configFile(databaseDirectory, name)));
+    }
+
     /**
      * Closes the database instance.
      * Usage of this {@linkplain RocksDatabase} is not possible after connection is closed.
      */
-    public void close() {
+    public synchronized void close() {
         log.info("closing connection to database " + directory);
+        if (open) {
+            try {
+                flushMemtables(true);
+            } catch (IllegalStateException e) {
+                log.warn("writes to maps without WAL may be lost", e);
+            }
+        }
         open = false;
+        // in-flight single-key writes must not use the database once it's closed
+        groupCommitters.values().forEach(GroupCommitter::close);
+        if (runningCompactions > 0) {
+            // manual compactions would otherwise run to the end, which may take hours
+            db.cancelAllBackgroundWork(false);
+        }
+        awaitBackgroundWork();
+        metrics.close();
+        columnFamilies.values().forEach(columnFamily -> columnFamily.handle.close());
         db.close();
+        columnFamilies.values().forEach(columnFamily -> columnFamily.options.close());
+        columnFamilies.clear();
+        buffers.close();
+        readOptions.close();
+        writeOptions.values().forEach(WriteOptions::close);
+        options.close();
+        if (rateLimiter != null) {
+            rateLimiter.close();
+        }
+        statistics.close();
+    }
+
+    private void awaitBackgroundWork() {
+        boolean interrupted = false;
+        while (runningCompactions > 0 || runningBackups > 0) {
+            log.info("waiting for {} manual compactions and {} backups of database {} to finish", runningCompactions,
+                    runningBackups, directory);
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
     }
 
     private void checkOpened() {
@@ -159,6 +1414,35 @@ class RocksDatabase {
         }
     }
 
+    /**
+     * Returns monitor of write stalls of the database.
+     */
+    WriteStallMonitor writeStallMonitor() {
+        return writeStallMonitor;
+    }
+
+    private Map<ColumnFamilyHandle, ColumnFamilyOptions> openColumnFamilies() {
+        Map<ColumnFamilyHandle, ColumnFamilyOptions> openColumnFamilies = new HashMap<>();
+        columnFamilies.values().forEach(columnFamily ->
+                openColumnFamilies.put(columnFamily.handle(), columnFamily.options()));
+        return openColumnFamilies;
+    }
+
+    /**
+     * Returns metrics of the database.
+     */
+    DatabaseMetrics metrics() {
+        return metrics;
+    }
+
+    /**
+     * Returns the underlying RocksDB instance, e.g. for memory usage calculation.
+     */
+    RocksDB nativeDb() {
+        checkOpened();
+        return db;
+    }
+
     /**
      * Returns directory in which RocksDB is located.
      */
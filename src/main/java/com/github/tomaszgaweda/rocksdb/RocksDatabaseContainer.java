@@ -1,50 +1,173 @@
 package com.github.tomaszgaweda.rocksdb;
 
-import com.hazelcast.map.MapStore;
+import org.rocksdb.MemoryUsageType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
-import java.util.HashMap;
-import java.util.HashSet;
-import java.util.Map;
-import java.util.Set;
+import java.io.File;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
 
 /**
  * Manages open connection to databases.
+ *
+ * All databases share one {@linkplain MemoryBudget}, created with the first database and closed with the last one.
+ * In the same way they share background threads, which periodically sync WAL, flush memtables of maps without WAL
+ * (see {@link Durability}), delete expired entries, back up databases and compact them in off-peak windows.
+ * WAL syncs and memtable flushes bound how many writes can be lost, so they run on their own threads, which long
+ * expiry sweeps, backups and compactions cannot occupy.
  */
 // impl note: this class is using synchronized, as getting RocksDB is not a very common operation (it should be done
 // on startup). Therefore, I am using the simplest mechanism that can be used and not worry about performance here.
 class RocksDatabaseContainer {
 
+    private static final Logger log = LoggerFactory.getLogger(RocksDatabaseContainer.class);
+
     /**
      * Map of db path -> db handler.
      */
     private static final Map<String, DatabaseWithRefs> CACHED_DATABASES = new HashMap<>();
 
+    /**
+     * Memory shared by all cached databases; null if there are no open databases.
+     */
+    private static MemoryBudget memoryBudget;
+
+    /**
+     * Syncs WAL and flushes memtables of all cached databases; null if there are no open databases. Has two threads,
+     * so a slow flush does not delay syncing WAL of other databases.
+     */
+    private static ScheduledExecutorService durabilityScheduler;
+
+    /**
+     * Runs long maintenance tasks of all cached databases: expiry sweeps, backups and compactions; null if there are
+     * no open databases. Has three threads, so a long compaction does not delay backups of other databases.
+     */
+    private static ScheduledExecutorService maintenanceScheduler;
+
     /**
      * @param db database handle.
-     * @param stores mutable set of MapStores that uses given handle.
+     * @param users mutable set of users of given handle, e.g. MapStores or Jet processors.
+     * @param tasks background tasks of the database, cancelled before the database is closed.
      */
-    private record DatabaseWithRefs (RocksDatabase db, Set<MapStore<?, ?>> stores){}
+    private record DatabaseWithRefs (RocksDatabase db, Set<Object> users, List<ScheduledFuture<?>> tasks){}
 
     /**
      * Gets an instance of {@link  RocksDatabase} for given parameters and registers the usage.
+     *
+     * @param user object using the database, e.g. a MapStore; must be passed to {@link #dispose} when done.
+     * @param properties map store properties, used to configure memory budget when the first database is opened
+     *                   and to configure the database when it's opened.
      */
-    static synchronized RocksDatabase getRocksDb (String path, boolean autoCreate, MapStore<?, ?> mapStoreAsking) {
-        DatabaseWithRefs dbWithRefCache = CACHED_DATABASES.computeIfAbsent(path,
-                directory -> new DatabaseWithRefs(new RocksDatabase(directory, autoCreate), new HashSet<>()));
-        dbWithRefCache.stores.add(mapStoreAsking);
+    static synchronized RocksDatabase getRocksDb (String path, boolean autoCreate, Properties properties,
+                                                  Object user) {
+        if (memoryBudget == null) {
+            memoryBudget = new MemoryBudget(properties);
+            log.info("created shared memory budget of {} bytes", memoryBudget.capacity());
+        } else if (!memoryBudget.matches(properties)) {
+            log.warn("memory budget is shared by all databases, ignoring different budget requested for {}", path);
+        }
+        if (durabilityScheduler == null) {
+            durabilityScheduler = newScheduler(2, "rocksdb-durability");
+            maintenanceScheduler = newScheduler(3, "rocksdb-maintenance");
+        }
+        DatabaseWithRefs dbWithRefCache = CACHED_DATABASES.computeIfAbsent(path, directory -> {
+            var config = new DatabaseConfig(properties);
+            var db = new RocksDatabase(directory, autoCreate, memoryBudget, config);
+            List<ScheduledFuture<?>> tasks = new ArrayList<>();
+            schedule(durabilityScheduler, tasks, db::syncWal, config.walSyncIntervalMillis(), directory);
+            schedule(durabilityScheduler, tasks, db::flushMemtables, config.memtableFlushIntervalMillis(), directory);
+            schedule(maintenanceScheduler, tasks, db::removeExpired, config.expirySweepIntervalMillis(), directory);
+            if (config.backupDirectory() != null) {
+                schedule(maintenanceScheduler, tasks, db::backup, config.backupIntervalMillis(), directory);
+            }
+            OffPeakCompaction compaction = OffPeakCompaction.of(config.compactionWindow(), db::compactAll);
+            if (compaction != null) {
+                schedule(maintenanceScheduler, tasks, compaction, OffPeakCompaction.CHECK_INTERVAL_MILLIS, directory);
+            }
+            return new DatabaseWithRefs(db, new HashSet<>(), tasks);
+        });
+        dbWithRefCache.users.add(user);
         return dbWithRefCache.db;
     }
 
+    private static ScheduledExecutorService newScheduler(int threads, String name) {
+        return Executors.newScheduledThreadPool(threads, runnable -> {
+            var thread = new Thread(runnable, name);
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    private static void schedule(ScheduledExecutorService scheduler, List<ScheduledFuture<?>> tasks, Runnable task,
+                                 long intervalMillis, String path) {
+        if (intervalMillis <= 0) {
+            return;
+        }
+        tasks.add(scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                log.warn("background task of database {} failed", path, e);
+            }
+        }, intervalMillis, intervalMillis, MILLISECONDS));
+    }
+
     /**
-     * Removes provided map store from the list of map stores using given database.
+     * Removes provided user from the list of users of given database.
      *
-     * If no other map store uses this database, it will be closed.
+     * If nothing else uses this database, it will be closed.
      */
-    static synchronized void dispose (String path, MapStore<?, ?> mapStoreAsking) {
+    static synchronized void dispose (String path, Object user) {
         DatabaseWithRefs dbWithRefCache = CACHED_DATABASES.get(path);
-        dbWithRefCache.stores.remove(mapStoreAsking);
-        if (dbWithRefCache.stores.isEmpty()) {
+        if (dbWithRefCache == null) {
+            return;
+        }
+        dbWithRefCache.users.remove(user);
+        if (dbWithRefCache.users.isEmpty()) {
+            dbWithRefCache.tasks.forEach(task -> task.cancel(false));
             dbWithRefCache.db.close();
+            CACHED_DATABASES.remove(path);
+        }
+        if (CACHED_DATABASES.isEmpty() && memoryBudget != null) {
+            memoryBudget.close();
+            memoryBudget = null;
+            durabilityScheduler.shutdown();
+            durabilityScheduler = null;
+            maintenanceScheduler.shutdown();
+            maintenanceScheduler = null;
+        }
+    }
+
+    /**
+     * Restores the latest backup from given backup directory into given database directory.
+     *
+     * @throws IllegalStateException if the database is open.
+     */
+    static synchronized void restore(File backupDirectory, File databaseDirectory) {
+        File absoluteDirectory = databaseDirectory.getAbsoluteFile();
+        boolean open = CACHED_DATABASES.values().stream()
+                .anyMatch(dbWithRefs -> dbWithRefs.db.getDirectory().getAbsoluteFile().equals(absoluteDirectory));
+        if (open) {
+            throw new IllegalStateException("database %s is in use and cannot be restored"
+                    .formatted(databaseDirectory));
+        }
+        RocksDatabase.restore(backupDirectory, databaseDirectory);
+    }
+
+    /**
+     * Returns approximate native memory usage of all open databases and the shared cache.
+     */
+    static synchronized Map<MemoryUsageType, Long> memoryUsage() {
+        if (memoryBudget == null) {
+            return Map.of();
         }
+        return memoryBudget.usage(CACHED_DATABASES.values().stream()
+                .map(dbWithRefs -> dbWithRefs.db.nativeDb())
+                .toList());
     }
 }
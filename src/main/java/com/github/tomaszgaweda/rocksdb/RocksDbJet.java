@@ -0,0 +1,274 @@
+package com.github.tomaszgaweda.rocksdb;
+
+import com.hazelcast.core.HazelcastInstance;
+import com.hazelcast.jet.core.AbstractProcessor;
+import com.hazelcast.jet.core.Inbox;
+import com.hazelcast.jet.core.Processor;
+import com.hazelcast.jet.core.ProcessorMetaSupplier;
+import com.hazelcast.jet.pipeline.BatchSource;
+import com.hazelcast.jet.pipeline.Sink;
+import com.hazelcast.jet.pipeline.SinkBuilder;
+import com.hazelcast.jet.pipeline.SourceBuilder;
+import com.hazelcast.jet.pipeline.SourceBuilder.SourceBuffer;
+import com.hazelcast.jet.pipeline.Sinks;
+
+import javax.annotation.Nonnull;
+import java.util.*;
+
+import static com.github.tomaszgaweda.rocksdb.RocksDbMapStore.*;
+import static com.github.tomaszgaweda.rocksdb.SerializationUtils.createSerializer;
+
+/**
+ * Hazelcast Jet source and sink reading and writing maps stored by {@link RocksDbMapStore} directly in RocksDB,
+ * without going through an IMap, e.g. to export, reprocess or seed a whole store.
+ *
+ * Both are configured with the same properties as the map store of the map, so they use the same database,
+ * column family, key encoding, serializer and durability; the database handle is shared with map stores and other
+ * Jet processors of the member, see {@link RocksDatabaseContainer}. Every member reads and writes its own database.
+ *
+ * <ul>
+ *     <li>{@link #source} reads all entries of the map stored on every member; in partition-aware layout only
+ *     partitions owned by the member are read. Entries are read by {@link #LOCAL_PARALLELISM_PARAM} processors
+ *     on every member, each of them scanning its share of key ranges split at SST file boundaries from its own
+ *     snapshot of the database, with large readahead and without filling the block cache.</li>
+ *     <li>{@link #sink} writes entries with batched {@code WriteBatch}es of
+ *     {@link RocksDbMapStore#STORE_ALL_CHUNK_SIZE_PARAM} entries or, if {@link #SINK_BULK_LOAD_PARAM} is true,
+ *     as SST files of {@link RocksDbMapStore#BULK_LOAD_SHARD_SIZE_PARAM} entries ingested into the database, see
+ *     {@link RocksDbMapStore#bulkLoad}. For partition-aware layout, entries must be written on the member owning
+ *     the key's partition, so the sink should be preceded by {@code rebalance(Map.Entry::getKey)}.</li>
+ * </ul>
+ *
+ * Written entries are not added to the IMap and are not seen by value caches and write deduplication of map stores
+ * (see {@link RocksDbMapStore#VALUE_CACHE_SIZE_PARAM} and {@link RocksDbMapStore#WRITE_DEDUP_CAPACITY_PARAM});
+ * like bulk loaded entries, they should be written before the map is loaded.
+ */
+public final class RocksDbJet {
+
+    /**
+     * Number of source and sink processors on every member.
+     */
+    public static final String LOCAL_PARALLELISM_PARAM = "rocksdb.jet.localParallelism";
+
+    /**
+     * Default value of {@link #LOCAL_PARALLELISM_PARAM} parameter.
+     */
+    public static final String LOCAL_PARALLELISM_DEFAULT = "4";
+
+    /**
+     * If true, sink writes entries as ingested SST files instead of write batches.
+     */
+    public static final String SINK_BULK_LOAD_PARAM = "rocksdb.jet.sinkBulkLoad";
+
+    /**
+     * Default value of {@link #SINK_BULK_LOAD_PARAM} parameter.
+     */
+    public static final String SINK_BULK_LOAD_DEFAULT = "false";
+
+    /**
+     * Maximum number of entries emitted by a source processor at once.
+     */
+    static final int SOURCE_FETCH_SIZE = 1024;
+
+    private RocksDbJet() {}
+
+    /**
+     * Returns source of all entries of given map stored on every member.
+     *
+     * @param properties properties of the map store of the map.
+     */
+    public static <K, V> BatchSource<Map.Entry<K, V>> source(String mapName, Properties properties) {
+        int localParallelism = localParallelism(properties);
+        return SourceBuilder.batch("rocksdbSource(" + mapName + ")",
+                        context -> new SourceReader<K, V>(context, mapName, properties))
+                .<Map.Entry<K, V>>fillBufferFn(SourceReader::fill)
+                .destroyFn(SourceReader::close)
+                .distributed(localParallelism)
+                .build();
+    }
+
+    /**
+     * Returns sink writing entries into given map on the member that processes them.
+     *
+     * @param properties properties of the map store of the map.
+     */
+    public static <K, V> Sink<Map.Entry<K, V>> sink(String mapName, Properties properties) {
+        int localParallelism = localParallelism(properties);
+        return Sinks.fromProcessor("rocksdbSink(" + mapName + ")",
+                ProcessorMetaSupplier.of(localParallelism, () -> new SinkProcessor(mapName, properties)));
+    }
+
+    private static int localParallelism(Properties properties) {
+        int localParallelism = Integer.parseInt(properties.getProperty(LOCAL_PARALLELISM_PARAM,
+                LOCAL_PARALLELISM_DEFAULT));
+        if (localParallelism <= 0) {
+            throw new IllegalArgumentException("local parallelism must be positive, was " + localParallelism);
+        }
+        return localParallelism;
+    }
+
+    /**
+     * Map opened by a Jet processor, registered as a user of the database.
+     */
+    private record OpenedMap(String path, RocksDatabase database, RocksMap map, Class<?> keyClass,
+                             Class<?> valueClass) {
+
+        static OpenedMap open(HazelcastInstance hazelcastInstance, String mapName, Properties properties,
+                              Object user) {
+            String path = properties.getProperty(DATABASE_PATH_PARAM);
+            if (path == null) {
+                throw new IllegalArgumentException(DATABASE_PATH_PARAM + " must be provided");
+            }
+            if (properties.getProperty(VALUE_CLASS_PARAM) == null) {
+                throw new IllegalArgumentException(VALUE_CLASS_PARAM + " must be provided");
+            }
+            Class<?> keyClass = loadClass(properties.getProperty(KEY_CLASS_PARAM, KEY_CLASS_DEFAULT));
+            Class<?> valueClass = loadClass(properties.getProperty(VALUE_CLASS_PARAM));
+            var columnFamilyConfig = new ColumnFamilyConfig(properties);
+            if (columnFamilyConfig.keyEncoding() == KeyEncoding.ORDERED && !OrderedKeySerializer.supports(keyClass)) {
+                throw new IllegalArgumentException("ordered key encoding does not support keys of " + keyClass);
+            }
+            boolean autoCreate = Boolean.parseBoolean(properties.getProperty(DATABASE_AUTOCREATION_PARAM,
+                    DATABASE_AUTOCREATION_DEFAULT));
+            RocksDatabase database = RocksDatabaseContainer.getRocksDb(path, autoCreate, properties, user);
+            try {
+                Serializer serializer = createSerializer(properties.getProperty(SERIALIZER_PARAM, SERIALIZER_DEFAULT),
+                        hazelcastInstance);
+                KeyPartitioner partitioner = columnFamilyConfig.partitionPrefix()
+                        ? KeyPartitioner.of(hazelcastInstance.getPartitionService())
+                        : null;
+                var durability = Durability.valueOf(properties.getProperty(DURABILITY_PARAM, DURABILITY_DEFAULT));
+                RocksMap map = database.openMap(properties.getProperty(COLUMN_FAMILY_PARAM, mapName),
+                        columnFamilyConfig, serializer, partitioner, durability);
+                return new OpenedMap(path, database, map, keyClass, valueClass);
+            } catch (RuntimeException e) {
+                RocksDatabaseContainer.dispose(path, user);
+                throw e;
+            }
+        }
+
+        private static Class<?> loadClass(String name) {
+            try {
+                return Class.forName(name);
+            } catch (ClassNotFoundException e) {
+                throw new IllegalArgumentException("error initializing RocksDB Jet connector", e);
+            }
+        }
+
+        void close(Object user) {
+            RocksDatabaseContainer.dispose(path, user);
+        }
+    }
+
+    /**
+     * State of a single source processor, reading every {@code localParallelism}-th key range of the map.
+     */
+    private static final class SourceReader<K, V> {
+
+        private final OpenedMap opened;
+        private final RocksEntryReader<K, V> reader;
+
+        @SuppressWarnings("unchecked")
+        SourceReader(Processor.Context context, String mapName, Properties properties) {
+            this.opened = OpenedMap.open(context.hazelcastInstance(), mapName, properties, this);
+            try {
+                int localParallelism = context.localParallelism();
+                List<KeyRange> ranges = opened.database().splitLocalRanges(opened.map(), 4 * localParallelism);
+                List<KeyRange> ownRanges = new ArrayList<>();
+                for (int i = context.localProcessorIndex(); i < ranges.size(); i += localParallelism) {
+                    ownRanges.add(ranges.get(i));
+                }
+                this.reader = opened.database().entries(opened.map(), ownRanges, (Class<K>) opened.keyClass(),
+                        (Class<V>) opened.valueClass());
+            } catch (RuntimeException e) {
+                opened.close(this);
+                throw e;
+            }
+        }
+
+        void fill(SourceBuffer<Map.Entry<K, V>> buffer) {
+            if (!reader.read(SOURCE_FETCH_SIZE, buffer::add)) {
+                buffer.close();
+            }
+        }
+
+        void close() {
+            reader.close();
+            opened.close(this);
+        }
+    }
+
+    /**
+     * Sink processor; unlike sinks created with {@link SinkBuilder}, it's notified when the input is complete,
+     * so it can keep entries until a whole SST file can be written.
+     */
+    private static final class SinkProcessor extends AbstractProcessor {
+
+        private final String mapName;
+        private final Properties properties;
+        private final Map<Object, Object> buffer = new LinkedHashMap<>();
+        private OpenedMap opened;
+        private boolean bulkLoad;
+        private int storeAllChunkSize;
+        private int bulkLoadShardSize;
+
+        SinkProcessor(String mapName, Properties properties) {
+            this.mapName = mapName;
+            this.properties = properties;
+        }
+
+        @Override
+        public boolean isCooperative() {
+            return false;
+        }
+
+        @Override
+        protected void init(@Nonnull Context context) {
+            this.bulkLoad = Boolean.parseBoolean(properties.getProperty(SINK_BULK_LOAD_PARAM, SINK_BULK_LOAD_DEFAULT));
+            this.storeAllChunkSize = Integer.parseInt(properties.getProperty(STORE_ALL_CHUNK_SIZE_PARAM,
+                    STORE_ALL_CHUNK_SIZE_DEFAULT));
+            this.bulkLoadShardSize = Integer.parseInt(properties.getProperty(BULK_LOAD_SHARD_SIZE_PARAM,
+                    BULK_LOAD_SHARD_SIZE_DEFAULT));
+            this.opened = OpenedMap.open(context.hazelcastInstance(), mapName, properties, this);
+        }
+
+        @Override
+        public void process(int ordinal, @Nonnull Inbox inbox) {
+            for (Object item; (item = inbox.poll()) != null; ) {
+                var entry = (Map.Entry<?, ?>) item;
+                buffer.put(entry.getKey(), entry.getValue());
+                if (bulkLoad && buffer.size() >= bulkLoadShardSize) {
+                    flush();
+                }
+            }
+            if (!bulkLoad) {
+                flush();
+            }
+        }
+
+        @Override
+        public boolean complete() {
+            flush();
+            return true;
+        }
+
+        private void flush() {
+            if (buffer.isEmpty()) {
+                return;
+            }
+            if (bulkLoad) {
+                // processors of the sink already write files in parallel
+                opened.database().bulkLoad(opened.map(), buffer.entrySet().iterator(), bulkLoadShardSize, 1);
+            } else {
+                opened.database().putAll(opened.map(), buffer, storeAllChunkSize);
+            }
+            buffer.clear();
+        }
+
+        @Override
+        public void close() {
+            if (opened != null) {
+                opened.close(this);
+            }
+        }
+    }
+}
@@ -1,16 +1,21 @@
 package com.github.tomaszgaweda.rocksdb;
 
 import com.hazelcast.core.HazelcastInstance;
+import com.hazelcast.internal.metrics.DynamicMetricsProvider;
+import com.hazelcast.internal.metrics.MetricDescriptor;
+import com.hazelcast.internal.metrics.MetricsRegistry;
 import com.hazelcast.map.MapLoaderLifecycleSupport;
 import com.hazelcast.map.MapStore;
+import org.rocksdb.MemoryUsageType;
 
 import java.io.File;
-import java.util.Collection;
-import java.util.Map;
-import java.util.Properties;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
 
 import static com.github.tomaszgaweda.rocksdb.RocksDatabaseContainer.dispose;
 import static com.github.tomaszgaweda.rocksdb.RocksDatabaseContainer.getRocksDb;
+import static com.github.tomaszgaweda.rocksdb.SerializationUtils.createSerializer;
 import static java.util.Collections.emptyList;
 
 /**
@@ -19,7 +24,12 @@ import static java.util.Collections.emptyList;
  * Can be used on any type of map.
  *
  * Instances of RocksDB will be reused, so if few maps want to reuse the same K-V store, then only one connection will
- * be kept in memory.
+ * be kept in memory. Each map keeps its entries in a separate column family named after the map.
+ *
+ * Latency, throughput and size of all operations, per map and per database, together with RocksDB statistics are
+ * published in Hazelcast's metrics, so they are visible in Management Center and JMX; metrics of a map have prefix
+ * {@code rocksdb.map} and the map name as discriminator, metrics of a database have prefix {@code rocksdb.database}
+ * and the database path as discriminator.
  *
  * User have two options to use this map store implementation in his code:
  * <ol>
@@ -61,10 +71,250 @@ import static java.util.Collections.emptyList;
  *                 <td>{@link #DATABASE_AUTOCREATION_DEFAULT}</td>
  *             </tr>
  *             <tr>
+ *                 <td>rocksdb.database.groupCommit</td>
+ *                 <td>{@linkplain #GROUP_COMMIT_PARAM}</td>
+ *                 <td>{@link #GROUP_COMMIT_DEFAULT}</td>
+ *             </tr>
+ *             <tr>
+ *                 <td>rocksdb.database.walSyncIntervalMillis</td>
+ *                 <td>{@linkplain #WAL_SYNC_INTERVAL_PARAM}</td>
+ *                 <td>{@link #WAL_SYNC_INTERVAL_DEFAULT}</td>
+ *             </tr>
+ *             <tr>
+ *                 <td>rocksdb.database.memtableFlushIntervalMillis</td>
+ *                 <td>{@linkplain #MEMTABLE_FLUSH_INTERVAL_PARAM}</td>
+ *                 <td>{@link #MEMTABLE_FLUSH_INTERVAL_DEFAULT}</td>
+ *             </tr>
+ *             <tr>
+ *                 <td>rocksdb.database.backupDirectory</td>
+ *                 <td>{@linkplain #BACKUP_DIRECTORY_PARAM}</td>
+ *                 <td>{@link #BACKUP_DIRECTORY_DEFAULT}</td>
+ *             </tr>
+ *             <tr>
+ *                 <td>rocksdb.database.backupIntervalMillis</td>
+ *                 <td>{@linkplain #BACKUP_INTERVAL_PARAM}</td>
+ *                 <td>{@link #BACKUP_INTERVAL_DEFAULT}</td>
+ *             </tr>
+ *             <tr>
+ *                 <td>rocksdb.database.backupsToKeep</td>
+ *                 <td>{@linkplain #BACKUPS_TO_KEEP_PARAM}</td>
+ *                 <td>{@link #BACKUPS_TO_KEEP_DEFAULT}</td>
+ *             </tr>
+ *             <tr>
+ *                 <td>rocksdb.database.rateLimitBytesPerSecond</td>
+ *                 <td>{@linkplain #RATE_LIMIT_PARAM}</td>
+ *                 <td>{@link #RATE_LIMIT_DEFAULT}</td>
+ *             </tr>
+ *             <tr>
+ *                 <td>rocksdb.database.rateLimitAutoTune</td>
+ *                 <td>{@linkplain #RATE_LIMIT_AUTO_TUNE_PARAM}</td>
+ *                 <td>{@link #RATE_LIMIT_AUTO_TUNE_DEFAULT}</td>
+ *             </tr>
+ *             <tr>
+ *                 <td>rocksdb.database.maxBackgroundJobs</td>
+ *                 <td>{@linkplain #MAX_BACKGROUND_JOBS_PARAM}</td>
+ *                 <td>{@link #MAX_BACKGROUND_JOBS_DEFAULT}</td>
+ *             </tr>
+ *             <tr>
+ *                 <td>rocksdb.database.maxSubcompactions</td>
+ *                 <td>{@linkplain #MAX_SUBCOMPACTIONS_PARAM}</td>
+ *                 <td>{@link #MAX_SUBCOMPACTIONS_DEFAULT}</td>
+ *             </tr>
+ *             <tr>
+ *                 <td>rocksdb.database.compactionWindow</td>
+ *                 <td>{@linkplain #COMPACTION_WINDOW_PARAM}</td>
+ *                 <td>{@link #COMPACTION_WINDOW_DEFAULT}</td>
+ *             </tr>
+ *             <tr>
  *                 <td>rocksdb.mapstore.valueClass</td>
  *                 <td>{@linkplain #VALUE_CLASS_PARAM}</td>
  *                 <td>-</td>
  *             </tr>
+ *             <tr>
+ *                 <td>rocksdb.memory.budget</td>
+ *                 <td>{@linkplain #MEMORY_BUDGET_PARAM}</td>
+ *                 <td>{@link #MEMORY_BUDGET_DEFAULT}</td>
+ *             </tr>
+ *             <tr>
+ *                 <td>rocksdb.memory.writeBufferRatio</td>
+ *                 <td>{@linkplain #MEMORY_WRITE_BUFFER_RATIO_PARAM}</td>
+ *                 <td>{@link #MEMORY_WRITE_BUFFER_RATIO_DEFAULT}</td>
+ *             </tr>
+ *             <tr>
+ *                 <td>rocksdb.memory.cacheType</td>
+ *                 <td>{@linkplain #MEMORY_CACHE_TYPE_PARAM}</td>
+ *                 <td>{@link #MEMORY_CACHE_TYPE_DEFAULT}</td>
+ *             </tr>
+ *             <tr>
+ *                 <td>rocksdb.mapstore.keyClass</td>
+ *                 <td>{@linkplain #KEY_CLASS_PARAM}</td>
+ *                 <td>{@link #KEY_CLASS_DEFAULT}</td>
+ *             </tr>
+ *             <tr>
+ *                 <td>rocksdb.mapstore.keyLoadMode</td>
+ *                 <td>{@linkplain #KEY_LOAD_MODE_PARAM}</td>
+ *                 <td>{@link #KEY_LOAD_MODE_DEFAULT}</td>
+ *             </tr>
+ *             <tr>
+ *                 <td>rocksdb.mapstore.keyLoadChunkSize</td>
+ *                 <td>{@linkplain #KEY_LOAD_CHUNK_SIZE_PARAM}</td>
+ *                 <td>{@link #KEY_LOAD_CHUNK_SIZE_DEFAULT}</td>
+ *             </tr>
+ *             <tr>
+ *                 <td>rocksdb.mapstore.keyLoadParallelism</td>
+ *                 <td>{@linkplain #KEY_LOAD_PARALLELISM_PARAM}</td>
+ *                 <td>{@link #KEY_LOAD_PARALLELISM_DEFAULT}</td>
+ *             </tr>
+ *             <tr>
+ *                 <td>rocksdb.mapstore.loadAllChunkSize</td>
+ *                 <td>{@linkplain #LOAD_ALL_CHUNK_SIZE_PARAM}</td>
+ *                 <td>{@link #LOAD_ALL_CHUNK_SIZE_DEFAULT}</td>
+ *             </tr>
+ *             <tr>
+ *                 <td>rocksdb.mapstore.loadAllParallelism</td>
+ *                 <td>{@linkplain #LOAD_ALL_PARALLELISM_PARAM}</td>
+ *                 <td>{@link #LOAD_ALL_PARALLELISM_DEFAULT}</td>
+ *             </tr>
+ *             <tr>
+ *                 <td>rocksdb.mapstore.storeAllChunkSize</td>
+ *                 <td>{@linkplain #STORE_ALL_CHUNK_SIZE_PARAM}</td>
+ *                 <td>{@link #STORE_ALL_CHUNK_SIZE_DEFAULT}</td>
+ *             </tr>
+ *             <tr>
+ *                 <td>rocksdb.mapstore.writeStallTimeoutMillis</td>
+ *                 <td>{@linkplain #WRITE_STALL_TIMEOUT_PARAM}</td>
+ *                 <td>{@link #WRITE_STALL_TIMEOUT_DEFAULT}</td>
+ *             </tr>
+ *             <tr>
+ *                 <td>rocksdb.mapstore.bulkLoadShardSize</td>
+ *                 <td>{@linkplain #BULK_LOAD_SHARD_SIZE_PARAM}</td>
+ *                 <td>{@link #BULK_LOAD_SHARD_SIZE_DEFAULT}</td>
+ *             </tr>
+ *             <tr>
+ *                 <td>rocksdb.mapstore.bulkLoadParallelism</td>
+ *                 <td>{@linkplain #BULK_LOAD_PARALLELISM_PARAM}</td>
+ *                 <td>{@link #BULK_LOAD_PARALLELISM_DEFAULT}</td>
+ *             </tr>
+ *             <tr>
+ *                 <td>rocksdb.mapstore.serializer</td>
+ *                 <td>{@linkplain #SERIALIZER_PARAM}</td>
+ *                 <td>{@link #SERIALIZER_DEFAULT}</td>
+ *             </tr>
+ *             <tr>
+ *                 <td>rocksdb.mapstore.durability</td>
+ *                 <td>{@linkplain #DURABILITY_PARAM}</td>
+ *                 <td>{@link #DURABILITY_DEFAULT}</td>
+ *             </tr>
+ *             <tr>
+ *                 <td>rocksdb.mapstore.valueCacheSize</td>
+ *                 <td>{@linkplain #VALUE_CACHE_SIZE_PARAM}</td>
+ *                 <td>{@link #VALUE_CACHE_SIZE_DEFAULT}</td>
+ *             </tr>
+ *             <tr>
+ *                 <td>rocksdb.mapstore.writeDedupCapacity</td>
+ *                 <td>{@linkplain #WRITE_DEDUP_CAPACITY_PARAM}</td>
+ *                 <td>{@link #WRITE_DEDUP_CAPACITY_DEFAULT}</td>
+ *             </tr>
+ *             <tr>
+ *                 <td>rocksdb.mapstore.columnFamily</td>
+ *                 <td>{@linkplain #COLUMN_FAMILY_PARAM}</td>
+ *                 <td>name of the map</td>
+ *             </tr>
+ *             <tr>
+ *                 <td>rocksdb.columnFamily.partitionPrefix</td>
+ *                 <td>{@linkplain #PARTITION_PREFIX_PARAM}</td>
+ *                 <td>{@link #PARTITION_PREFIX_DEFAULT}</td>
+ *             </tr>
+ *             <tr>
+ *                 <td>rocksdb.columnFamily.ttlSeconds</td>
+ *                 <td>{@linkplain #TTL_SECONDS_PARAM}</td>
+ *                 <td>{@link #TTL_SECONDS_DEFAULT}</td>
+ *             </tr>
+ *             <tr>
+ *                 <td>rocksdb.columnFamily.keyEncoding</td>
+ *                 <td>{@linkplain #KEY_ENCODING_PARAM}</td>
+ *                 <td>{@link #KEY_ENCODING_DEFAULT}</td>
+ *             </tr>
+ *             <tr>
+ *                 <td>rocksdb.database.expirySweepIntervalMillis</td>
+ *                 <td>{@linkplain #EXPIRY_SWEEP_INTERVAL_PARAM}</td>
+ *                 <td>{@link #EXPIRY_SWEEP_INTERVAL_DEFAULT}</td>
+ *             </tr>
+ *             <tr>
+ *                 <td>rocksdb.columnFamily.writeBufferSize</td>
+ *                 <td>{@linkplain #WRITE_BUFFER_SIZE_PARAM}</td>
+ *                 <td>{@link #WRITE_BUFFER_SIZE_DEFAULT}</td>
+ *             </tr>
+ *             <tr>
+ *                 <td>rocksdb.columnFamily.maxWriteBufferNumber</td>
+ *                 <td>{@linkplain #MAX_WRITE_BUFFER_NUMBER_PARAM}</td>
+ *                 <td>{@link #MAX_WRITE_BUFFER_NUMBER_DEFAULT}</td>
+ *             </tr>
+ *             <tr>
+ *                 <td>rocksdb.columnFamily.compactionStyle</td>
+ *                 <td>{@linkplain #COMPACTION_STYLE_PARAM}</td>
+ *                 <td>{@link #COMPACTION_STYLE_DEFAULT}</td>
+ *             </tr>
+ *             <tr>
+ *                 <td>rocksdb.columnFamily.bloomFilterBitsPerKey</td>
+ *                 <td>{@linkplain #BLOOM_FILTER_BITS_PARAM}</td>
+ *                 <td>{@link #BLOOM_FILTER_BITS_DEFAULT}</td>
+ *             </tr>
+ *             <tr>
+ *                 <td>rocksdb.columnFamily.compression</td>
+ *                 <td>{@linkplain #COMPRESSION_PARAM}</td>
+ *                 <td>{@link #COMPRESSION_DEFAULT}</td>
+ *             </tr>
+ *             <tr>
+ *                 <td>rocksdb.columnFamily.compressionPerLevel</td>
+ *                 <td>{@linkplain #COMPRESSION_PER_LEVEL_PARAM}</td>
+ *                 <td>{@link #COMPRESSION_PER_LEVEL_DEFAULT}</td>
+ *             </tr>
+ *             <tr>
+ *                 <td>rocksdb.columnFamily.bottommostCompression</td>
+ *                 <td>{@linkplain #BOTTOMMOST_COMPRESSION_PARAM}</td>
+ *                 <td>{@link #BOTTOMMOST_COMPRESSION_DEFAULT}</td>
+ *             </tr>
+ *             <tr>
+ *                 <td>rocksdb.columnFamily.compressionDictionaryBytes</td>
+ *                 <td>{@linkplain #COMPRESSION_DICTIONARY_BYTES_PARAM}</td>
+ *                 <td>{@link #COMPRESSION_DICTIONARY_BYTES_DEFAULT}</td>
+ *             </tr>
+ *             <tr>
+ *                 <td>rocksdb.columnFamily.zstdTrainingBytes</td>
+ *                 <td>{@linkplain #ZSTD_TRAINING_BYTES_PARAM}</td>
+ *                 <td>{@link #ZSTD_TRAINING_BYTES_DEFAULT}</td>
+ *             </tr>
+ *             <tr>
+ *                 <td>rocksdb.columnFamily.enableBlobFiles</td>
+ *                 <td>{@linkplain #BLOB_FILES_PARAM}</td>
+ *                 <td>{@link #BLOB_FILES_DEFAULT}</td>
+ *             </tr>
+ *             <tr>
+ *                 <td>rocksdb.columnFamily.minBlobSize</td>
+ *                 <td>{@linkplain #MIN_BLOB_SIZE_PARAM}</td>
+ *                 <td>{@link #MIN_BLOB_SIZE_DEFAULT}</td>
+ *             </tr>
+ *             <tr>
+ *                 <td>rocksdb.columnFamily.blobFileSize</td>
+ *                 <td>{@linkplain #BLOB_FILE_SIZE_PARAM}</td>
+ *                 <td>{@link #BLOB_FILE_SIZE_DEFAULT}</td>
+ *             </tr>
+ *             <tr>
+ *                 <td>rocksdb.columnFamily.blobCompression</td>
+ *                 <td>{@linkplain #BLOB_COMPRESSION_PARAM}</td>
+ *                 <td>{@link #BLOB_COMPRESSION_DEFAULT}</td>
+ *             </tr>
+ *             <tr>
+ *                 <td>rocksdb.columnFamily.blobGarbageCollection</td>
+ *                 <td>{@linkplain #BLOB_GC_PARAM}</td>
+ *                 <td>{@link #BLOB_GC_DEFAULT}</td>
+ *             </tr>
+ *             <tr>
+ *                 <td>rocksdb.columnFamily.blobGarbageCollectionAgeCutoff</td>
+ *                 <td>{@linkplain #BLOB_GC_AGE_CUTOFF_PARAM}</td>
+ *                 <td>{@link #BLOB_GC_AGE_CUTOFF_DEFAULT}</td>
+ *             </tr>
  *         </table>
  *         </li>
  *
@@ -106,13 +356,574 @@ public class RocksDbMapStore<K, V> implements MapStore<K, V>, MapLoaderLifecycle
      */
     public static final String DATABASE_AUTOCREATION_DEFAULT = "true";
 
+    /**
+     * If true, {@link #store} and {@link #delete} calls of concurrent threads (e.g. partition threads with
+     * write-through) are merged into a single write batch, which is written with a single WAL append. Useful mostly
+     * for synchronous writes. Applies to the whole database and is taken from the map store that opens it first.
+     */
+    public static final String GROUP_COMMIT_PARAM = "rocksdb.database.groupCommit";
+
+    /**
+     * Default value of {@link #GROUP_COMMIT_PARAM} parameter.
+     */
+    public static final String GROUP_COMMIT_DEFAULT = "false";
+
+    /**
+     * Interval in milliseconds in which WAL of the database is fsynced in background, bounding the data loss window
+     * of {@link Durability#ASYNC} maps on power failure; 0 disables background sync. Applies to the whole database
+     * and is taken from the map store that opens it first.
+     */
+    public static final String WAL_SYNC_INTERVAL_PARAM = "rocksdb.database.walSyncIntervalMillis";
+
+    /**
+     * Default value of {@link #WAL_SYNC_INTERVAL_PARAM} parameter.
+     */
+    public static final String WAL_SYNC_INTERVAL_DEFAULT = "1000";
+
+    /**
+     * Interval in milliseconds in which memtables of {@link Durability#NO_WAL} maps are flushed in background,
+     * bounding their data loss window on crash; 0 disables background flush. Applies to the whole database
+     * and is taken from the map store that opens it first.
+     */
+    public static final String MEMTABLE_FLUSH_INTERVAL_PARAM = "rocksdb.database.memtableFlushIntervalMillis";
+
+    /**
+     * Default value of {@link #MEMTABLE_FLUSH_INTERVAL_PARAM} parameter.
+     */
+    public static final String MEMTABLE_FLUSH_INTERVAL_DEFAULT = "60000";
+
+    /**
+     * Directory of incremental backups of the database, taken by {@link #backup} and every
+     * {@link #BACKUP_INTERVAL_PARAM} milliseconds; empty if backups are not used.
+     */
+    public static final String BACKUP_DIRECTORY_PARAM = "rocksdb.database.backupDirectory";
+
+    /**
+     * Default value of {@link #BACKUP_DIRECTORY_PARAM} parameter.
+     */
+    public static final String BACKUP_DIRECTORY_DEFAULT = "";
+
+    /**
+     * Interval of scheduled backups to {@link #BACKUP_DIRECTORY_PARAM} in milliseconds; 0 disables scheduled
+     * backups.
+     */
+    public static final String BACKUP_INTERVAL_PARAM = "rocksdb.database.backupIntervalMillis";
+
+    /**
+     * Default value of {@link #BACKUP_INTERVAL_PARAM} parameter.
+     */
+    public static final String BACKUP_INTERVAL_DEFAULT = "0";
+
+    /**
+     * Number of the latest backups kept in {@link #BACKUP_DIRECTORY_PARAM}; older backups are deleted.
+     */
+    public static final String BACKUPS_TO_KEEP_PARAM = "rocksdb.database.backupsToKeep";
+
+    /**
+     * Default value of {@link #BACKUPS_TO_KEEP_PARAM} parameter.
+     */
+    public static final String BACKUPS_TO_KEEP_DEFAULT = "3";
+
+    /**
+     * Limit of background I/O (flushes and compactions) of the database in bytes per second; 0 disables the limit.
+     * Smooths out write bursts of compactions, which otherwise compete with loads for disk bandwidth.
+     */
+    public static final String RATE_LIMIT_PARAM = "rocksdb.database.rateLimitBytesPerSecond";
+
+    /**
+     * Default value of {@link #RATE_LIMIT_PARAM} parameter.
+     */
+    public static final String RATE_LIMIT_DEFAULT = "0";
+
+    /**
+     * If true, {@link #RATE_LIMIT_PARAM} is the upper bound of a limit that RocksDB adjusts to the actual demand
+     * of background I/O.
+     */
+    public static final String RATE_LIMIT_AUTO_TUNE_PARAM = "rocksdb.database.rateLimitAutoTune";
+
+    /**
+     * Default value of {@link #RATE_LIMIT_AUTO_TUNE_PARAM} parameter.
+     */
+    public static final String RATE_LIMIT_AUTO_TUNE_DEFAULT = "true";
+
+    /**
+     * Maximum number of concurrent background flushes and compactions of the database.
+     */
+    public static final String MAX_BACKGROUND_JOBS_PARAM = "rocksdb.database.maxBackgroundJobs";
+
+    /**
+     * Default value of {@link #MAX_BACKGROUND_JOBS_PARAM} parameter.
+     */
+    public static final String MAX_BACKGROUND_JOBS_DEFAULT = "2";
+
+    /**
+     * Maximum number of threads that a single compaction is split into.
+     */
+    public static final String MAX_SUBCOMPACTIONS_PARAM = "rocksdb.database.maxSubcompactions";
+
+    /**
+     * Default value of {@link #MAX_SUBCOMPACTIONS_PARAM} parameter.
+     */
+    public static final String MAX_SUBCOMPACTIONS_DEFAULT = "1";
+
+    /**
+     * Daily window of local time, given as {@code HH:mm-HH:mm}, in which all maps of the database are fully compacted
+     * once; the window may span midnight, e.g. {@code 23:00-05:00}. Empty if scheduled compaction is not used.
+     * See also {@link #compact()}.
+     */
+    public static final String COMPACTION_WINDOW_PARAM = "rocksdb.database.compactionWindow";
+
+    /**
+     * Default value of {@link #COMPACTION_WINDOW_PARAM} parameter.
+     */
+    public static final String COMPACTION_WINDOW_DEFAULT = "";
+
     /**
      * Name of the class that MapStore will handle as a value.
      */
     public static final String VALUE_CLASS_PARAM = "rocksdb.mapstore.valueClass";
 
+    /**
+     * Name of the class that MapStore will handle as a key.
+     */
+    public static final String KEY_CLASS_PARAM = "rocksdb.mapstore.keyClass";
+
+    /**
+     * Default value of {@link #KEY_CLASS_PARAM} parameter.
+     */
+    public static final String KEY_CLASS_DEFAULT = "java.lang.Object";
+
+    /**
+     * How keys are provided for the initial load of the map, one of {@link KeyLoadMode} names. Independent of
+     * {@link com.hazelcast.config.MapStoreConfig#setInitialLoadMode initial load mode} of the map, which defines when
+     * the keys are loaded.
+     */
+    public static final String KEY_LOAD_MODE_PARAM = "rocksdb.mapstore.keyLoadMode";
+
+    /**
+     * Default value of {@link #KEY_LOAD_MODE_PARAM} parameter.
+     */
+    public static final String KEY_LOAD_MODE_DEFAULT = "STREAMING";
+
+    /**
+     * Number of keys read and decoded at once by {@link #loadAllKeys()}.
+     */
+    public static final String KEY_LOAD_CHUNK_SIZE_PARAM = "rocksdb.mapstore.keyLoadChunkSize";
+
+    /**
+     * Default value of {@link #KEY_LOAD_CHUNK_SIZE_PARAM} parameter.
+     */
+    public static final String KEY_LOAD_CHUNK_SIZE_DEFAULT = "1000";
+
+    /**
+     * Number of threads reading keys in {@link KeyLoadMode#PARALLEL} key load mode.
+     */
+    public static final String KEY_LOAD_PARALLELISM_PARAM = "rocksdb.mapstore.keyLoadParallelism";
+
+    /**
+     * Default value of {@link #KEY_LOAD_PARALLELISM_PARAM} parameter.
+     */
+    public static final String KEY_LOAD_PARALLELISM_DEFAULT = "4";
+
+    /**
+     * Number of keys read by a single task of {@link #loadAll} if {@link #LOAD_ALL_PARALLELISM_PARAM} is greater
+     * than 1; smaller requests are read on the calling thread.
+     */
+    public static final String LOAD_ALL_CHUNK_SIZE_PARAM = "rocksdb.mapstore.loadAllChunkSize";
+
+    /**
+     * Default value of {@link #LOAD_ALL_CHUNK_SIZE_PARAM} parameter.
+     */
+    public static final String LOAD_ALL_CHUNK_SIZE_DEFAULT = "1000";
+
+    /**
+     * Number of threads of the map store's pool that serialize, read and deserialize chunks of large {@link #loadAll}
+     * requests in parallel; 1 reads all keys on the calling thread.
+     */
+    public static final String LOAD_ALL_PARALLELISM_PARAM = "rocksdb.mapstore.loadAllParallelism";
+
+    /**
+     * Default value of {@link #LOAD_ALL_PARALLELISM_PARAM} parameter.
+     */
+    public static final String LOAD_ALL_PARALLELISM_DEFAULT = "1";
+
+    /**
+     * Number of entries written by {@link #storeAll} in one batch while the database is not under
+     * {@link WritePressure}; under pressure all entries are written in a single batch.
+     */
+    public static final String STORE_ALL_CHUNK_SIZE_PARAM = "rocksdb.mapstore.storeAllChunkSize";
+
+    /**
+     * Default value of {@link #STORE_ALL_CHUNK_SIZE_PARAM} parameter.
+     */
+    public static final String STORE_ALL_CHUNK_SIZE_DEFAULT = "1000";
+
+    /**
+     * Maximum time in milliseconds that stores and deletes wait while RocksDB stopped writes, after which they fail.
+     * Failed write-behind batches are retried by Hazelcast, so entries stay in the write-behind queue, which then
+     * pushes back on writers once its capacity is reached. 0 disables the timeout, so writes block inside RocksDB
+     * until compactions catch up.
+     */
+    public static final String WRITE_STALL_TIMEOUT_PARAM = "rocksdb.mapstore.writeStallTimeoutMillis";
+
+    /**
+     * Default value of {@link #WRITE_STALL_TIMEOUT_PARAM} parameter.
+     */
+    public static final String WRITE_STALL_TIMEOUT_DEFAULT = "0";
+
+    /**
+     * Number of entries sorted and written to a single SST file by {@link #bulkLoad}. Up to
+     * {@link #BULK_LOAD_PARALLELISM_PARAM} + 1 shards are held on heap at once, so the size should be lowered
+     * for large values.
+     */
+    public static final String BULK_LOAD_SHARD_SIZE_PARAM = "rocksdb.mapstore.bulkLoadShardSize";
+
+    /**
+     * Default value of {@link #BULK_LOAD_SHARD_SIZE_PARAM} parameter.
+     */
+    public static final String BULK_LOAD_SHARD_SIZE_DEFAULT = "100000";
+
+    /**
+     * Number of threads writing SST files in {@link #bulkLoad}.
+     */
+    public static final String BULK_LOAD_PARALLELISM_PARAM = "rocksdb.mapstore.bulkLoadParallelism";
+
+    /**
+     * Default value of {@link #BULK_LOAD_PARALLELISM_PARAM} parameter.
+     */
+    public static final String BULK_LOAD_PARALLELISM_DEFAULT = "4";
+
+    /**
+     * Serializer used for keys and values: {@code java} for standard Java serialization, {@code hazelcast} for
+     * the SerializationService of the Hazelcast instance (Compact, IdentifiedDataSerializable etc.) or fully qualified
+     * name of a class implementing {@link Serializer}.
+     */
+    public static final String SERIALIZER_PARAM = "rocksdb.mapstore.serializer";
+
+    /**
+     * Default value of {@link #SERIALIZER_PARAM} parameter; Java serialization is kept as the default,
+     * so databases created by previous versions stay readable.
+     */
+    public static final String SERIALIZER_DEFAULT = SerializationUtils.JAVA_SERIALIZER;
+
+    /**
+     * Durability of writes to the map, one of {@link Durability} names.
+     */
+    public static final String DURABILITY_PARAM = "rocksdb.mapstore.durability";
+
+    /**
+     * Default value of {@link #DURABILITY_PARAM} parameter, same as RocksDB's default write options.
+     */
+    public static final String DURABILITY_DEFAULT = "ASYNC";
+
+    /**
+     * Maximum number of deserialized values kept in a cache in front of {@link #load} and {@link #loadAll}, so
+     * entries evicted from the map and loaded again do not hit the database; 0 disables the cache. Cached values
+     * are shared between loads, so they must not be mutated. The cache belongs to the map's column family and is
+     * kept up to date by all writes to it, also by map stores of other members sharing the database and by
+     * {@link RocksDbJet#sink}; its size is taken from the map store that opens the column family first.
+     */
+    public static final String VALUE_CACHE_SIZE_PARAM = "rocksdb.mapstore.valueCacheSize";
+
+    /**
+     * Default value of {@link #VALUE_CACHE_SIZE_PARAM} parameter.
+     */
+    public static final String VALUE_CACHE_SIZE_DEFAULT = "0";
+
+    /**
+     * Number of slots, 8 bytes each, of a table of fingerprints of the last value written under every key, so
+     * {@link #store} and {@link #storeAll} of values equal to the stored ones, e.g. repeated write-behind flushes,
+     * are dropped before they reach the database; 0 disables deduplication. Keys sharing a slot evict each other.
+     * Number of dropped writes is published as {@code dedupDroppedWrites} metric of the map. Cannot be used for
+     * maps with TTL. The table belongs to the map's column family and is kept up to date by all writes to it, also
+     * by map stores of other members sharing the database and by {@link RocksDbJet#sink}; its capacity is taken from
+     * the map store that opens the column family first.
+     */
+    public static final String WRITE_DEDUP_CAPACITY_PARAM = "rocksdb.mapstore.writeDedupCapacity";
+
+    /**
+     * Default value of {@link #WRITE_DEDUP_CAPACITY_PARAM} parameter.
+     */
+    public static final String WRITE_DEDUP_CAPACITY_DEFAULT = "0";
+
+    /**
+     * Name of the column family in which map's entries are stored. By default, it's the name of the map, so every
+     * map sharing the database has its own key space. Databases written by versions that kept entries of all maps
+     * in the default column family keep using it for maps without their own column family. {@link #clear} and
+     * {@link #clearPartition} are available only if the map has its own column family.
+     */
+    public static final String COLUMN_FAMILY_PARAM = "rocksdb.mapstore.columnFamily";
+
+    /**
+     * Size in bytes of a single memtable of the map's column family.
+     */
+    public static final String WRITE_BUFFER_SIZE_PARAM = "rocksdb.columnFamily.writeBufferSize";
+
+    /**
+     * Default value of {@link #WRITE_BUFFER_SIZE_PARAM} parameter, 64 MB.
+     */
+    public static final String WRITE_BUFFER_SIZE_DEFAULT = "67108864";
+
+    /**
+     * Maximum number of memtables of the map's column family kept in memory, including the one being flushed.
+     */
+    public static final String MAX_WRITE_BUFFER_NUMBER_PARAM = "rocksdb.columnFamily.maxWriteBufferNumber";
+
+    /**
+     * Default value of {@link #MAX_WRITE_BUFFER_NUMBER_PARAM} parameter.
+     */
+    public static final String MAX_WRITE_BUFFER_NUMBER_DEFAULT = "2";
+
+    /**
+     * Compaction style of the map's column family, one of {@linkplain org.rocksdb.CompactionStyle} names.
+     * Used only when column family is created.
+     */
+    public static final String COMPACTION_STYLE_PARAM = "rocksdb.columnFamily.compactionStyle";
+
+    /**
+     * Default value of {@link #COMPACTION_STYLE_PARAM} parameter.
+     */
+    public static final String COMPACTION_STYLE_DEFAULT = "LEVEL";
+
+    /**
+     * Bits per key of the bloom filter of the map's column family; 0 disables bloom filter.
+     * Used only when column family is created.
+     */
+    public static final String BLOOM_FILTER_BITS_PARAM = "rocksdb.columnFamily.bloomFilterBitsPerKey";
+
+    /**
+     * Default value of {@link #BLOOM_FILTER_BITS_PARAM} parameter, giving ~1% false positive rate.
+     */
+    public static final String BLOOM_FILTER_BITS_DEFAULT = "10";
+
+    /**
+     * Compression of all levels of the map's column family except the bottommost one, name of
+     * {@link org.rocksdb.CompressionType}. Used only when column family is created or opened.
+     */
+    public static final String COMPRESSION_PARAM = "rocksdb.columnFamily.compression";
+
+    /**
+     * Default value of {@link #COMPRESSION_PARAM} parameter, cheap compression for frequently rewritten levels.
+     */
+    public static final String COMPRESSION_DEFAULT = "LZ4_COMPRESSION";
+
+    /**
+     * Comma-separated compression of every level, starting with level 0, e.g.
+     * {@code NO_COMPRESSION,NO_COMPRESSION,LZ4_COMPRESSION}; overrides {@link #COMPRESSION_PARAM} if not empty.
+     * Used only when column family is created or opened.
+     */
+    public static final String COMPRESSION_PER_LEVEL_PARAM = "rocksdb.columnFamily.compressionPerLevel";
+
+    /**
+     * Default value of {@link #COMPRESSION_PER_LEVEL_PARAM} parameter.
+     */
+    public static final String COMPRESSION_PER_LEVEL_DEFAULT = "";
+
+    /**
+     * Compression of the bottommost level, which holds most of the data, name of {@link org.rocksdb.CompressionType}.
+     * {@code DISABLE_COMPRESSION_OPTION} uses the compression of the other levels. Used only when column family
+     * is created or opened.
+     */
+    public static final String BOTTOMMOST_COMPRESSION_PARAM = "rocksdb.columnFamily.bottommostCompression";
+
+    /**
+     * Default value of {@link #BOTTOMMOST_COMPRESSION_PARAM} parameter.
+     */
+    public static final String BOTTOMMOST_COMPRESSION_DEFAULT = "ZSTD_COMPRESSION";
+
+    /**
+     * Maximum size of the compression dictionary of every SST file; 0 disables dictionaries. Dictionaries make
+     * small values, which compress poorly one by one, compress nearly as well as whole blocks of them.
+     * Used only when column family is created or opened.
+     */
+    public static final String COMPRESSION_DICTIONARY_BYTES_PARAM = "rocksdb.columnFamily.compressionDictionaryBytes";
+
+    /**
+     * Default value of {@link #COMPRESSION_DICTIONARY_BYTES_PARAM} parameter.
+     */
+    public static final String COMPRESSION_DICTIONARY_BYTES_DEFAULT = "0";
+
+    /**
+     * Maximum size of data sampled to train the ZSTD compression dictionary; 0 uses 100 times
+     * {@link #COMPRESSION_DICTIONARY_BYTES_PARAM}. Used only when column family is created or opened.
+     */
+    public static final String ZSTD_TRAINING_BYTES_PARAM = "rocksdb.columnFamily.zstdTrainingBytes";
+
+    /**
+     * Default value of {@link #ZSTD_TRAINING_BYTES_PARAM} parameter.
+     */
+    public static final String ZSTD_TRAINING_BYTES_DEFAULT = "0";
+
+    /**
+     * If true, values of at least {@link #MIN_BLOB_SIZE_PARAM} bytes are stored in separate blob files and only
+     * references to them are kept in SST files, so compactions do not rewrite large values and they do not take
+     * the block cache from small ones. Can be changed for an already existing column family; values already stored
+     * are moved to or from blob files by later compactions.
+     */
+    public static final String BLOB_FILES_PARAM = "rocksdb.columnFamily.enableBlobFiles";
+
+    /**
+     * Default value of {@link #BLOB_FILES_PARAM} parameter.
+     */
+    public static final String BLOB_FILES_DEFAULT = "false";
+
+    /**
+     * Minimal size in bytes of a value stored in a blob file; smaller values are stored in SST files.
+     */
+    public static final String MIN_BLOB_SIZE_PARAM = "rocksdb.columnFamily.minBlobSize";
+
+    /**
+     * Default value of {@link #MIN_BLOB_SIZE_PARAM} parameter.
+     */
+    public static final String MIN_BLOB_SIZE_DEFAULT = "4096";
+
+    /**
+     * Maximum size in bytes of a single blob file.
+     */
+    public static final String BLOB_FILE_SIZE_PARAM = "rocksdb.columnFamily.blobFileSize";
+
+    /**
+     * Default value of {@link #BLOB_FILE_SIZE_PARAM} parameter.
+     */
+    public static final String BLOB_FILE_SIZE_DEFAULT = "268435456";
+
+    /**
+     * Compression of values in blob files, as name of {@link org.rocksdb.CompressionType}. Values are compressed
+     * one by one, so it works well only for values that are large enough. Used only when column family is created
+     * or opened.
+     */
+    public static final String BLOB_COMPRESSION_PARAM = "rocksdb.columnFamily.blobCompression";
+
+    /**
+     * Default value of {@link #BLOB_COMPRESSION_PARAM} parameter.
+     */
+    public static final String BLOB_COMPRESSION_DEFAULT = "LZ4_COMPRESSION";
+
+    /**
+     * If true, compactions move live values out of the oldest blob files, so space of overwritten and deleted values
+     * is reclaimed once the files are no longer referenced.
+     */
+    public static final String BLOB_GC_PARAM = "rocksdb.columnFamily.blobGarbageCollection";
+
+    /**
+     * Default value of {@link #BLOB_GC_PARAM} parameter.
+     */
+    public static final String BLOB_GC_DEFAULT = "true";
+
+    /**
+     * Fraction of the oldest blob files, from 0 to 1, whose live values are moved by compactions when
+     * {@link #BLOB_GC_PARAM} is on; higher values reclaim space sooner at the cost of more rewritten values.
+     */
+    public static final String BLOB_GC_AGE_CUTOFF_PARAM = "rocksdb.columnFamily.blobGarbageCollectionAgeCutoff";
+
+    /**
+     * Default value of {@link #BLOB_GC_AGE_CUTOFF_PARAM} parameter.
+     */
+    public static final String BLOB_GC_AGE_CUTOFF_DEFAULT = "0.25";
+
+    /**
+     * If true, keys are prefixed with their Hazelcast partition id, so scans such as {@link RocksDbJet#source} read only
+     * partitions owned by the local member; {@link #loadAllKeys()} still reads keys of all partitions, as Hazelcast
+     * calls it on a single member. Suitable when every member has its own database; entries of such maps
+     * follow migrations of their partitions if {@link PartitionHandoffService} is registered on the members.
+     * Cannot be changed once the map has any entries stored.
+     */
+    public static final String PARTITION_PREFIX_PARAM = "rocksdb.columnFamily.partitionPrefix";
+
+    /**
+     * Default value of {@link #PARTITION_PREFIX_PARAM} parameter.
+     */
+    public static final String PARTITION_PREFIX_DEFAULT = "false";
+
+    /**
+     * Time to live of stored entries in seconds, counted from the last store, usually equal to
+     * {@link com.hazelcast.config.MapConfig#setTimeToLiveSeconds timeToLiveSeconds} of the map; 0 if entries
+     * do not expire. Expired entries are not loaded and are deleted in background every
+     * {@link #EXPIRY_SWEEP_INTERVAL_PARAM} milliseconds. Cannot be turned on or off once the map has any entries
+     * stored, as values of maps with TTL are stored with their expiration time.
+     */
+    public static final String TTL_SECONDS_PARAM = "rocksdb.columnFamily.ttlSeconds";
+
+    /**
+     * Default value of {@link #TTL_SECONDS_PARAM} parameter.
+     */
+    public static final String TTL_SECONDS_DEFAULT = "0";
+
+    /**
+     * Encoding of keys in the database, one of {@link KeyEncoding} values. {@link KeyEncoding#ORDERED} requires
+     * {@link #KEY_CLASS_PARAM} to be {@link Long}, {@link Integer}, {@link java.util.UUID} or {@link String}.
+     * Cannot be changed once the map has any entries stored.
+     */
+    public static final String KEY_ENCODING_PARAM = "rocksdb.columnFamily.keyEncoding";
+
+    /**
+     * Default value of {@link #KEY_ENCODING_PARAM} parameter.
+     */
+    public static final String KEY_ENCODING_DEFAULT = "SERIALIZER";
+
+    /**
+     * Interval in milliseconds of background deletion of expired entries of maps with {@link #TTL_SECONDS_PARAM};
+     * 0 disables the deletion, so expired entries are only skipped by loads.
+     */
+    public static final String EXPIRY_SWEEP_INTERVAL_PARAM = "rocksdb.database.expirySweepIntervalMillis";
+
+    /**
+     * Default value of {@link #EXPIRY_SWEEP_INTERVAL_PARAM} parameter, one hour.
+     */
+    public static final String EXPIRY_SWEEP_INTERVAL_DEFAULT = "3600000";
+
+    /**
+     * Total native memory in bytes for block cache, index and filter blocks and memtables of all databases opened
+     * by the connector in this JVM. Taken from the map store that opens the first database.
+     */
+    public static final String MEMORY_BUDGET_PARAM = "rocksdb.memory.budget";
+
+    /**
+     * Default value of {@link #MEMORY_BUDGET_PARAM} parameter, 512 MB.
+     */
+    public static final String MEMORY_BUDGET_DEFAULT = "536870912";
+
+    /**
+     * Part of {@link #MEMORY_BUDGET_PARAM} that can be used by memtables before they are flushed.
+     */
+    public static final String MEMORY_WRITE_BUFFER_RATIO_PARAM = "rocksdb.memory.writeBufferRatio";
+
+    /**
+     * Default value of {@link #MEMORY_WRITE_BUFFER_RATIO_PARAM} parameter.
+     */
+    public static final String MEMORY_WRITE_BUFFER_RATIO_DEFAULT = "0.5";
+
+    /**
+     * Type of the shared block cache; only {@code LRU} is supported, as RocksDB library is built without
+     * {@code CLOCK} cache.
+     */
+    public static final String MEMORY_CACHE_TYPE_PARAM = "rocksdb.memory.cacheType";
+
+    /**
+     * Default value of {@link #MEMORY_CACHE_TYPE_PARAM} parameter.
+     */
+    public static final String MEMORY_CACHE_TYPE_DEFAULT = "LRU";
+
+    private String dbPath;
+    private boolean autoCreate;
     private RocksDatabase rocksDatabase;
+    private RocksMap rocksMap;
+    private Class<K> keyClass;
     private Class<V> valueClass;
+    private KeyLoadMode keyLoadMode;
+    private int keyLoadChunkSize;
+    private int keyLoadParallelism;
+    private int loadAllChunkSize;
+    private int storeAllChunkSize;
+    private long writeStallTimeoutMillis;
+    private int bulkLoadShardSize;
+    private int bulkLoadParallelism;
+    private ForkJoinPool loadAllPool;
+    private ValueCache<Object, Object> valueCache;
+    private String mapName;
+    private PartitionHandoffService handoffService;
+    private MetricsRegistry metricsRegistry;
+    private DynamicMetricsProvider metricsProvider;
 
     @SuppressWarnings("unused") // for indirect creation by Hazelcast
     public RocksDbMapStore() {}
@@ -127,66 +938,402 @@ public class RocksDbMapStore<K, V> implements MapStore<K, V>, MapLoaderLifecycle
      */
     // todo: add builder
     public RocksDbMapStore(File rocksDbDir, boolean autoCreate, Class<V> valueClass) {
-        this.rocksDatabase = getRocksDb(rocksDbDir.getAbsolutePath(), autoCreate, this);
+        this.dbPath = rocksDbDir.getAbsolutePath();
+        this.autoCreate = autoCreate;
         this.valueClass = valueClass;
     }
 
     @Override
     @SuppressWarnings("unchecked")
     public void init(HazelcastInstance hazelcastInstance, Properties properties, String mapName) {
-        if (rocksDatabase != null) return; // already initialized in the constructor
-
-        String dbPath = properties.getProperty(DATABASE_PATH_PARAM);
-        boolean dbAutocreation = Boolean.parseBoolean(properties.getProperty(DATABASE_AUTOCREATION_PARAM,
-                DATABASE_AUTOCREATION_DEFAULT));
-
-        this.rocksDatabase = getRocksDb(dbPath, dbAutocreation, this);
+        if (dbPath == null) { // not provided in the constructor
+            this.dbPath = properties.getProperty(DATABASE_PATH_PARAM);
+            this.autoCreate = Boolean.parseBoolean(properties.getProperty(DATABASE_AUTOCREATION_PARAM,
+                    DATABASE_AUTOCREATION_DEFAULT));
+            try {
+                this.valueClass = (Class<V>) Class.forName(properties.getProperty(VALUE_CLASS_PARAM));
+            } catch (ClassNotFoundException e) {
+                throw new IllegalArgumentException("error initializing RocksDbMapStore", e);
+            }
+        }
+        this.rocksDatabase = getRocksDb(dbPath, autoCreate, properties, this);
         try {
-            this.valueClass = (Class<V>) Class.forName(properties.getProperty(VALUE_CLASS_PARAM));
+            this.keyClass = (Class<K>) Class.forName(properties.getProperty(KEY_CLASS_PARAM, KEY_CLASS_DEFAULT));
         } catch (ClassNotFoundException e) {
             throw new IllegalArgumentException("error initializing RocksDbMapStore", e);
         }
+        this.keyLoadMode = KeyLoadMode.valueOf(properties.getProperty(KEY_LOAD_MODE_PARAM, KEY_LOAD_MODE_DEFAULT));
+        this.keyLoadChunkSize = Integer.parseInt(properties.getProperty(KEY_LOAD_CHUNK_SIZE_PARAM,
+                KEY_LOAD_CHUNK_SIZE_DEFAULT));
+        this.keyLoadParallelism = Integer.parseInt(properties.getProperty(KEY_LOAD_PARALLELISM_PARAM,
+                KEY_LOAD_PARALLELISM_DEFAULT));
+
+        Serializer serializer = createSerializer(properties.getProperty(SERIALIZER_PARAM, SERIALIZER_DEFAULT),
+                hazelcastInstance);
+        String columnFamily = properties.getProperty(COLUMN_FAMILY_PARAM, mapName);
+        var columnFamilyConfig = new ColumnFamilyConfig(properties);
+        if (columnFamilyConfig.keyEncoding() == KeyEncoding.ORDERED && !OrderedKeySerializer.supports(keyClass)) {
+            throw new IllegalArgumentException("ordered key encoding does not support keys of " + keyClass);
+        }
+        KeyPartitioner partitioner = columnFamilyConfig.partitionPrefix()
+                ? KeyPartitioner.of(hazelcastInstance.getPartitionService())
+                : null;
+        var durability = Durability.valueOf(properties.getProperty(DURABILITY_PARAM, DURABILITY_DEFAULT));
+        int dedupCapacity = Integer.parseInt(properties.getProperty(WRITE_DEDUP_CAPACITY_PARAM,
+                WRITE_DEDUP_CAPACITY_DEFAULT));
+        int valueCacheSize = Integer.parseInt(properties.getProperty(VALUE_CACHE_SIZE_PARAM, VALUE_CACHE_SIZE_DEFAULT));
+        this.rocksMap = rocksDatabase.openMap(columnFamily, columnFamilyConfig, serializer, partitioner, durability,
+                dedupCapacity, valueCacheSize);
+        this.valueCache = rocksMap.valueCache();
+        this.loadAllChunkSize = Integer.parseInt(properties.getProperty(LOAD_ALL_CHUNK_SIZE_PARAM,
+                LOAD_ALL_CHUNK_SIZE_DEFAULT));
+        this.storeAllChunkSize = Integer.parseInt(properties.getProperty(STORE_ALL_CHUNK_SIZE_PARAM,
+                STORE_ALL_CHUNK_SIZE_DEFAULT));
+        this.writeStallTimeoutMillis = Long.parseLong(properties.getProperty(WRITE_STALL_TIMEOUT_PARAM,
+                WRITE_STALL_TIMEOUT_DEFAULT));
+        int loadAllParallelism = Integer.parseInt(properties.getProperty(LOAD_ALL_PARALLELISM_PARAM,
+                LOAD_ALL_PARALLELISM_DEFAULT));
+        this.loadAllPool = loadAllParallelism > 1 ? createLoadAllPool(mapName, loadAllParallelism) : null;
+        this.bulkLoadShardSize = Integer.parseInt(properties.getProperty(BULK_LOAD_SHARD_SIZE_PARAM,
+                BULK_LOAD_SHARD_SIZE_DEFAULT));
+        this.bulkLoadParallelism = Integer.parseInt(properties.getProperty(BULK_LOAD_PARALLELISM_PARAM,
+                BULK_LOAD_PARALLELISM_DEFAULT));
+        registerMetrics(hazelcastInstance, mapName);
+        this.mapName = mapName;
+        this.handoffService = partitioner != null ? PartitionHandoffService.of(hazelcastInstance) : null;
+        if (handoffService != null) {
+            handoffService.register(mapName, this);
+        }
+    }
+
+    private static ForkJoinPool createLoadAllPool(String mapName, int parallelism) {
+        return new ForkJoinPool(parallelism, pool -> {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+            thread.setName("rocksdb-loadAll-" + mapName + "-" + thread.getPoolIndex());
+            return thread;
+        }, null, false);
+    }
+
+    private void registerMetrics(HazelcastInstance hazelcastInstance, String mapName) {
+        metricsRegistry = DatabaseMetrics.registryOf(hazelcastInstance);
+        if (metricsRegistry == null) {
+            return;
+        }
+        OperationMetrics mapMetrics = rocksMap.metrics();
+        RocksDatabase database = rocksDatabase;
+        RocksMap map = rocksMap;
+        metricsProvider = (descriptor, context) -> {
+            MetricDescriptor mapDescriptor = descriptor.withPrefix(DatabaseMetrics.MAP_PREFIX)
+                    .withDiscriminator("name", mapName);
+            mapMetrics.collect(mapDescriptor, context);
+            // cache and deduplicator of the column family may be created by a map store initialized later
+            ValueCache<Object, Object> cache = database.valueCache(map);
+            WriteDeduplicator writeDeduplicator = database.deduplicator(map);
+            if (cache != null) {
+                cache.collect(mapDescriptor, context);
+            }
+            if (writeDeduplicator != null) {
+                writeDeduplicator.collect(mapDescriptor, context);
+            }
+        };
+        metricsRegistry.registerDynamicMetricsProvider(metricsProvider);
+        rocksDatabase.metrics().register(metricsRegistry);
     }
 
     @Override
     public void destroy() {
-        dispose(rocksDatabase.getDirectory().getAbsolutePath(), this);
+        if (handoffService != null) {
+            handoffService.deregister(mapName, this);
+        }
+        if (metricsRegistry != null) {
+            metricsRegistry.deregisterDynamicMetricsProvider(metricsProvider);
+        }
+        if (loadAllPool != null) {
+            loadAllPool.shutdown();
+        }
+        dispose(dbPath, this);
+    }
+
+    /**
+     * Writes given entries directly into the database as sorted SST files, bypassing memtables, WAL and most
+     * of compactions, e.g. to seed a new cluster from a dump. Entries with keys already stored are overwritten,
+     * and if the input contains the same key more than once, the last entry wins.
+     *
+     * Entries are not added to the Hazelcast map; they are loaded into it like any other stored entry, by
+     * {@link #loadAllKeys()} or on access. Any input source, e.g. a file, can be loaded by streaming its entries
+     * through the iterator; the input is read in shards of {@link #BULK_LOAD_SHARD_SIZE_PARAM} entries.
+     *
+     * @return number of loaded entries.
+     */
+    public long bulkLoad(Iterator<? extends Map.Entry<K, V>> entries) {
+        return rocksDatabase.bulkLoad(rocksMap, entries, bulkLoadShardSize, bulkLoadParallelism);
+    }
+
+    /**
+     * Writes given entries directly into the database, see {@link #bulkLoad(Iterator)}.
+     *
+     * @return number of loaded entries.
+     */
+    public long bulkLoad(Map<K, V> entries) {
+        return bulkLoad(entries.entrySet().iterator());
+    }
+
+    /**
+     * Creates a checkpoint of the whole database used by this map store (all maps stored in it) in given directory,
+     * which must not exist yet. The checkpoint is a complete database directory; to restore it, use it as
+     * the database path or copy it there while the database is not in use. SST files are hard-linked when possible,
+     * so the checkpoint takes almost no time and space.
+     */
+    public void checkpoint(File directory) {
+        rocksDatabase.checkpoint(directory);
+    }
+
+    /**
+     * Creates an incremental backup of the whole database used by this map store in {@link #BACKUP_DIRECTORY_PARAM}
+     * of the map store that opened the database. Only SST files created since the previous backup are copied,
+     * and writes are not stopped.
+     *
+     * @throws IllegalStateException if the backup directory is not configured.
+     */
+    public void backup() {
+        rocksDatabase.backup();
+    }
+
+    /**
+     * Compacts all entries of this map down to the bottommost level, dropping overwritten and deleted entries,
+     * and waits for the compaction to finish. Should be called when the map is not under heavy load, e.g. after
+     * a bulk load or mass deletion; compactions of the whole database can be scheduled with
+     * {@link #COMPACTION_WINDOW_PARAM}.
+     */
+    public void compact() {
+        rocksDatabase.compact(rocksMap);
+    }
+
+    /**
+     * Restores the latest backup from given backup directory into given database directory, replacing its content.
+     * Must be called before any map store using the database is initialized, e.g. before the member is started;
+     * the database is opened with the restored content by the first map store using it.
+     *
+     * @throws IllegalStateException if the database is in use.
+     */
+    public static void restore(File backupDirectory, File databaseDirectory) {
+        RocksDatabaseContainer.restore(backupDirectory, databaseDirectory);
+    }
+
+    /**
+     * Returns approximate native memory used by all databases opened by the connector in this JVM, including
+     * the shared block cache; compare with {@link #MEMORY_BUDGET_PARAM}.
+     */
+    public static Map<MemoryUsageType, Long> memoryUsage() {
+        return RocksDatabaseContainer.memoryUsage();
+    }
+
+    /**
+     * Returns entries with keys from {@code fromKey} (inclusive) to {@code toKey} (exclusive) in key order, up to
+     * given limit, e.g. the latest events of a time series keyed by timestamp. Null bound means that the range
+     * is unbounded on that side. Entries are read directly from the database, not from the Hazelcast map.
+     * Key order is the order of {@link KeyEncoding#ORDERED} encoding, i.e. code point order for {@link String} keys.
+     *
+     * @throws IllegalStateException if the map does not use {@link KeyEncoding#ORDERED} key encoding.
+     */
+    public List<Map.Entry<K, V>> scan(K fromKey, K toKey, int limit) {
+        return rocksDatabase.scan(rocksMap, fromKey, toKey, limit, keyClass, valueClass);
+    }
+
+    /**
+     * Writes entries of given partition into SST files in a new directory next to the database, see
+     * {@link PartitionHandoffService}; returns the files, empty if the partition is empty.
+     */
+    List<File> exportPartition(int partitionId) {
+        var directory = new File(rocksDatabase.getDirectory(), "handoff-" + UUID.randomUUID());
+        return rocksDatabase.exportPartition(rocksMap, partitionId, directory);
+    }
+
+    /**
+     * Replaces entries of given partition with entries of SST files exported by another member.
+     */
+    void importPartition(int partitionId, List<File> files) {
+        rocksDatabase.importPartition(rocksMap, partitionId, files);
+    }
+
+    /**
+     * Returns true if given map store keeps its entries in the same database as this one, e.g. when members in one
+     * JVM share the database path.
+     */
+    boolean sharesDatabase(RocksDbMapStore<?, ?> other) {
+        return rocksDatabase == other.rocksDatabase;
+    }
+
+    /**
+     * Deletes entries of given partition, which is no longer owned by this member.
+     */
+    void removePartition(int partitionId) {
+        rocksDatabase.deletePartition(rocksMap, partitionId);
+    }
+
+    /**
+     * Range deletes cannot tell entries of maps sharing a column family apart, so they are allowed only in the column
+     * family named after the map, which no other map uses by default.
+     */
+    private void checkOwnColumnFamily() {
+        if (!rocksMap.name().equals(mapName)) {
+            throw new IllegalStateException(("map %s shares column family %s with other maps, its entries cannot be "
+                    + "deleted with a range delete").formatted(mapName, rocksMap.name()));
+        }
+    }
+
+    /**
+     * Returns current write pressure of the database used by this map store. Writers can use it to slow down before
+     * writes block on a write stall; it's also published as {@code writePressure} metric of the database.
+     */
+    public WritePressure writePressure() {
+        return rocksDatabase.writeStallMonitor().pressure();
     }
 
     @Override
     public void store(K key, V value) {
-        rocksDatabase.put(key, value);
+        awaitWritable();
+        rocksDatabase.put(rocksMap, key, value);
     }
 
     @Override
     public void storeAll(Map<K, V> map) {
-        rocksDatabase.putAll(map);
+        awaitWritable();
+        rocksDatabase.putAll(rocksMap, map, storeAllChunkSize);
     }
 
     @Override
     public void delete(K key) {
-        rocksDatabase.delete(key);
+        awaitWritable();
+        rocksDatabase.delete(rocksMap, key);
     }
 
     @Override
     public void deleteAll(Collection<K> collection) {
-        for (K key : collection) {
-            delete(key);
+        awaitWritable();
+        rocksDatabase.deleteAll(rocksMap, collection);
+    }
+
+    /**
+     * Waits up to {@link #WRITE_STALL_TIMEOUT_PARAM} while writes are stopped, so writers fail instead of blocking
+     * inside RocksDB.
+     */
+    private void awaitWritable() {
+        try {
+            if (!rocksDatabase.writeStallMonitor().awaitWritable(writeStallTimeoutMillis)
+                    && writeStallTimeoutMillis > 0) {
+                throw new IllegalStateException("writes to RocksDB %s are stopped for more than %d ms"
+                        .formatted(dbPath, writeStallTimeoutMillis));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("interrupted when waiting for writes to RocksDB " + dbPath, e);
+        }
+    }
+
+    /**
+     * Removes all entries of the map from the database with a single range delete, which is much cheaper than
+     * deleting keys one by one. Entries in the IMap itself are not affected.
+     *
+     * @throws IllegalStateException if the map does not have its own column family, see {@link #COLUMN_FAMILY_PARAM}.
+     */
+    public void clear() {
+        checkOwnColumnFamily();
+        rocksDatabase.deleteRange(rocksMap, KeyRange.all());
+    }
+
+    /**
+     * Removes all entries of given partition from the database with a single range delete.
+     * Requires partition-aware key layout, see {@link #PARTITION_PREFIX_PARAM}.
+     *
+     * @throws IllegalStateException if the map does not have its own column family, see {@link #COLUMN_FAMILY_PARAM}.
+     */
+    public void clearPartition(int partitionId) {
+        if (rocksMap.partitioner() == null) {
+            throw new IllegalStateException("clearing partition requires partition-aware key layout");
         }
+        checkOwnColumnFamily();
+        rocksDatabase.deleteRange(rocksMap, KeyRange.partition(partitionId));
     }
 
     @Override
+    @SuppressWarnings("unchecked")
     public V load(K k) {
-        return rocksDatabase.get(k, valueClass);
+        if (valueCache == null) {
+            return rocksDatabase.get(rocksMap, k, valueClass);
+        }
+        V cached = (V) valueCache.get(k);
+        if (cached != null) {
+            return cached;
+        }
+        ValueCache.Entry<Object, Object> placeholder = valueCache.reserve(k);
+        V value = null;
+        try {
+            value = rocksDatabase.get(rocksMap, k, valueClass);
+            return value;
+        } finally {
+            fill(k, value, placeholder);
+        }
+    }
+
+    /**
+     * Adds value read from the database to the cache, or removes placeholder of its key if value was not found.
+     */
+    private void fill(K key, V value, ValueCache.Entry<Object, Object> placeholder) {
+        if (placeholder == null) {
+            return;
+        }
+        if (value != null) {
+            valueCache.fill(key, value, placeholder);
+        } else {
+            valueCache.cancel(key, placeholder);
+        }
     }
 
     @Override
     public Map<K, V> loadAll(Collection<K> collection) {
-        return rocksDatabase.get(collection, valueClass);
+        if (valueCache == null) {
+            return rocksDatabase.get(rocksMap, collection, valueClass, loadAllChunkSize, loadAllPool);
+        }
+        Map<K, V> result = new HashMap<>(collection.size());
+        List<K> missing = new ArrayList<>();
+        for (K key : collection) {
+            @SuppressWarnings("unchecked")
+            V cached = (V) valueCache.get(key);
+            if (cached != null) {
+                result.put(key, cached);
+            } else {
+                missing.add(key);
+            }
+        }
+        if (!missing.isEmpty()) {
+            Map<K, ValueCache.Entry<Object, Object>> placeholders = new HashMap<>(missing.size());
+            missing.forEach(key -> placeholders.put(key, valueCache.reserve(key)));
+            Map<K, V> loaded = Map.of();
+            try {
+                loaded = rocksDatabase.get(rocksMap, missing, valueClass, loadAllChunkSize, loadAllPool);
+                result.putAll(loaded);
+            } finally {
+                Map<K, V> values = loaded;
+                placeholders.forEach((key, placeholder) -> fill(key, values.get(key), placeholder));
+            }
+        }
+        return result;
     }
 
     @Override
     public Iterable<K> loadAllKeys() {
-        return emptyList();
+        return switch (keyLoadMode) {
+            case NONE -> emptyList();
+            case STREAMING -> rocksDatabase.keys(rocksMap, keyClass, keyLoadChunkSize);
+            case PARALLEL -> rocksDatabase.parallelKeys(rocksMap, keyClass, keyLoadChunkSize, keyLoadParallelism);
+            case MATERIALIZED -> {
+                List<K> keys = new ArrayList<>();
+                try (var allKeys = rocksDatabase.keys(rocksMap, keyClass, keyLoadChunkSize)) {
+                    allKeys.forEach(keys::add);
+                }
+                yield keys;
+            }
+        };
     }
 }
@@ -0,0 +1,147 @@
+package com.github.tomaszgaweda.rocksdb;
+
+import org.rocksdb.*;
+
+import javax.annotation.Nonnull;
+import java.io.Closeable;
+import java.util.AbstractMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Reader of entries of a {@link RocksMap} within given key ranges, from a consistent snapshot of the database taken
+ * when the reader is created. Ranges are visited one after another; entries are read in chunks of requested size,
+ * so the caller controls how many of them are held on heap. Like {@link ParallelKeyIterable}, the reader uses large
+ * readahead and does not fill the block cache. Expired entries are skipped.
+ *
+ * Reader is not thread-safe and must be closed to release the snapshot.
+ *
+ * @param <K> type of keys
+ * @param <V> type of values
+ */
+final class RocksEntryReader<K, V> implements Closeable {
+
+    private final RocksDB db;
+    private final RocksMap map;
+    private final Class<K> keyClass;
+    private final Class<V> valueClass;
+    private final Iterator<KeyRange> remainingRanges;
+    private final Snapshot snapshot;
+    private RangeScan currentScan;
+    private boolean closed;
+
+    RocksEntryReader(@Nonnull RocksDB db, @Nonnull RocksMap map, @Nonnull List<KeyRange> ranges,
+                     @Nonnull Class<K> keyClass, @Nonnull Class<V> valueClass) {
+        this.db = db;
+        this.map = map;
+        this.keyClass = keyClass;
+        this.valueClass = valueClass;
+        this.remainingRanges = List.copyOf(ranges).iterator();
+        this.snapshot = db.getSnapshot();
+    }
+
+    /**
+     * Passes up to {@code maxEntries} next entries to given consumer; returns false once all ranges are read.
+     */
+    boolean read(int maxEntries, @Nonnull Consumer<? super Map.Entry<K, V>> consumer) {
+        if (closed) {
+            throw new IllegalStateException("reader of " + map + " is closed");
+        }
+        int count = 0;
+        while (count < maxEntries) {
+            if (currentScan == null || !currentScan.iterator.isValid()) {
+                if (!startNextRange()) {
+                    return false;
+                }
+                continue;
+            }
+            V value = map.value(currentScan.iterator.value(), valueClass);
+            if (value != null) {
+                consumer.accept(new AbstractMap.SimpleImmutableEntry<>(map.key(currentScan.iterator.key(), keyClass),
+                        value));
+                count++;
+            }
+            currentScan.iterator.next();
+        }
+        return true;
+    }
+
+    private boolean startNextRange() {
+        if (currentScan != null) {
+            checkStatus();
+            currentScan.close();
+            currentScan = null;
+        }
+        if (!remainingRanges.hasNext()) {
+            return false;
+        }
+        currentScan = new RangeScan(remainingRanges.next());
+        return true;
+    }
+
+    private void checkStatus() {
+        try {
+            currentScan.iterator.status();
+        } catch (RocksDBException e) {
+            throw new IllegalStateException("error when reading entries of " + map, e);
+        }
+    }
+
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        if (currentScan != null) {
+            currentScan.close();
+            currentScan = null;
+        }
+        db.releaseSnapshot(snapshot);
+    }
+
+    /**
+     * Native resources of a scan over a single range.
+     */
+    private final class RangeScan {
+        private final ReadOptions readOptions;
+        private final Slice lowerBound;
+        private final Slice upperBound;
+        private final RocksIterator iterator;
+
+        RangeScan(KeyRange range) {
+            readOptions = new ReadOptions()
+                    .setSnapshot(snapshot)
+                    .setReadaheadSize(ParallelKeyIterable.READAHEAD_SIZE)
+                    .setFillCache(false)
+                    .setTotalOrderSeek(!range.isSinglePartition());
+            lowerBound = range.from() == null ? null : new Slice(range.from());
+            upperBound = range.to() == null ? null : new Slice(range.to());
+            if (lowerBound != null) {
+                readOptions.setIterateLowerBound(lowerBound);
+            }
+            if (upperBound != null) {
+                readOptions.setIterateUpperBound(upperBound);
+            }
+            iterator = db.newIterator(map.columnFamily(), readOptions);
+            if (lowerBound == null) {
+                iterator.seekToFirst();
+            } else {
+                iterator.seek(range.from());
+            }
+        }
+
+        void close() {
+            iterator.close();
+            readOptions.close();
+            if (lowerBound != null) {
+                lowerBound.close();
+            }
+            if (upperBound != null) {
+                upperBound.close();
+            }
+        }
+    }
+}
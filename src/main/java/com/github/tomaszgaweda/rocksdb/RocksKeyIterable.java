@@ -0,0 +1,185 @@
+package com.github.tomaszgaweda.rocksdb;
+
+import org.rocksdb.*;
+
+import javax.annotation.Nonnull;
+import java.io.Closeable;
+import java.util.*;
+
+/**
+ * Lazy view of keys of a {@link RocksMap} within given key ranges. Every {@link #iterator()} reads from its own
+ * consistent snapshot of the database and decodes keys in chunks, so only one chunk of keys is held on heap at a time.
+ * Ranges are visited one after another, seeking directly to the beginning of each range. Read errors are rethrown,
+ * so the iteration never ends early with keys missing.
+ *
+ * Iterators release their snapshot once exhausted; {@link #close()} releases snapshots of iterators that were
+ * abandoned in the middle. Hazelcast closes the iterable returned from {@code loadAllKeys} after the iteration.
+ *
+ * @param <K> type of keys
+ */
+class RocksKeyIterable<K> implements Iterable<K>, Closeable {
+
+    private final RocksDB db;
+    private final RocksMap map;
+    private final Class<K> keyClass;
+    private final List<KeyRange> ranges;
+    private final int chunkSize;
+    private final Set<KeyIterator> openIterators = Collections.synchronizedSet(new HashSet<>());
+
+    RocksKeyIterable(@Nonnull RocksDB db, @Nonnull RocksMap map, @Nonnull Class<K> keyClass,
+                     @Nonnull List<KeyRange> ranges, int chunkSize) {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("chunk size must be positive, was " + chunkSize);
+        }
+        this.db = db;
+        this.map = map;
+        this.keyClass = keyClass;
+        this.ranges = List.copyOf(ranges);
+        this.chunkSize = chunkSize;
+    }
+
+    @Nonnull
+    @Override
+    public Iterator<K> iterator() {
+        var iterator = new KeyIterator();
+        openIterators.add(iterator);
+        return iterator;
+    }
+
+    @Override
+    public void close() {
+        List<KeyIterator> toRelease;
+        synchronized (openIterators) {
+            toRelease = new ArrayList<>(openIterators);
+        }
+        toRelease.forEach(KeyIterator::release);
+    }
+
+    private final class KeyIterator implements Iterator<K> {
+
+        private final Snapshot snapshot;
+        private final Iterator<KeyRange> remainingRanges = ranges.iterator();
+        private final List<byte[]> rawChunk = new ArrayList<>(chunkSize);
+        private final ArrayDeque<K> decodedChunk = new ArrayDeque<>(chunkSize);
+        private RangeScan currentScan;
+        private boolean released;
+
+        KeyIterator() {
+            this.snapshot = db.getSnapshot();
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (decodedChunk.isEmpty()) {
+                fetchChunk();
+            }
+            return !decodedChunk.isEmpty();
+        }
+
+        @Override
+        public K next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return decodedChunk.poll();
+        }
+
+        private void fetchChunk() {
+            synchronized (this) {
+                while (!released && rawChunk.size() < chunkSize) {
+                    if (currentScan == null || !currentScan.iterator.isValid()) {
+                        if (!startNextRange()) {
+                            release();
+                        }
+                        continue;
+                    }
+                    rawChunk.add(currentScan.iterator.key());
+                    currentScan.iterator.next();
+                }
+            }
+            for (byte[] keyBytes : rawChunk) {
+                decodedChunk.add(map.key(keyBytes, keyClass));
+            }
+            rawChunk.clear();
+        }
+
+        private boolean startNextRange() {
+            if (currentScan != null) {
+                checkStatus();
+                currentScan.close();
+                currentScan = null;
+            }
+            if (!remainingRanges.hasNext()) {
+                return false;
+            }
+            currentScan = new RangeScan(remainingRanges.next());
+            return true;
+        }
+
+        /**
+         * Rethrows error that made the iterator of the current range invalid, if any, releasing the iterator.
+         */
+        private void checkStatus() {
+            try {
+                currentScan.iterator.status();
+            } catch (RocksDBException e) {
+                release();
+                throw new IllegalStateException("error when reading keys of " + map, e);
+            }
+        }
+
+        private synchronized void release() {
+            if (released) {
+                return;
+            }
+            released = true;
+            openIterators.remove(this);
+            if (currentScan != null) {
+                currentScan.close();
+                currentScan = null;
+            }
+            db.releaseSnapshot(snapshot);
+        }
+
+        /**
+         * Native resources of a scan over a single range.
+         */
+        private final class RangeScan {
+            private final ReadOptions readOptions;
+            private final Slice lowerBound;
+            private final Slice upperBound;
+            private final RocksIterator iterator;
+
+            RangeScan(KeyRange range) {
+                readOptions = new ReadOptions().setSnapshot(snapshot);
+                lowerBound = range.from() == null ? null : new Slice(range.from());
+                upperBound = range.to() == null ? null : new Slice(range.to());
+                if (lowerBound != null) {
+                    readOptions.setIterateLowerBound(lowerBound);
+                }
+                if (upperBound != null) {
+                    readOptions.setIterateUpperBound(upperBound);
+                }
+                // only scan of a single partition can rely on the prefix extractor and prefix bloom filters
+                readOptions.setTotalOrderSeek(!range.isSinglePartition());
+                iterator = db.newIterator(map.columnFamily(), readOptions);
+                if (lowerBound == null) {
+                    iterator.seekToFirst();
+                } else {
+                    iterator.seek(range.from());
+                }
+            }
+
+            void close() {
+                iterator.close();
+                readOptions.close();
+                if (lowerBound != null) {
+                    lowerBound.close();
+                }
+                if (upperBound != null) {
+                    upperBound.close();
+                }
+            }
+        }
+    }
+}
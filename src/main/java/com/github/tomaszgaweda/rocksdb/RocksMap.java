@@ -0,0 +1,232 @@
+package com.github.tomaszgaweda.rocksdb;
+
+import org.rocksdb.ColumnFamilyHandle;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.locks.ReadWriteLock;
+
+/**
+ * View of a single map inside the shared {@link RocksDatabase}: the column family holding map's entries,
+ * the serializers used by the map, the layout of the keys and values and the durability of writes.
+ *
+ * Keys are encoded with the map's serializer, or with {@link OrderedKeySerializer} in {@link KeyEncoding#ORDERED}
+ * encoding, in which case keys of the map (of each partition in partition-aware layout) are stored sorted.
+ *
+ * If the map uses partition-aware key layout, every key is prefixed with {@value #PARTITION_PREFIX_LENGTH} bytes
+ * of big-endian partition id, so entries of one partition are stored next to each other.
+ *
+ * If entries of the map have TTL, every value is prefixed with {@value #EXPIRY_HEADER_LENGTH} bytes of big-endian
+ * expiration time in epoch milliseconds. Stores of such maps hold the read lock of {@link #expiryLock()}, so
+ * deletion of expired entries, which holds the write lock, never deletes an entry stored in the meantime.
+ *
+ * Writes of values that are already stored can be dropped with a {@link WriteDeduplicator}, which belongs to
+ * the column family and is kept up to date by all writes and deletes done through any of its views.
+ *
+ * Created by {@link RocksDatabase#openMap}.
+ */
+final class RocksMap {
+
+    /**
+     * Length of the partition id prefix of keys in partition-aware layout.
+     */
+    static final int PARTITION_PREFIX_LENGTH = Integer.BYTES;
+
+    /**
+     * Length of the expiration time prefix of values of maps with TTL.
+     */
+    static final int EXPIRY_HEADER_LENGTH = Long.BYTES;
+
+    private final String name;
+    private final ColumnFamilyHandle columnFamily;
+    private final Serializer serializer;
+    private final Serializer keySerializer;
+    private final KeyPartitioner partitioner;
+    private final Durability durability;
+    private final long ttlMillis;
+    private final ReadWriteLock expiryLock;
+    private final WriteDeduplicator deduplicator;
+    private final ValueCache<Object, Object> valueCache;
+    private final OperationMetrics metrics = new OperationMetrics();
+
+    /**
+     * @param keySerializer serializer of keys; either the map's serializer or {@link OrderedKeySerializer}.
+     * @param deduplicator deduplicator of writes of the column family, or null if all writes go to the database.
+     * @param valueCache cache of values of the column family, or null if values are not cached.
+     */
+    RocksMap(@Nonnull String name, @Nonnull ColumnFamilyHandle columnFamily, @Nonnull Serializer serializer,
+             @Nonnull Serializer keySerializer, @Nullable KeyPartitioner partitioner, @Nonnull Durability durability,
+             long ttlMillis, @Nullable ReadWriteLock expiryLock, @Nullable WriteDeduplicator deduplicator,
+             @Nullable ValueCache<Object, Object> valueCache) {
+        if (ttlMillis > 0 && expiryLock == null) {
+            throw new IllegalArgumentException("map with TTL requires expiry lock");
+        }
+        this.name = name;
+        this.columnFamily = columnFamily;
+        this.serializer = serializer;
+        this.keySerializer = keySerializer;
+        this.partitioner = partitioner;
+        this.durability = durability;
+        this.ttlMillis = ttlMillis;
+        this.expiryLock = expiryLock;
+        this.deduplicator = deduplicator;
+        this.valueCache = valueCache;
+    }
+
+    /**
+     * Name of the column family.
+     */
+    String name() {
+        return name;
+    }
+
+    ColumnFamilyHandle columnFamily() {
+        return columnFamily;
+    }
+
+    Serializer serializer() {
+        return serializer;
+    }
+
+    /**
+     * Returns true if keys are stored in {@link KeyEncoding#ORDERED} encoding.
+     */
+    boolean orderedKeys() {
+        return keySerializer == OrderedKeySerializer.INSTANCE;
+    }
+
+    /**
+     * Returns partitioner used for the keys or null if keys are not prefixed with partition id.
+     */
+    @Nullable
+    KeyPartitioner partitioner() {
+        return partitioner;
+    }
+
+    Durability durability() {
+        return durability;
+    }
+
+    /**
+     * Returns lock guarding deletion of expired entries of the column family, or null if entries do not expire.
+     */
+    @Nullable
+    ReadWriteLock expiryLock() {
+        return expiryLock;
+    }
+
+    /**
+     * Returns deduplicator of writes of the column family, kept up to date by {@link RocksDatabase} writes, or null
+     * if writes are not deduplicated.
+     */
+    @Nullable
+    WriteDeduplicator deduplicator() {
+        return deduplicator;
+    }
+
+    /**
+     * Returns cache of deserialized values of the column family, kept up to date by {@link RocksDatabase} writes,
+     * or null if values are not cached.
+     */
+    @Nullable
+    ValueCache<Object, Object> valueCache() {
+        return valueCache;
+    }
+
+    /**
+     * Returns statistics of operations on the map.
+     */
+    OperationMetrics metrics() {
+        return metrics;
+    }
+
+    /**
+     * Returns key ranges that hold entries of the local member: ranges of the partitions owned by the local member
+     * for partition-aware layout or the range of all keys otherwise.
+     */
+    List<KeyRange> localRanges() {
+        if (partitioner == null) {
+            return List.of(KeyRange.all());
+        }
+        return Arrays.stream(partitioner.localPartitions())
+                .mapToObj(KeyRange::partition)
+                .toList();
+    }
+
+    /**
+     * Returns bytes under which given key is stored in the database.
+     */
+    byte[] keyBytes(@Nonnull Object key) {
+        byte[] serialized = keySerializer.toBytes(key);
+        if (partitioner == null) {
+            return serialized;
+        }
+        return ByteBuffer.allocate(PARTITION_PREFIX_LENGTH + serialized.length)
+                .putInt(partitioner.partitionId(key))
+                .put(serialized)
+                .array();
+    }
+
+    /**
+     * Decodes key from bytes under which it's stored in the database.
+     */
+    <K> K key(@Nonnull byte[] keyBytes, @Nonnull Class<K> keyClass) {
+        if (partitioner == null) {
+            return keySerializer.fromBytes(keyBytes, keyClass);
+        }
+        return keySerializer.fromBytes(Arrays.copyOfRange(keyBytes, PARTITION_PREFIX_LENGTH, keyBytes.length),
+                keyClass);
+    }
+
+    /**
+     * Returns bytes under which given value is stored in the database, including its expiration time if entries
+     * of the map have TTL.
+     */
+    byte[] valueBytes(@Nonnull Object value) {
+        byte[] serialized = serializer.toBytes(value);
+        if (ttlMillis == 0) {
+            return serialized;
+        }
+        return ByteBuffer.allocate(EXPIRY_HEADER_LENGTH + serialized.length)
+                .putLong(System.currentTimeMillis() + ttlMillis)
+                .put(serialized)
+                .array();
+    }
+
+    /**
+     * Decodes value from bytes under which it's stored in the database; returns null if the value has expired.
+     */
+    @Nullable
+    <V> V value(@Nonnull byte[] valueBytes, @Nonnull Class<V> valueClass) {
+        if (ttlMillis == 0) {
+            return serializer.fromBytes(valueBytes, valueClass);
+        }
+        if (isExpired(valueBytes, System.currentTimeMillis())) {
+            return null;
+        }
+        return serializer.fromBytes(Arrays.copyOfRange(valueBytes, EXPIRY_HEADER_LENGTH, valueBytes.length),
+                valueClass);
+    }
+
+    /**
+     * Returns true if value of a map with TTL, stored as given bytes, has expired at given time.
+     */
+    static boolean isExpired(@Nonnull byte[] valueBytes, long nowMillis) {
+        return ByteBuffer.wrap(valueBytes).getLong() <= nowMillis;
+    }
+
+    /**
+     * Returns the prefix shared by all keys of given partition.
+     */
+    static byte[] partitionPrefix(int partitionId) {
+        return ByteBuffer.allocate(PARTITION_PREFIX_LENGTH).putInt(partitionId).array();
+    }
+
+    @Override
+    public String toString() {
+        return "RocksMap{" + name + '}';
+    }
+}
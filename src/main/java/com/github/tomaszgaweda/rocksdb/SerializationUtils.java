@@ -1,16 +1,56 @@
 package com.github.tomaszgaweda.rocksdb;
 
+import com.hazelcast.core.HazelcastInstance;
+import com.hazelcast.core.HazelcastInstanceAware;
+
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import java.io.*;
 
 /**
- * Serialization handling class, simple replacement for SerializationService from Hazelcast that
- * uses only standard Java serialization.
+ * Serialization handling class: standard Java serialization used by {@link JavaSerializer} and creation of
+ * configured {@linkplain Serializer serializers}.
  */
 class SerializationUtils {
 
     /**
-     * Note: this should be done using SerializationService; this is a shortcut to avoid "hacking" Hazelcast.
+     * Name of the {@link JavaSerializer} in {@link RocksDbMapStore#SERIALIZER_PARAM}.
+     */
+    static final String JAVA_SERIALIZER = "java";
+
+    /**
+     * Name of the {@link HazelcastSerializer} in {@link RocksDbMapStore#SERIALIZER_PARAM}.
+     */
+    static final String HAZELCAST_SERIALIZER = "hazelcast";
+
+    /**
+     * Creates serializer for given name - either one of the built-in ones or fully qualified name of class
+     * implementing {@link Serializer}.
+     */
+    static Serializer createSerializer(@Nonnull String name, @Nullable HazelcastInstance hazelcastInstance) {
+        switch (name) {
+            case JAVA_SERIALIZER:
+                return JavaSerializer.INSTANCE;
+            case HAZELCAST_SERIALIZER:
+                if (hazelcastInstance == null) {
+                    throw new IllegalArgumentException("hazelcast serializer requires Hazelcast instance");
+                }
+                return new HazelcastSerializer(hazelcastInstance);
+            default:
+                try {
+                    Serializer serializer = (Serializer) Class.forName(name).getConstructor().newInstance();
+                    if (serializer instanceof HazelcastInstanceAware aware && hazelcastInstance != null) {
+                        aware.setHazelcastInstance(hazelcastInstance);
+                    }
+                    return serializer;
+                } catch (ReflectiveOperationException | ClassCastException e) {
+                    throw new IllegalArgumentException("cannot create serializer " + name, e);
+                }
+        }
+    }
+
+    /**
+     * Reads object using standard Java serialization; see {@link HazelcastSerializer} for faster alternative.
      */
     @SuppressWarnings("unchecked")
     static <V> V fromBytes(@Nonnull byte[] bytes, @Nonnull Class<V> valueClass) {
@@ -22,7 +62,7 @@ class SerializationUtils {
     }
 
     /**
-     * Note: this should be done using SerializationService; this is a shortcut to avoid "hacking" Hazelcast.
+     * Writes object using standard Java serialization; see {@link HazelcastSerializer} for faster alternative.
      */
     static byte[] toBytes(@Nonnull Object value) {
         var baos = new ByteArrayOutputStream();
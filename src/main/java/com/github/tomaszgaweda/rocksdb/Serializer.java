@@ -0,0 +1,25 @@
+package com.github.tomaszgaweda.rocksdb;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Converts keys and values to the byte form stored in RocksDB and back.
+ *
+ * Custom implementations can be plugged in using {@link RocksDbMapStore#SERIALIZER_PARAM}; they must have a public
+ * no-arg constructor. If implementation also implements {@linkplain com.hazelcast.core.HazelcastInstanceAware},
+ * it will receive the Hazelcast instance on which the map store is initialized.
+ *
+ * Implementations must be thread-safe.
+ */
+public interface Serializer {
+
+    /**
+     * Serializes given object. The object is never null.
+     */
+    byte[] toBytes(@Nonnull Object value);
+
+    /**
+     * Deserializes object of given class from the bytes previously created by {@link #toBytes}.
+     */
+    <V> V fromBytes(@Nonnull byte[] bytes, @Nonnull Class<V> valueClass);
+}
@@ -0,0 +1,207 @@
+package com.github.tomaszgaweda.rocksdb;
+
+import com.hazelcast.internal.metrics.MetricDescriptor;
+import com.hazelcast.internal.metrics.MetricsCollectionContext;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import static com.hazelcast.internal.metrics.ProbeLevel.INFO;
+import static com.hazelcast.internal.metrics.ProbeUnit.COUNT;
+
+/**
+ * Bounded cache of deserialized values of a single column family, so reloading evicted entries does not hit RocksDB
+ * and the serializer. The cache is owned by the column family, so writes done through any view of it, e.g. by map
+ * stores of other members sharing the database or by {@link RocksDbJet#sink}, keep it up to date.
+ *
+ * Reads are lock-free, modifications take a lock. Eviction uses the CLOCK algorithm: every read marks the entry
+ * as referenced and inserting a new entry into a full cache moves the clock hand over the slots, clearing the marks,
+ * until it finds an entry that was not read since the hand passed it last time.
+ *
+ * Before a value is loaded from the database, its key is {@linkplain #reserve reserved} with a placeholder entry,
+ * which is replaced or removed by any write of the key. The loaded value is added with {@link #fill} only if the
+ * placeholder is still there, so a slow load never overwrites a newer value, while writes of other keys do not
+ * affect the load. Cached values are shared between loads, so they should not be mutated.
+ */
+final class ValueCache<K, V> {
+
+    private final int capacity;
+    private final Map<K, Entry<K, V>> entries;
+    // all modifications are done with the clock lock held
+    private final Entry<?, ?>[] clock;
+    private int hand;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * Cached value, or placeholder of a value being loaded if the value is null.
+     */
+    static final class Entry<K, V> {
+        private final K key;
+        private final V value;
+        private volatile boolean referenced;
+        private volatile boolean removed;
+        // slot of the entry in the clock, -1 for placeholders; guarded by the clock lock
+        private int slot = -1;
+
+        private Entry(K key, V value) {
+            this.key = key;
+            this.value = value;
+        }
+    }
+
+    /**
+     * @param capacity maximum number of cached values.
+     */
+    ValueCache(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("cache capacity must be positive, was " + capacity);
+        }
+        this.capacity = capacity;
+        this.entries = new ConcurrentHashMap<>(capacity);
+        this.clock = new Entry<?, ?>[capacity];
+    }
+
+    /**
+     * Returns cached value or null if there's no value for given key.
+     */
+    @Nullable
+    V get(@Nonnull K key) {
+        Entry<K, V> entry = entries.get(key);
+        if (entry == null || entry.value == null) {
+            misses.increment();
+            return null;
+        }
+        entry.referenced = true;
+        hits.increment();
+        return entry.value;
+    }
+
+    /**
+     * Reserves given key before its value is read from the database; returns the placeholder that must be passed
+     * to {@link #fill} or {@link #cancel} once the read is done, or null if the value is already cached.
+     */
+    @Nullable
+    Entry<K, V> reserve(@Nonnull K key) {
+        var placeholder = new Entry<K, V>(key, null);
+        Entry<K, V> existing = entries.putIfAbsent(key, placeholder);
+        if (existing == null) {
+            return placeholder;
+        }
+        // concurrent loads of the same key share the placeholder
+        return existing.value == null ? existing : null;
+    }
+
+    /**
+     * Adds value read from the database, unless the key was written after given placeholder was reserved.
+     */
+    void fill(@Nonnull K key, @Nonnull V value, @Nonnull Entry<K, V> placeholder) {
+        if (entries.get(key) != placeholder) {
+            return;
+        }
+        synchronized (clock) {
+            if (entries.get(key) == placeholder) {
+                insert(key, value);
+            }
+        }
+    }
+
+    /**
+     * Removes placeholder of a key whose value was not found or could not be read.
+     */
+    void cancel(@Nonnull K key, @Nonnull Entry<K, V> placeholder) {
+        entries.remove(key, placeholder);
+    }
+
+    /**
+     * Caches value that was just written to the database.
+     */
+    void put(@Nonnull K key, @Nonnull V value) {
+        synchronized (clock) {
+            insert(key, value);
+        }
+    }
+
+    /**
+     * Removes value of the key that was just deleted from the database.
+     */
+    void invalidate(@Nonnull K key) {
+        synchronized (clock) {
+            Entry<K, V> entry = entries.remove(key);
+            if (entry != null) {
+                entry.removed = true;
+            }
+        }
+    }
+
+    /**
+     * Removes all values, e.g. after range delete.
+     */
+    void invalidateAll() {
+        synchronized (clock) {
+            entries.clear();
+            for (int i = 0; i < capacity; i++) {
+                clock[i] = null;
+            }
+        }
+    }
+
+    int size() {
+        return entries.size();
+    }
+
+    /**
+     * Inserts new entry, taking the slot of the key's cached value, if any, or evicting another one if needed.
+     * Must be called with the clock lock held.
+     */
+    private void insert(K key, V value) {
+        var entry = new Entry<>(key, value);
+        Entry<K, V> previous = entries.put(key, entry);
+        if (previous != null) {
+            previous.removed = true;
+        }
+        entry.slot = previous != null && previous.slot >= 0 ? previous.slot : evict();
+        clock[entry.slot] = entry;
+    }
+
+    /**
+     * Returns index of a free slot, evicting an entry if needed. Must be called with the clock lock held.
+     */
+    @SuppressWarnings("unchecked")
+    private int evict() {
+        while (true) {
+            int slot = hand;
+            hand = (hand + 1) % capacity;
+            Entry<K, V> entry = (Entry<K, V>) clock[slot];
+            if (entry == null || entry.removed) {
+                return slot;
+            }
+            if (entry.referenced) {
+                entry.referenced = false;
+            } else {
+                entries.remove(entry.key, entry);
+                return slot;
+            }
+        }
+    }
+
+    /**
+     * Publishes hits, misses and size of the cache under given descriptor.
+     */
+    void collect(@Nonnull MetricDescriptor descriptor, @Nonnull MetricsCollectionContext context) {
+        context.collect(descriptor, "valueCacheHits", INFO, COUNT, hits.sum());
+        context.collect(descriptor, "valueCacheMisses", INFO, COUNT, misses.sum());
+        context.collect(descriptor, "valueCacheSize", INFO, COUNT, entries.size());
+    }
+
+    long hits() {
+        return hits.sum();
+    }
+
+    long misses() {
+        return misses.sum();
+    }
+}
@@ -0,0 +1,116 @@
+package com.github.tomaszgaweda.rocksdb;
+
+import com.hazelcast.internal.metrics.MetricDescriptor;
+import com.hazelcast.internal.metrics.MetricsCollectionContext;
+import com.hazelcast.internal.util.HashUtil;
+
+import javax.annotation.Nonnull;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import static com.hazelcast.internal.metrics.ProbeLevel.INFO;
+import static com.hazelcast.internal.metrics.ProbeUnit.COUNT;
+
+/**
+ * Bounded table of fingerprints of values last written under keys of a single column family, so writes of values that are
+ * already stored can be dropped before they reach RocksDB.
+ *
+ * The table is a direct-mapped array of longs indexed by MurmurHash3 of the key bytes, 8 bytes per slot. Every slot
+ * holds the fingerprint of an entry: mix of the key hash and MurmurHash3 of the value bytes, 0 meaning empty.
+ * Keys mapped to the same slot evict each other, which only costs a missed deduplication; a write is dropped only
+ * if its 64-bit fingerprint matches the stored one.
+ *
+ * Slots are read and written atomically, without locks. Writes of the same key must not be concurrent, which
+ * Hazelcast guarantees for map stores of the key's owner; a Jet sink writing the same keys at the same time may
+ * leave a stale fingerprint. Fingerprints are recorded only after the write succeeded, and must be removed
+ * whenever the stored value changes by other means, e.g. deletes or bulk loads.
+ */
+final class WriteDeduplicator {
+
+    private static final long EMPTY = 0;
+
+    private final AtomicLongArray slots;
+    private final int mask;
+    private final LongAdder droppedWrites = new LongAdder();
+
+    /**
+     * @param capacity number of slots, rounded up to a power of two.
+     */
+    WriteDeduplicator(int capacity) {
+        if (capacity <= 0 || capacity > 1 << 30) {
+            throw new IllegalArgumentException("deduplication capacity must be between 1 and 2^30, was " + capacity);
+        }
+        int size = Integer.highestOneBit(capacity) == capacity ? capacity : Integer.highestOneBit(capacity) << 1;
+        this.slots = new AtomicLongArray(size);
+        this.mask = size - 1;
+    }
+
+    /**
+     * Returns hash of the key bytes, which selects the slot of the key.
+     */
+    static long keyHash(@Nonnull byte[] keyBytes) {
+        return HashUtil.MurmurHash3_x64_64(keyBytes, 0, keyBytes.length);
+    }
+
+    /**
+     * Returns fingerprint of an entry with given key hash and value bytes; never 0.
+     */
+    static long fingerprint(long keyHash, @Nonnull byte[] valueBytes) {
+        long valueHash = HashUtil.MurmurHash3_x64_64(valueBytes, 0, valueBytes.length);
+        long fingerprint = HashUtil.MurmurHash3_fmix(keyHash * 31 + valueHash);
+        return fingerprint == EMPTY ? 1 : fingerprint;
+    }
+
+    /**
+     * Returns true and counts the write as dropped if given entry was the last one recorded under its key.
+     */
+    boolean isStored(long keyHash, long fingerprint) {
+        if (slots.get(slot(keyHash)) != fingerprint) {
+            return false;
+        }
+        droppedWrites.increment();
+        return true;
+    }
+
+    /**
+     * Records entry that was just written to the database.
+     */
+    void record(long keyHash, long fingerprint) {
+        slots.set(slot(keyHash), fingerprint);
+    }
+
+    /**
+     * Removes fingerprint of the key that is being deleted.
+     */
+    void remove(long keyHash) {
+        slots.set(slot(keyHash), EMPTY);
+    }
+
+    /**
+     * Removes all fingerprints, e.g. before range delete.
+     */
+    void clear() {
+        for (int i = 0; i < slots.length(); i++) {
+            slots.set(i, EMPTY);
+        }
+    }
+
+    private int slot(long keyHash) {
+        return (int) keyHash & mask;
+    }
+
+    int capacity() {
+        return slots.length();
+    }
+
+    long droppedWrites() {
+        return droppedWrites.sum();
+    }
+
+    /**
+     * Publishes number of dropped writes under given descriptor.
+     */
+    void collect(@Nonnull MetricDescriptor descriptor, @Nonnull MetricsCollectionContext context) {
+        context.collect(descriptor, "dedupDroppedWrites", INFO, COUNT, droppedWrites.sum());
+    }
+}
@@ -0,0 +1,25 @@
+package com.github.tomaszgaweda.rocksdb;
+
+/**
+ * State of the database's write path, as seen by RocksDB's write stall triggers.
+ *
+ * @see RocksDbMapStore#writePressure()
+ */
+public enum WritePressure {
+
+    /**
+     * Compactions keep up with writes.
+     */
+    NONE,
+
+    /**
+     * Compactions fall behind: RocksDB delays writes, or some map approaches its L0 file or pending compaction
+     * bytes slowdown trigger. Writers should slow down; {@code storeAll} writes larger batches.
+     */
+    SLOWDOWN,
+
+    /**
+     * RocksDB stopped writes until compactions catch up; every write blocks.
+     */
+    STOP
+}
@@ -0,0 +1,156 @@
+package com.github.tomaszgaweda.rocksdb;
+
+import com.hazelcast.internal.metrics.MetricDescriptor;
+import com.hazelcast.internal.metrics.MetricsCollectionContext;
+import org.rocksdb.ColumnFamilyHandle;
+import org.rocksdb.ColumnFamilyOptions;
+import org.rocksdb.RocksDB;
+import org.rocksdb.RocksDBException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nonnull;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+import static com.hazelcast.internal.metrics.ProbeLevel.INFO;
+import static com.hazelcast.internal.metrics.ProbeUnit.COUNT;
+import static com.hazelcast.internal.metrics.ProbeUnit.MS;
+
+/**
+ * Tracks {@link WritePressure} of a database, so writers can react to write stalls before they block inside RocksDB.
+ *
+ * Pressure is sampled from database properties at most every {@link #SAMPLE_INTERVAL_MILLIS}: writes are stopped
+ * if {@code rocksdb.is-write-stopped} is set, and slowed down if {@code rocksdb.actual-delayed-write-rate} is not
+ * zero or any column family reached {@link #TRIGGER_FRACTION} of its L0 file count or pending compaction bytes
+ * slowdown trigger. Changes of the pressure are logged.
+ */
+final class WriteStallMonitor {
+
+    private static final Logger log = LoggerFactory.getLogger(WriteStallMonitor.class);
+
+    /**
+     * Minimum interval between two samples of database properties.
+     */
+    static final long SAMPLE_INTERVAL_MILLIS = 100;
+
+    /**
+     * Fraction of slowdown triggers from which the database is considered to be under pressure, so writers can
+     * adapt before RocksDB starts delaying writes.
+     */
+    static final double TRIGGER_FRACTION = 0.75;
+
+    private static final long POLL_INTERVAL_MILLIS = 10;
+
+    private final RocksDB db;
+    private final String path;
+    private final Supplier<Map<ColumnFamilyHandle, ColumnFamilyOptions>> columnFamilies;
+    private final AtomicBoolean sampling = new AtomicBoolean();
+    private final LongAdder stalledWrites = new LongAdder();
+    private final LongAdder stallWaitNanos = new LongAdder();
+    private volatile WritePressure pressure = WritePressure.NONE;
+    private volatile long lastSample = System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(SAMPLE_INTERVAL_MILLIS);
+
+    /**
+     * @param columnFamilies supplies open column families with options they were opened with.
+     */
+    WriteStallMonitor(@Nonnull RocksDB db, @Nonnull String path,
+                      @Nonnull Supplier<Map<ColumnFamilyHandle, ColumnFamilyOptions>> columnFamilies) {
+        this.db = db;
+        this.path = path;
+        this.columnFamilies = columnFamilies;
+    }
+
+    /**
+     * Returns current pressure, sampling the database if the last sample is older than
+     * {@link #SAMPLE_INTERVAL_MILLIS}.
+     */
+    @Nonnull
+    WritePressure pressure() {
+        long now = System.nanoTime();
+        if (now - lastSample >= TimeUnit.MILLISECONDS.toNanos(SAMPLE_INTERVAL_MILLIS)
+                && sampling.compareAndSet(false, true)) {
+            try {
+                WritePressure sampled = sample();
+                if (sampled != pressure) {
+                    log.warn("write pressure of database {} changed from {} to {}", path, pressure, sampled);
+                }
+                pressure = sampled;
+                lastSample = now;
+            } finally {
+                sampling.set(false);
+            }
+        }
+        return pressure;
+    }
+
+    /**
+     * Waits up to given time while writes are stopped. Does not wait if timeout is 0.
+     *
+     * @return true if writes are not stopped.
+     */
+    boolean awaitWritable(long timeoutMillis) throws InterruptedException {
+        if (pressure() != WritePressure.STOP) {
+            return true;
+        }
+        stalledWrites.increment();
+        long start = System.nanoTime();
+        long deadline = start + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        try {
+            while (System.nanoTime() < deadline) {
+                Thread.sleep(POLL_INTERVAL_MILLIS);
+                if (pressure() != WritePressure.STOP) {
+                    return true;
+                }
+            }
+            return false;
+        } finally {
+            stallWaitNanos.add(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Publishes pressure and stall metrics with given descriptor.
+     */
+    void collect(MetricDescriptor descriptor, MetricsCollectionContext context) {
+        context.collect(descriptor, "writePressure", INFO, COUNT, pressure().ordinal());
+        context.collect(descriptor, "stalledWrites", INFO, COUNT, stalledWrites.sum());
+        context.collect(descriptor, "stallWaitMillis", INFO, MS, TimeUnit.NANOSECONDS.toMillis(stallWaitNanos.sum()));
+    }
+
+    private WritePressure sample() {
+        try {
+            if (db.getLongProperty("rocksdb.is-write-stopped") != 0) {
+                return WritePressure.STOP;
+            }
+            if (db.getLongProperty("rocksdb.actual-delayed-write-rate") != 0) {
+                return WritePressure.SLOWDOWN;
+            }
+            for (Map.Entry<ColumnFamilyHandle, ColumnFamilyOptions> columnFamily : columnFamilies.get().entrySet()) {
+                if (nearTrigger(columnFamily.getKey(), columnFamily.getValue())) {
+                    return WritePressure.SLOWDOWN;
+                }
+            }
+            return WritePressure.NONE;
+        } catch (RocksDBException e) {
+            log.warn("cannot read write stall properties of RocksDB {}", path, e);
+            return pressure;
+        }
+    }
+
+    private boolean nearTrigger(ColumnFamilyHandle handle, ColumnFamilyOptions options) throws RocksDBException {
+        int l0Trigger = options.level0SlowdownWritesTrigger();
+        // not an integer property, so it cannot be read with getLongProperty
+        long l0Files = Long.parseLong(db.getProperty(handle, "rocksdb.num-files-at-level0"));
+        if (l0Trigger > 0 && l0Files >= TRIGGER_FRACTION * l0Trigger) {
+            return true;
+        }
+        long pendingTrigger = options.softPendingCompactionBytesLimit();
+        return pendingTrigger > 0
+                && db.getLongProperty(handle, "rocksdb.estimate-pending-compaction-bytes")
+                >= TRIGGER_FRACTION * pendingTrigger;
+    }
+}
@@ -0,0 +1,37 @@
+package com.github.tomaszgaweda.rocksdb;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class LatencyHistogramTest {
+
+    @Test
+    void reports_percentiles_within_bucket_precision() {
+        // given
+        var histogram = new LatencyHistogram();
+
+        // when
+        for (long i = 1; i <= 10_000; i++) {
+            histogram.record(i * 1000);
+        }
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+
+        // then
+        assertThat(snapshot.count()).isEqualTo(10_000);
+        assertThat((double) snapshot.percentile(0.5)).isCloseTo(5_000_000, within(5_000_000 * 0.125));
+        assertThat((double) snapshot.percentile(0.99)).isCloseTo(9_900_000, within(9_900_000 * 0.125));
+        assertThat(snapshot.percentile(0.999)).isGreaterThanOrEqualTo(9_990_000);
+        assertThat(new LatencyHistogram().snapshot().percentile(0.99)).isZero();
+    }
+
+    @Test
+    void bucket_bounds_contain_values() {
+        for (long value : new long[]{0, 1, 7, 8, 15, 16, 1000, 123_456_789, Long.MAX_VALUE}) {
+            int index = LatencyHistogram.index(value);
+            assertThat(LatencyHistogram.upperBound(index)).isGreaterThanOrEqualTo(value);
+            assertThat(index == 0 || LatencyHistogram.upperBound(index - 1) < value).isTrue();
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package com.github.tomaszgaweda.rocksdb;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Properties;
+
+import static com.github.tomaszgaweda.rocksdb.RocksDbMapStore.*;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class MemoryBudgetTest {
+
+    @Test
+    void matches_only_same_budget() {
+        // given
+        var properties = new Properties();
+        properties.setProperty(MEMORY_BUDGET_PARAM, String.valueOf(16L << 20));
+        var otherRatio = new Properties();
+        otherRatio.putAll(properties);
+        otherRatio.setProperty(MEMORY_WRITE_BUFFER_RATIO_PARAM, "0.25");
+
+        // when
+        try (var budget = new MemoryBudget(properties)) {
+
+            // then
+            assertThat(budget.matches(properties)).isTrue();
+            assertThat(budget.matches(otherRatio)).isFalse();
+            assertThat(budget.matches(new Properties())).isFalse();
+        }
+    }
+
+    @Test
+    void rejects_clock_cache() {
+        // given
+        var properties = new Properties();
+        properties.setProperty(MEMORY_CACHE_TYPE_PARAM, "CLOCK");
+
+        // when, then
+        assertThatThrownBy(() -> new MemoryBudget(properties))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,78 @@
+package com.github.tomaszgaweda.rocksdb;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class OffPeakCompactionTest {
+
+    private static final LocalDate DAY = LocalDate.of(2021, 11, 20);
+
+    private Instant now;
+    private final Clock clock = new Clock() {
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    };
+
+    @Test
+    void compacts_once_per_window_spanning_midnight() {
+        // given
+        List<BooleanSupplier> compactions = new ArrayList<>();
+        var task = new OffPeakCompaction(LocalTime.of(23, 0), LocalTime.of(2, 0), compactions::add, clock);
+
+        // when
+        setTime(DAY, 22, 59);
+        task.run();
+        setTime(DAY, 23, 30);
+        task.run();
+        setTime(DAY.plusDays(1), 1, 0);
+        task.run();
+
+        // then
+        assertThat(compactions).hasSize(1);
+        assertThat(compactions.get(0).getAsBoolean()).isTrue();
+
+        // when
+        setTime(DAY.plusDays(1), 2, 0);
+        task.run();
+        setTime(DAY.plusDays(1), 23, 0);
+        task.run();
+
+        // then
+        assertThat(compactions).hasSize(2);
+        setTime(DAY.plusDays(2), 2, 1);
+        assertThat(compactions.get(1).getAsBoolean()).isFalse();
+    }
+
+    @Test
+    void parses_window() {
+        assertThat(OffPeakCompaction.of("", continueWhile -> {})).isNull();
+        assertThat(OffPeakCompaction.of("01:00-05:30", continueWhile -> {})).isNotNull();
+        assertThatThrownBy(() -> OffPeakCompaction.of("01:00", continueWhile -> {}))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> OffPeakCompaction.of("1am-5am", continueWhile -> {}))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private void setTime(LocalDate day, int hour, int minute) {
+        now = day.atTime(hour, minute).toInstant(ZoneOffset.UTC);
+    }
+}
@@ -0,0 +1,44 @@
+package com.github.tomaszgaweda.rocksdb;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class OrderedKeySerializerTest {
+
+    private final OrderedKeySerializer serializer = OrderedKeySerializer.INSTANCE;
+
+    @Test
+    void encodes_keys_in_natural_order() {
+        assertOrdered(Long.class, List.of(Long.MIN_VALUE, -1000L, -1L, 0L, 1L, 255L, 256L, Long.MAX_VALUE));
+        assertOrdered(Integer.class, List.of(Integer.MIN_VALUE, -1, 0, 1, 65536, Integer.MAX_VALUE));
+        assertOrdered(UUID.class, List.of(new UUID(Long.MIN_VALUE, 5), new UUID(-1, -1), new UUID(0, Long.MIN_VALUE),
+                new UUID(0, 0), new UUID(0, 1), new UUID(Long.MAX_VALUE, 0)));
+        assertOrdered(String.class, List.of("", "a", "ab", "b", "ża"));
+        // code point order, String.compareTo would put the supplementary character first
+        assertOrdered(String.class, List.of("\uFF21", "\uD83D\uDE00"));
+        assertThat(serializer.toBytes(42L)).hasSize(Long.BYTES);
+    }
+
+    @Test
+    void rejects_unsupported_keys() {
+        assertThat(OrderedKeySerializer.supports(Object.class)).isFalse();
+        assertThatThrownBy(() -> serializer.toBytes(1.5))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private <K> void assertOrdered(Class<K> keyClass, List<K> sortedKeys) {
+        List<byte[]> encoded = new ArrayList<>();
+        for (K key : sortedKeys) {
+            byte[] bytes = serializer.toBytes(key);
+            assertThat(serializer.fromBytes(bytes, keyClass)).isEqualTo(key);
+            encoded.add(bytes);
+        }
+        List<byte[]> sorted = new ArrayList<>(encoded);
+        sorted.sort(Arrays::compareUnsigned);
+        assertThat(sorted).containsExactlyElementsOf(encoded);
+    }
+}
@@ -0,0 +1,68 @@
+package com.github.tomaszgaweda.rocksdb;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.rocksdb.MemoryUsageType;
+
+import java.io.File;
+import java.util.Properties;
+
+import static com.github.tomaszgaweda.rocksdb.RocksDbMapStore.MEMORY_BUDGET_PARAM;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RocksDatabaseContainerTest {
+
+    @TempDir
+    File dbDir;
+
+    @Test
+    void databases_share_memory_budget() {
+        // given
+        var properties = new Properties();
+        properties.setProperty(MEMORY_BUDGET_PARAM, String.valueOf(64L << 20));
+        var firstStore = new RocksDbMapStore<String, String>();
+        var secondStore = new RocksDbMapStore<String, String>();
+        String firstPath = new File(dbDir, "first").getAbsolutePath();
+        String secondPath = new File(dbDir, "second").getAbsolutePath();
+
+        // when
+        var first = RocksDatabaseContainer.getRocksDb(firstPath, true, properties, firstStore);
+        var second = RocksDatabaseContainer.getRocksDb(secondPath, true, properties, secondStore);
+        var firstMap = first.openMap("map", new ColumnFamilyConfig(), JavaSerializer.INSTANCE, null,
+                Durability.ASYNC);
+        for (int i = 0; i < 1000; i++) {
+            first.put(firstMap, "key" + i, "value" + i);
+        }
+        var usage = RocksDbMapStore.memoryUsage();
+
+        RocksDatabaseContainer.dispose(firstPath, firstStore);
+        RocksDatabaseContainer.dispose(secondPath, secondStore);
+
+        // then
+        assertThat(second).isNotSameAs(first);
+        assertThat(usage).containsKeys(MemoryUsageType.kCacheTotal, MemoryUsageType.kMemTableTotal);
+        assertThat(usage.get(MemoryUsageType.kCacheTotal)).isLessThanOrEqualTo(64L << 20);
+        assertThat(RocksDbMapStore.memoryUsage()).isEmpty();
+    }
+
+    @Test
+    void reopens_disposed_database() {
+        // given
+        var store = new RocksDbMapStore<String, String>();
+        String path = dbDir.getAbsolutePath();
+        var db = RocksDatabaseContainer.getRocksDb(path, true, new Properties(), store);
+        RocksDatabaseContainer.dispose(path, store);
+
+        // when
+        var reopened = RocksDatabaseContainer.getRocksDb(path, true, new Properties(), store);
+        var map = reopened.openMap("map", new ColumnFamilyConfig(), JavaSerializer.INSTANCE, null,
+                Durability.ASYNC);
+        reopened.put(map, "key", "value");
+        String value = reopened.get(map, "key", String.class);
+        RocksDatabaseContainer.dispose(path, store);
+
+        // then
+        assertThat(reopened).isNotSameAs(db);
+        assertThat(value).isEqualTo("value");
+    }
+}
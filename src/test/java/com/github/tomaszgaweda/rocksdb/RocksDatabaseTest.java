@@ -2,17 +2,28 @@ package com.github.tomaszgaweda.rocksdb;
 
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.io.TempDir;
+import org.rocksdb.ColumnFamilyOptions;
+import org.rocksdb.FlushOptions;
+import org.rocksdb.LiveFileMetaData;
 import org.rocksdb.Options;
 import org.rocksdb.RocksDB;
 import org.rocksdb.RocksDBException;
 
+import javax.annotation.Nonnull;
 import java.io.File;
-import java.util.List;
-import java.util.Map;
+import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import static com.github.tomaszgaweda.rocksdb.SerializationUtils.fromBytes;
 import static com.github.tomaszgaweda.rocksdb.SerializationUtils.toBytes;
+import static java.nio.charset.StandardCharsets.UTF_8;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.assertj.core.api.Assertions.fail;
 
 class RocksDatabaseTest {
@@ -21,6 +32,8 @@ class RocksDatabaseTest {
         RocksDB.loadLibrary();
     }
 
+    private static final Serializer SERIALIZER = JavaSerializer.INSTANCE;
+
     @TempDir
     File dbDir;
 
@@ -29,9 +42,10 @@ class RocksDatabaseTest {
         // given
         String dbAbsoluteDir = dbDir.getAbsolutePath();
         var db = new RocksDatabase(dbAbsoluteDir, true);
+        var map = defaultMap(db);
 
         // when
-        db.putAll(Map.of(
+        db.putAll(map, Map.of(
                 "test1", "test1",
                 "test2", "testTwoooo"
         ));
@@ -49,10 +63,11 @@ class RocksDatabaseTest {
         // given
         String dbAbsoluteDir = dbDir.getAbsolutePath();
         var db = new RocksDatabase(dbAbsoluteDir, true);
+        var map = defaultMap(db);
 
         // when
-        db.put("test1", "test1");
-        db.put("test2", "testTwoooo");
+        db.put(map, "test1", "test1");
+        db.put(map, "test2", "testTwoooo");
         db.close();
 
         // then
@@ -67,17 +82,18 @@ class RocksDatabaseTest {
         // given
         String dbAbsoluteDir = dbDir.getAbsolutePath();
         var db = new RocksDatabase(dbAbsoluteDir, true);
+        var map = defaultMap(db);
 
         // when
-        db.put("test1", "test1");
-        db.put("test2", "test2");
-        db.delete("test2");
-        db.putAll(Map.of(
+        db.put(map, "test1", "test1");
+        db.put(map, "test2", "test2");
+        db.delete(map, "test2");
+        db.putAll(map, Map.of(
                 "test3", "test3",
                 "test4", "test4"
         ));
-        Map<String, String> valuesRead = db.get(List.of("test1", "test2", "test3", "test4"), String.class);
-        String test3Value = db.get("test3", String.class);
+        Map<String, String> valuesRead = db.get(map, List.of("test1", "test2", "test3", "test4"), String.class);
+        String test3Value = db.get(map, "test3", String.class);
         db.close();
 
         // then
@@ -94,18 +110,394 @@ class RocksDatabaseTest {
         }
     }
 
+    @Test
+    void reads_and_writes_values_of_any_size() {
+        // given
+        var db = new RocksDatabase(dbDir.getAbsolutePath(), true);
+        var map = defaultMap(db);
+        String small = "x";
+        String grown = "y".repeat(100_000);
+        String unpooled = "z".repeat(2 * DirectBuffers.MAX_POOLED_CAPACITY);
+
+        // when
+        db.put(map, "small", small);
+        db.put(map, "grown", grown);
+        db.put(map, "unpooled", unpooled);
+        db.putAll(map, Map.of("batched", unpooled));
+        db.delete(map, "small");
+
+        // then
+        assertThat(db.get(map, "small", String.class)).isNull();
+        assertThat(db.get(map, "grown", String.class)).isEqualTo(grown);
+        assertThat(db.get(map, "unpooled", String.class)).isEqualTo(unpooled);
+        assertThat(db.get(map, "batched", String.class)).isEqualTo(unpooled);
+        db.close();
+    }
+
+    @Test
+    void merges_concurrent_writes_with_group_commit() throws Exception {
+        // given
+        var properties = new Properties();
+        properties.setProperty(RocksDbMapStore.GROUP_COMMIT_PARAM, "true");
+        var db = new RocksDatabase(dbDir.getAbsolutePath(), true, null, new DatabaseConfig(properties));
+        var map = defaultMap(db);
+        int threads = 8;
+        int keysPerThread = 500;
+        var executor = Executors.newFixedThreadPool(threads);
+
+        // when
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int thread = t;
+            futures.add(executor.submit(() -> {
+                for (int i = 0; i < keysPerThread; i++) {
+                    db.put(map, thread + "-" + i, "value" + i);
+                    if (i % 2 == 0) {
+                        db.delete(map, thread + "-" + i);
+                    }
+                }
+            }));
+        }
+        for (var future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+
+        // then
+        for (int t = 0; t < threads; t++) {
+            for (int i = 0; i < keysPerThread; i++) {
+                assertThat(db.get(map, t + "-" + i, String.class)).isEqualTo(i % 2 == 0 ? null : "value" + i);
+            }
+        }
+        db.close();
+    }
+
+    @Test
+    void fails_group_commit_writes_when_closed() throws Exception {
+        // given
+        var properties = new Properties();
+        properties.setProperty(RocksDbMapStore.GROUP_COMMIT_PARAM, "true");
+        var db = new RocksDatabase(dbDir.getAbsolutePath(), true, null, new DatabaseConfig(properties));
+        var map = defaultMap(db);
+        var executor = Executors.newFixedThreadPool(4);
+        var started = new CountDownLatch(4);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            futures.add(executor.submit(() -> {
+                started.countDown();
+                for (int i = 0; ; i++) {
+                    db.put(map, Thread.currentThread().getName() + i, "value");
+                }
+            }));
+        }
+        started.await();
+
+        // when
+        db.close();
+
+        // then
+        for (var future : futures) {
+            assertThatThrownBy(() -> future.get(10, TimeUnit.SECONDS))
+                    .isInstanceOf(ExecutionException.class)
+                    .hasCauseInstanceOf(IllegalStateException.class);
+        }
+        executor.shutdown();
+    }
+
+    @Test
+    void reads_large_batches_in_parallel_chunks() {
+        // given
+        var db = new RocksDatabase(dbDir.getAbsolutePath(), true);
+        var map = defaultMap(db);
+        Map<String, String> entries = new HashMap<>();
+        for (int i = 0; i < 1000; i++) {
+            entries.put("key" + i, "value" + i);
+        }
+        db.putAll(map, entries);
+        List<String> keys = new ArrayList<>(entries.keySet());
+        keys.add("missing");
+        var pool = new ForkJoinPool(4);
+
+        // when
+        Map<String, String> result = db.get(map, keys, String.class, 64, pool);
+
+        // then
+        assertThat(result).isEqualTo(entries);
+        assertThat(db.get(map, keys, String.class)).isEqualTo(entries);
+        pool.shutdown();
+        db.close();
+    }
+
+    @Test
+    void bulk_loads_entries_in_shards() {
+        // given
+        var db = new RocksDatabase(dbDir.getAbsolutePath(), true);
+        var map = defaultMap(db);
+        db.put(map, "key0", "old");
+        List<Map.Entry<String, String>> entries = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            entries.add(Map.entry("key" + (i % 500), "value" + i));
+        }
+
+        // when
+        long count = db.bulkLoad(map, entries.iterator(), 300, 2);
+
+        // then
+        assertThat(count).isEqualTo(1000);
+        assertThat(db.get(map, "key0", String.class)).isEqualTo("value500");
+        assertThat(db.get(map, "key499", String.class)).isEqualTo("value999");
+        List<String> keys = new ArrayList<>();
+        try (var allKeys = db.keys(map, String.class, 100)) {
+            allKeys.forEach(keys::add);
+        }
+        assertThat(keys).hasSize(500);
+        assertThat(dbDir.list((dir, name) -> name.startsWith("bulk-load-"))).isEmpty();
+        db.close();
+    }
+
+    @Test
+    void merges_overlapping_shards_into_files_with_disjoint_ranges() {
+        // given
+        var db = new RocksDatabase(dbDir.getAbsolutePath(), true);
+        var map = db.openMap("bulk", new ColumnFamilyConfig(), SERIALIZER, null, Durability.ASYNC);
+        List<Map.Entry<String, String>> entries = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            entries.add(Map.entry("key" + (i * 7 % 400), "value" + i));
+        }
+
+        // when
+        long count = db.bulkLoad(map, entries.iterator(), 100, 3);
+
+        // then
+        assertThat(count).isEqualTo(1000);
+        assertThat(db.get(map, "key0", String.class)).isEqualTo("value800");
+        List<LiveFileMetaData> files = db.nativeDb().getLiveFilesMetaData().stream()
+                .filter(file -> new String(file.columnFamilyName(), UTF_8).equals("bulk"))
+                .sorted((a, b) -> Arrays.compareUnsigned(a.smallestKey(), b.smallestKey()))
+                .toList();
+        assertThat(files).isNotEmpty().allMatch(file -> file.level() > 0);
+        for (int i = 1; i < files.size(); i++) {
+            assertThat(Arrays.compareUnsigned(files.get(i - 1).largestKey(), files.get(i).smallestKey())).isNegative();
+        }
+        db.close();
+    }
+
+    @Test
+    void persists_writes_of_every_durability() {
+        // given
+        var db = new RocksDatabase(dbDir.getAbsolutePath(), true);
+        for (Durability durability : Durability.values()) {
+            var map = db.openMap(durability.name(), new ColumnFamilyConfig(), SERIALIZER, null, durability);
+            db.put(map, "key", "value");
+            db.putAll(map, Map.of("other", "value"));
+        }
+        db.syncWal();
+        db.flushMemtables();
+
+        // when
+        db.close();
+        var reopened = new RocksDatabase(dbDir.getAbsolutePath(), false);
+
+        // then
+        for (Durability durability : Durability.values()) {
+            var map = reopened.openMap(durability.name(), new ColumnFamilyConfig(), SERIALIZER, null, durability);
+            assertThat(reopened.get(map, List.of("key", "other"), String.class))
+                    .containsOnly(Map.entry("key", "value"), Map.entry("other", "value"));
+        }
+        reopened.close();
+    }
+
+    @Test
+    void restores_checkpoints_and_backups() {
+        // given
+        var properties = new Properties();
+        properties.setProperty(RocksDbMapStore.BACKUP_DIRECTORY_PARAM, new File(dbDir, "backups").getAbsolutePath());
+        properties.setProperty(RocksDbMapStore.BACKUPS_TO_KEEP_PARAM, "1");
+        var partitioned = new Properties();
+        partitioned.setProperty(RocksDbMapStore.PARTITION_PREFIX_PARAM, "true");
+        var dbDirectory = new File(dbDir, "db");
+        var db = new RocksDatabase(dbDirectory.getAbsolutePath(), true, null, new DatabaseConfig(properties));
+        var map = db.openMap("map", new ColumnFamilyConfig(partitioned), SERIALIZER, new TestPartitioner(),
+                Durability.NO_WAL);
+
+        // when
+        db.put(map, 1, "first");
+        db.backup();
+        db.put(map, 1, "second");
+        db.checkpoint(new File(dbDir, "checkpoint"));
+        db.backup();
+        db.put(map, 1, "third");
+        db.close();
+
+        // then
+        var checkpoint = new RocksDatabase(new File(dbDir, "checkpoint").getAbsolutePath(), false);
+        var checkpointMap = checkpoint.openMap("map", new ColumnFamilyConfig(partitioned), SERIALIZER,
+                new TestPartitioner(), Durability.NO_WAL);
+        assertThat(checkpoint.get(checkpointMap, 1, String.class)).isEqualTo("second");
+        checkpoint.close();
+
+        RocksDatabase.restore(new File(dbDir, "backups"), dbDirectory);
+        var restored = new RocksDatabase(dbDirectory.getAbsolutePath(), false);
+        var restoredMap = restored.openMap("map", new ColumnFamilyConfig(partitioned), SERIALIZER,
+                new TestPartitioner(), Durability.NO_WAL);
+        assertThat(restored.get(restoredMap, 1, String.class)).isEqualTo("second");
+        restored.close();
+    }
+
+    @Test
+    void hands_over_partition_in_sst_files() {
+        // given
+        var partitioned = new Properties();
+        partitioned.setProperty(RocksDbMapStore.PARTITION_PREFIX_PARAM, "true");
+        var source = new RocksDatabase(new File(dbDir, "source").getAbsolutePath(), true);
+        var sourceMap = source.openMap("map", new ColumnFamilyConfig(partitioned), SERIALIZER, new TestPartitioner(),
+                Durability.ASYNC);
+        var target = new RocksDatabase(new File(dbDir, "target").getAbsolutePath(), true);
+        var targetMap = target.openMap("map", new ColumnFamilyConfig(partitioned), SERIALIZER, new TestPartitioner(),
+                Durability.ASYNC);
+        for (int i = 0; i < 100; i++) {
+            source.put(sourceMap, i, "value" + i);
+        }
+        target.put(targetMap, 1, "stale");
+        target.put(targetMap, 2, "other partition");
+
+        // when
+        List<File> files = source.exportPartition(sourceMap, 1, new File(dbDir, "export"));
+        List<File> empty = source.exportPartition(sourceMap, 1000, new File(dbDir, "empty"));
+        target.importPartition(targetMap, 1, files);
+        target.importPartition(targetMap, 3, empty);
+
+        // then
+        assertThat(files).isNotEmpty();
+        assertThat(empty).isEmpty();
+        assertThat(new File(dbDir, "empty")).doesNotExist();
+        assertThat(target.get(targetMap, 1, String.class)).isEqualTo("value1");
+        assertThat(target.get(targetMap, 97, String.class)).isEqualTo("value97");
+        assertThat(target.get(targetMap, 3, String.class)).isNull();
+        assertThat(target.get(targetMap, 2, String.class)).isEqualTo("other partition");
+        source.close();
+        target.close();
+    }
+
+    @Test
+    void compacts_maps_with_rate_limited_background_io() throws RocksDBException {
+        // given
+        var properties = new Properties();
+        properties.setProperty(RocksDbMapStore.RATE_LIMIT_PARAM, String.valueOf(64 * 1024 * 1024));
+        properties.setProperty(RocksDbMapStore.MAX_BACKGROUND_JOBS_PARAM, "4");
+        var db = new RocksDatabase(dbDir.getAbsolutePath(), true, null, new DatabaseConfig(properties));
+        var map = db.openMap("map", new ColumnFamilyConfig(), SERIALIZER, null, Durability.ASYNC);
+        var other = db.openMap("other", new ColumnFamilyConfig(), SERIALIZER, null, Durability.ASYNC);
+        try (var flushOptions = new FlushOptions()) {
+            for (int flush = 0; flush < 3; flush++) {
+                for (int i = 0; i < 100; i++) {
+                    db.put(map, i, "value" + flush);
+                    db.put(other, i, "value" + flush);
+                }
+                db.nativeDb().flush(flushOptions, List.of(map.columnFamily(), other.columnFamily()));
+            }
+        }
+
+        // when
+        db.compact(map);
+
+        // then
+        assertThat(sstFiles(db, "map")).isEqualTo(1);
+        assertThat(sstFiles(db, "other")).isEqualTo(3);
+        assertThat(db.get(map, 1, String.class)).isEqualTo("value2");
+
+        // when
+        db.compactAll(() -> true);
+
+        // then
+        assertThat(sstFiles(db, "other")).isEqualTo(1);
+        db.close();
+        db.compactAll(() -> true);
+    }
+
+    @Test
+    void reports_write_pressure_near_slowdown_triggers() throws Exception {
+        // given
+        var db = new RocksDatabase(dbDir.getAbsolutePath(), true);
+        var map = db.openMap("map", new ColumnFamilyConfig(), SERIALIZER, null, Durability.ASYNC);
+        Map<Integer, String> entries = new HashMap<>();
+        for (int i = 0; i < 2500; i++) {
+            entries.put(i, "value" + i);
+        }
+        try (var options = new ColumnFamilyOptions().setLevel0SlowdownWritesTrigger(1);
+             var flushOptions = new FlushOptions()) {
+            var monitor = new WriteStallMonitor(db.nativeDb(), dbDir.getAbsolutePath(),
+                    () -> Map.of(map.columnFamily(), options));
+            assertThat(monitor.pressure()).isEqualTo(WritePressure.NONE);
+
+            // when
+            db.putAll(map, entries, 1000);
+            db.nativeDb().flush(flushOptions, map.columnFamily());
+            Thread.sleep(WriteStallMonitor.SAMPLE_INTERVAL_MILLIS);
+
+            // then
+            assertThat(monitor.pressure()).isEqualTo(WritePressure.SLOWDOWN);
+            assertThat(monitor.awaitWritable(0)).isTrue();
+        }
+        assertThat(db.get(map, entries.keySet(), String.class)).isEqualTo(entries);
+        assertThat(db.writeStallMonitor().pressure()).isEqualTo(WritePressure.NONE);
+        db.close();
+    }
+
+    @Test
+    void scans_ranges_of_ordered_keys() {
+        // given
+        var ordered = new Properties();
+        ordered.setProperty(RocksDbMapStore.KEY_ENCODING_PARAM, KeyEncoding.ORDERED.name());
+        var partitioned = new Properties();
+        partitioned.putAll(ordered);
+        partitioned.setProperty(RocksDbMapStore.PARTITION_PREFIX_PARAM, "true");
+        var db = new RocksDatabase(dbDir.getAbsolutePath(), true);
+        var map = db.openMap("map", new ColumnFamilyConfig(ordered), SERIALIZER, null, Durability.ASYNC);
+        var partitionedMap = db.openMap("partitioned", new ColumnFamilyConfig(partitioned), SERIALIZER,
+                new TestPartitioner(), Durability.ASYNC);
+        for (long i = -50; i < 50; i++) {
+            db.put(map, i, "value" + i);
+        }
+        for (int i = 0; i < 40; i++) {
+            db.put(partitionedMap, i, "value" + i);
+        }
+
+        // when
+        List<Map.Entry<Long, String>> range = db.scan(map, -3L, 2L, 10, Long.class, String.class);
+        List<Map.Entry<Long, String>> limited = db.scan(map, 45L, null, 3, Long.class, String.class);
+        List<Map.Entry<Integer, String>> merged = db.scan(partitionedMap, 10, 20, 4, Integer.class, String.class);
+
+        // then
+        assertThat(range).extracting(Map.Entry::getKey).containsExactly(-3L, -2L, -1L, 0L, 1L);
+        assertThat(range.get(0).getValue()).isEqualTo("value-3");
+        assertThat(limited).extracting(Map.Entry::getKey).containsExactly(45L, 46L, 47L);
+        // only partitions 1 and 3 are local, so only odd keys are found
+        assertThat(merged).extracting(Map.Entry::getKey).containsExactly(11, 13, 15, 17);
+        assertThatThrownBy(() -> db.scan(defaultMap(db), null, null, 10, Integer.class, String.class))
+                .isInstanceOf(IllegalStateException.class);
+        db.close();
+    }
+
+    private static long sstFiles(RocksDatabase db, String columnFamily) {
+        return db.nativeDb().getLiveFilesMetaData().stream()
+                .filter(file -> new String(file.columnFamilyName()).equals(columnFamily))
+                .count();
+    }
+
     @Test
     void does_not_allows_usage_after_close() {
         // given
         String dbAbsoluteDir = dbDir.getAbsolutePath();
         var db = new RocksDatabase(dbAbsoluteDir, true);
+        var map = defaultMap(db);
 
         // when
-        db.put("test1", "test1");
+        db.put(map, "test1", "test1");
         db.close();
 
         try {
-            db.put("test2", "test2");
+            db.put(map, "test2", "test2");
             fail("exception expected");
         } catch (Exception expected) {
             // then
@@ -115,6 +507,352 @@ class RocksDatabaseTest {
         }
     }
 
+    @Test
+    void maps_do_not_overwrite_each_other() {
+        // given
+        var db = new RocksDatabase(dbDir.getAbsolutePath(), true);
+        var first = db.openMap("first", new ColumnFamilyConfig(), SERIALIZER, null, Durability.ASYNC);
+        var second = db.openMap("second", new ColumnFamilyConfig(), SERIALIZER, null, Durability.ASYNC);
+
+        // when
+        db.put(first, "key", "first value");
+        db.put(second, "key", "second value");
+        db.close();
+
+        // then
+        var reopened = new RocksDatabase(dbDir.getAbsolutePath(), false);
+        var firstReopened = reopened.openMap("first", new ColumnFamilyConfig(), SERIALIZER, null, Durability.ASYNC);
+        assertThat(reopened.get(firstReopened, "key", String.class))
+                .isEqualTo("first value");
+        var secondReopened = reopened.openMap("second", new ColumnFamilyConfig(), SERIALIZER, null, Durability.ASYNC);
+        assertThat(reopened.get(secondReopened, "key", String.class))
+                .isEqualTo("second value");
+        reopened.close();
+    }
+
+    @Test
+    void reads_values_compressed_with_dictionary() {
+        // given
+        var properties = new Properties();
+        properties.setProperty(RocksDbMapStore.COMPRESSION_PER_LEVEL_PARAM, "ZSTD_COMPRESSION, LZ4_COMPRESSION");
+        properties.setProperty(RocksDbMapStore.COMPRESSION_DICTIONARY_BYTES_PARAM, "4096");
+        var config = new ColumnFamilyConfig(properties);
+        var db = new RocksDatabase(dbDir.getAbsolutePath(), true);
+        // memtable of NO_WAL map is flushed to a compressed SST file on close
+        var map = db.openMap("compressed", config, SERIALIZER, null, Durability.NO_WAL);
+
+        // when
+        for (int i = 0; i < 1000; i++) {
+            db.put(map, "key" + i, "value" + i);
+        }
+        db.close();
+
+        // then
+        var reopened = new RocksDatabase(dbDir.getAbsolutePath(), false);
+        var reopenedMap = reopened.openMap("compressed", config, SERIALIZER, null, Durability.NO_WAL);
+        assertThat(reopened.get(reopenedMap, "key999", String.class)).isEqualTo("value999");
+        reopened.close();
+    }
+
+    @Test
+    void keeps_large_values_in_blob_files() throws RocksDBException {
+        // given
+        var properties = new Properties();
+        properties.setProperty(RocksDbMapStore.BLOB_FILES_PARAM, "true");
+        properties.setProperty(RocksDbMapStore.MIN_BLOB_SIZE_PARAM, "1024");
+        var db = new RocksDatabase(dbDir.getAbsolutePath(), true);
+        var map = db.openMap("blobs", new ColumnFamilyConfig(properties), SERIALIZER, null, Durability.ASYNC);
+        String largeValue = "large value ".repeat(10_000);
+
+        // when
+        for (int i = 0; i < 10; i++) {
+            db.put(map, "large" + i, largeValue + i);
+            db.put(map, "small" + i, "small value" + i);
+        }
+        try (var flushOptions = new FlushOptions()) {
+            db.nativeDb().flush(flushOptions, map.columnFamily());
+        }
+
+        // then
+        assertThat(db.nativeDb().getLongProperty(map.columnFamily(), "rocksdb.num-blob-files")).isEqualTo(1);
+        assertThat(db.nativeDb().getLongProperty(map.columnFamily(), "rocksdb.total-blob-file-size")).isPositive();
+        assertThat(db.get(map, "large3", String.class)).isEqualTo(largeValue + 3);
+        assertThat(db.get(map, "small3", String.class)).isEqualTo("small value3");
+        db.close();
+    }
+
+    @Test
+    void updates_value_cache_on_writes_through_any_view() {
+        // given
+        var db = new RocksDatabase(dbDir.getAbsolutePath(), true);
+        var cached = db.openMap("cached", new ColumnFamilyConfig(), SERIALIZER, null, Durability.ASYNC, 0, 16);
+        var other = db.openMap("cached", new ColumnFamilyConfig(), SERIALIZER, null, Durability.ASYNC);
+        db.put(cached, "key", "old");
+        db.put(cached, "deleted", "value");
+
+        // when
+        db.put(other, "key", "new");
+        db.delete(other, "deleted");
+
+        // then
+        assertThat(other.valueCache()).isSameAs(cached.valueCache());
+        assertThat(cached.valueCache().get("key")).isEqualTo("new");
+        assertThat(cached.valueCache().get("deleted")).isNull();
+        db.close();
+    }
+
+    @Test
+    void drops_writes_of_unchanged_values() throws RocksDBException {
+        // given
+        var db = new RocksDatabase(dbDir.getAbsolutePath(), true);
+        var map = db.openMap("dedup", new ColumnFamilyConfig(), SERIALIZER, null, Durability.ASYNC, 1024, 0);
+        var deduplicator = map.deduplicator();
+        db.put(map, "key", "value");
+        db.putAll(map, Map.of("first", "a", "second", "b"), 1);
+        // written behind the deduplicator's back, so dropped writes are visible
+        for (String key : List.of("key", "first", "second")) {
+            db.nativeDb().put(map.columnFamily(), map.keyBytes(key), map.valueBytes("raw"));
+        }
+
+        // when
+        db.put(map, "key", "value");
+        db.putAll(map, Map.of("first", "a", "second", "changed"), 1);
+
+        // then
+        assertThat(deduplicator.droppedWrites()).isEqualTo(2);
+        assertThat(db.get(map, "key", String.class)).isEqualTo("raw");
+        assertThat(db.get(map, "first", String.class)).isEqualTo("raw");
+        assertThat(db.get(map, "second", String.class)).isEqualTo("changed");
+
+        // when
+        db.delete(map, "key");
+        db.put(map, "key", "value");
+        db.deleteRange(map, KeyRange.all());
+        db.putAll(map, Map.of("first", "a"));
+
+        // then
+        assertThat(deduplicator.droppedWrites()).isEqualTo(2);
+        assertThat(db.get(map, "key", String.class)).isNull();
+        assertThat(db.get(map, "first", String.class)).isEqualTo("a");
+        db.close();
+    }
+
+    @Test
+    void deduplicates_writes_against_writes_through_any_view() {
+        // given
+        var db = new RocksDatabase(dbDir.getAbsolutePath(), true);
+        var other = db.openMap("dedup", new ColumnFamilyConfig(), SERIALIZER, null, Durability.ASYNC);
+        var map = db.openMap("dedup", new ColumnFamilyConfig(), SERIALIZER, null, Durability.ASYNC, 1024, 0);
+        db.put(map, "key", "old");
+        db.put(map, "deleted", "value");
+
+        // when
+        db.put(other, "key", "new");
+        db.delete(other, "deleted");
+        db.put(map, "key", "old");
+        db.put(map, "deleted", "value");
+
+        // then
+        assertThat(map.deduplicator().droppedWrites()).isZero();
+        assertThat(db.get(map, "key", String.class)).isEqualTo("old");
+        assertThat(db.get(map, "deleted", String.class)).isEqualTo("value");
+        db.close();
+    }
+
+    @Test
+    void skips_and_deletes_expired_entries() throws InterruptedException {
+        // given
+        var properties = new Properties();
+        properties.setProperty(RocksDbMapStore.TTL_SECONDS_PARAM, "1");
+        var db = new RocksDatabase(dbDir.getAbsolutePath(), true);
+        var map = db.openMap("expiring", new ColumnFamilyConfig(properties), SERIALIZER, null, Durability.ASYNC);
+        db.put(map, "expired", "value");
+        db.putAll(map, Map.of("expired too", "value"));
+        assertThat(db.get(map, "expired", String.class)).isEqualTo("value");
+
+        // when
+        Thread.sleep(1100);
+        db.put(map, "live", "value");
+
+        // then
+        assertThat(db.get(map, "expired", String.class)).isNull();
+        assertThat(db.get(map, List.of("expired", "expired too", "live"), String.class))
+                .isEqualTo(Map.of("live", "value"));
+        assertThat(db.removeExpired()).isEqualTo(2);
+        assertThat(db.removeExpired()).isZero();
+        assertThat(db.get(map, "live", String.class)).isEqualTo("value");
+        db.close();
+
+        var reopened = new RocksDatabase(dbDir.getAbsolutePath(), false);
+        try {
+            reopened.openMap("expiring", new ColumnFamilyConfig(), SERIALIZER, null, Durability.ASYNC);
+            fail("should not turn off TTL of map with entries");
+        } catch (IllegalArgumentException expected) {
+            // ok
+        } finally {
+            reopened.close();
+        }
+    }
+
+    @Test
+    void deletes_expired_entries_of_all_partitions() throws InterruptedException {
+        // given
+        var properties = new Properties();
+        properties.setProperty(RocksDbMapStore.TTL_SECONDS_PARAM, "1");
+        properties.setProperty(RocksDbMapStore.PARTITION_PREFIX_PARAM, "true");
+        var db = new RocksDatabase(dbDir.getAbsolutePath(), true);
+        var map = db.openMap("expiring", new ColumnFamilyConfig(properties), SERIALIZER, new TestPartitioner(),
+                Durability.ASYNC);
+        for (int i = 0; i < 8; i++) {
+            db.put(map, i, "value");
+        }
+
+        // when
+        Thread.sleep(1100);
+        long removed = db.removeExpired();
+
+        // then
+        assertThat(removed).isEqualTo(8);
+        assertThat(db.removeExpired()).isZero();
+        db.close();
+    }
+
+    @Test
+    void iterates_keys_in_chunks() {
+        // given
+        var db = new RocksDatabase(dbDir.getAbsolutePath(), true);
+        var map = defaultMap(db);
+        Map<String, String> entries = new HashMap<>();
+        for (int i = 0; i < 25; i++) {
+            entries.put("key" + i, "value" + i);
+        }
+        db.putAll(map, entries);
+
+        // when
+        List<String> keys = new ArrayList<>();
+        try (var allKeys = db.keys(map, String.class, 10)) {
+            allKeys.forEach(keys::add);
+        }
+        db.close();
+
+        // then
+        assertThat(keys).containsExactlyInAnyOrderElementsOf(entries.keySet());
+    }
+
+    @Test
+    void iterates_keys_in_parallel_ranges() {
+        // given
+        var db = new RocksDatabase(dbDir.getAbsolutePath(), true);
+        var map = defaultMap(db);
+        Map<String, String> entries = new TreeMap<>();
+        for (int i = 0; i < 1000; i++) {
+            entries.put("key" + i, "value" + i);
+        }
+        // sorted shards make SST files with disjoint key ranges to split at
+        db.bulkLoad(map, entries.entrySet().iterator(), 100, 2);
+        db.put(map, "memtable key", "value");
+
+        // when
+        List<String> keys = new ArrayList<>();
+        try (var allKeys = db.parallelKeys(map, String.class, 7, 3)) {
+            allKeys.forEach(keys::add);
+        }
+        db.close();
+
+        // then
+        assertThat(keys).hasSize(1001)
+                .containsAll(entries.keySet())
+                .contains("memtable key");
+    }
+
+    @Test
+    void loads_all_keys_but_scans_only_local_partitions() {
+        // given
+        var db = new RocksDatabase(dbDir.getAbsolutePath(), true);
+        var properties = new Properties();
+        properties.setProperty(RocksDbMapStore.PARTITION_PREFIX_PARAM, "true");
+        var map = db.openMap("partitioned", new ColumnFamilyConfig(properties), SERIALIZER, new TestPartitioner(),
+                Durability.ASYNC);
+        for (int i = 0; i < 40; i++) {
+            db.put(map, i, "value" + i);
+        }
+
+        // when
+        List<Integer> keys = new ArrayList<>();
+        try (var allKeys = db.keys(map, Integer.class, 3)) {
+            allKeys.forEach(keys::add);
+        }
+        List<Integer> parallelKeys = new ArrayList<>();
+        try (var allKeys = db.parallelKeys(map, Integer.class, 3, 2)) {
+            allKeys.forEach(parallelKeys::add);
+        }
+        List<Integer> localKeys = new ArrayList<>();
+        try (var reader = db.entries(map, db.splitLocalRanges(map, 4), Integer.class, String.class)) {
+            while (reader.read(7, entry -> localKeys.add(entry.getKey()))) {
+                // read all entries
+            }
+        }
+        String value = db.get(map, 2, String.class);
+        db.close();
+
+        // then
+        assertThat(keys).hasSize(40);
+        assertThat(parallelKeys).containsExactlyInAnyOrderElementsOf(keys);
+        assertThat(localKeys)
+                .hasSize(20)
+                .allMatch(key -> key % 2 == 1);
+        assertThat(value).isEqualTo("value2");
+        assertThat(ColumnFamilyConfig.load(new File(dbDir, "columnfamily-partitioned.properties")).partitionPrefix())
+                .isTrue();
+    }
+
+    @Test
+    void deletes_in_batch_and_by_range() {
+        // given
+        var db = new RocksDatabase(dbDir.getAbsolutePath(), true);
+        var properties = new Properties();
+        properties.setProperty(RocksDbMapStore.PARTITION_PREFIX_PARAM, "true");
+        var map = db.openMap("partitioned", new ColumnFamilyConfig(properties), SERIALIZER, new TestPartitioner(),
+                Durability.ASYNC);
+        var other = db.openMap("other", new ColumnFamilyConfig(), SERIALIZER, null, Durability.ASYNC);
+        for (int i = 0; i < 40; i++) {
+            db.put(map, i, "value" + i);
+            db.put(other, i, "value" + i);
+        }
+
+        // when
+        db.deleteAll(map, List.of(0, 4, 8));
+        db.deleteRange(map, KeyRange.partition(1));
+        db.deleteRange(other, KeyRange.all());
+        Map<Integer, String> remaining = db.get(map, List.of(0, 1, 2, 3, 4, 5, 12), String.class);
+        Map<Integer, String> remainingInOther = db.get(other, List.of(0, 1, 39), String.class);
+        db.close();
+
+        // then
+        assertThat(remaining).containsOnlyKeys(2, 3, 12);
+        assertThat(remainingInOther).isEmpty();
+    }
+
+    /**
+     * Puts key in partition {@code key % 4}; local member owns partitions 1 and 3.
+     */
+    static class TestPartitioner implements KeyPartitioner {
+        @Override
+        public int partitionId(@Nonnull Object key) {
+            return (Integer) key % 4;
+        }
+
+        @Override
+        public int[] localPartitions() {
+            return new int[] {1, 3};
+        }
+    }
+
+    static RocksMap defaultMap(RocksDatabase db) {
+        return db.openMap(RocksDatabase.DEFAULT_COLUMN_FAMILY, new ColumnFamilyConfig(), SERIALIZER, null,
+                Durability.ASYNC);
+    }
+
     @SuppressWarnings("unchecked")
     static <T> void assertThatValue(RocksDB rocksDB, Object key, T expected) throws RocksDBException {
         byte[] keyBytes = toBytes(key);
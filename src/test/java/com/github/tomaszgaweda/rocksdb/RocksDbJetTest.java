@@ -0,0 +1,110 @@
+package com.github.tomaszgaweda.rocksdb;
+
+import com.hazelcast.config.Config;
+import com.hazelcast.config.MapConfig;
+import com.hazelcast.config.MapStoreConfig;
+import com.hazelcast.core.Hazelcast;
+import com.hazelcast.core.HazelcastInstance;
+import com.hazelcast.jet.pipeline.Pipeline;
+import com.hazelcast.jet.pipeline.Sinks;
+import com.hazelcast.jet.pipeline.test.TestSources;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.stream.IntStream;
+
+import static com.github.tomaszgaweda.rocksdb.RocksDbMapStore.*;
+import static com.hazelcast.jet.Util.entry;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RocksDbJetTest {
+
+    private static final int ENTRIES = 10_000;
+
+    @TempDir
+    Path tempDbDir;
+
+    private HazelcastInstance hazelcast;
+    private Properties properties;
+
+    @BeforeEach
+    void setUp() {
+        properties = new Properties();
+        properties.setProperty(DATABASE_PATH_PARAM, tempDbDir.toFile().getAbsolutePath());
+        properties.setProperty(KEY_CLASS_PARAM, "java.lang.Integer");
+        properties.setProperty(VALUE_CLASS_PARAM, "java.lang.String");
+        properties.setProperty(BULK_LOAD_SHARD_SIZE_PARAM, "3000");
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (hazelcast != null) {
+            hazelcast.shutdown();
+        }
+    }
+
+    @Test
+    void writes_and_reads_maps_in_parallel() {
+        // given
+        start();
+
+        // when
+        write();
+
+        // then
+        assertThat(read()).hasSize(ENTRIES);
+        assertThat(hazelcast.<Integer, String>getMap("TestMap").get(1234)).isEqualTo("value-1234");
+    }
+
+    @Test
+    void bulk_loads_entries_written_by_sink() {
+        // given
+        properties.setProperty(RocksDbJet.SINK_BULK_LOAD_PARAM, "true");
+        start();
+
+        // when
+        write();
+
+        // then
+        assertThat(read()).hasSize(ENTRIES);
+        assertThat(hazelcast.<Integer, String>getMap("TestMap").get(ENTRIES - 1)).isEqualTo("value-" + (ENTRIES - 1));
+    }
+
+    private void start() {
+        var config = new Config();
+        config.getJetConfig().setEnabled(true);
+        var mapStoreConfig = new MapStoreConfig()
+                .setImplementation(new RocksDbMapStore<>())
+                .setProperties(properties)
+                .setEnabled(true)
+                .setInitialLoadMode(MapStoreConfig.InitialLoadMode.LAZY);
+        config.addMapConfig(new MapConfig("TestMap").setMapStoreConfig(mapStoreConfig));
+        hazelcast = Hazelcast.newHazelcastInstance(config);
+    }
+
+    private void write() {
+        List<Map.Entry<Integer, String>> entries = IntStream.range(0, ENTRIES)
+                .mapToObj(i -> entry(i, "value-" + i))
+                .toList();
+        var pipeline = Pipeline.create();
+        pipeline.readFrom(TestSources.items(entries))
+                .writeTo(RocksDbJet.sink("TestMap", properties));
+        hazelcast.getJet().newJob(pipeline).join();
+    }
+
+    private List<Map.Entry<Integer, String>> read() {
+        var pipeline = Pipeline.create();
+        pipeline.readFrom(RocksDbJet.<Integer, String>source("TestMap", properties))
+                .writeTo(Sinks.list("result"));
+        hazelcast.getJet().newJob(pipeline).join();
+        List<Map.Entry<Integer, String>> result = hazelcast.getList("result");
+        assertThat(result).allSatisfy(entry -> assertThat(entry.getValue()).isEqualTo("value-" + entry.getKey()));
+        return List.copyOf(result);
+    }
+}
@@ -5,20 +5,29 @@ import com.hazelcast.config.Config;
 import com.hazelcast.config.MapConfig;
 import com.hazelcast.config.MapStoreConfig;
 import com.hazelcast.core.Hazelcast;
+import com.hazelcast.core.HazelcastInstance;
+import com.hazelcast.internal.metrics.MetricDescriptor;
+import com.hazelcast.internal.metrics.collectors.MetricsCollector;
+import com.hazelcast.internal.serialization.impl.DefaultSerializationServiceBuilder;
 import com.hazelcast.map.IMap;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.io.TempDir;
-import org.rocksdb.Options;
-import org.rocksdb.RocksDB;
-import org.rocksdb.RocksDBException;
+import org.rocksdb.*;
 
 import java.io.File;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 import static com.github.tomaszgaweda.rocksdb.RocksDbMapStore.*;
 import static com.github.tomaszgaweda.rocksdb.SerializationUtils.fromBytes;
 import static com.github.tomaszgaweda.rocksdb.SerializationUtils.toBytes;
+import static java.nio.charset.StandardCharsets.UTF_8;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
 public class RocksDbMapStoreTest {
 
@@ -56,13 +65,45 @@ public class RocksDbMapStoreTest {
         Thread.sleep(1000); // wait until MapStores are disposed.
 
         // then
-        try (var rocksDB = RocksDB.open(new Options().setCreateIfMissing(false), tempDbDir.toFile().getAbsolutePath())) {
-            byte[] bytes = rocksDB.get(toBytes("test"));
+        byte[] bytes = readRaw(tempDbDir.toFile(), "TestMap", toBytes("test"));
 
-            assertThat(bytes).isNotNull();
-            String result = fromBytes(bytes, String.class);
-            assertThat(result).isEqualTo("hello");
-        }
+        assertThat(bytes).isNotNull();
+        String result = fromBytes(bytes, String.class);
+        assertThat(result).isEqualTo("hello");
+    }
+
+    @Test
+    void uses_hazelcast_serializer() throws RocksDBException, InterruptedException {
+        //given
+        var config = new Config();
+        var mapConfig = new MapConfig("TestMap");
+        var mapStoreConfig = new MapStoreConfig()
+                .setClassName(RocksDbMapStore.class.getName())
+                .setProperty(DATABASE_PATH_PARAM, tempDbDir.toFile().getAbsolutePath())
+                .setProperty(VALUE_CLASS_PARAM, "java.lang.String")
+                .setProperty(SERIALIZER_PARAM, "hazelcast")
+                .setEnabled(true)
+                .setWriteBatchSize(1)
+                .setWriteDelaySeconds(0);
+
+        mapConfig.setMapStoreConfig(mapStoreConfig);
+        config.addMapConfig(mapConfig);
+        var hazelcast = Hazelcast.newHazelcastInstance(config);
+
+        // when
+        IMap<String, String> testMap = hazelcast.getMap("TestMap");
+        testMap.put("test", "hello");
+
+        hazelcast.shutdown();
+
+        Thread.sleep(1000); // wait until MapStores are disposed.
+
+        // then
+        var serializer = new HazelcastSerializer(new DefaultSerializationServiceBuilder().build());
+        byte[] bytes = readRaw(tempDbDir.toFile(), "TestMap", serializer.toBytes("test"));
+
+        assertThat(bytes).isNotNull();
+        assertThat(serializer.fromBytes(bytes, String.class)).isEqualTo("hello");
     }
 
     @Test
@@ -89,13 +130,11 @@ public class RocksDbMapStoreTest {
         Thread.sleep(1000); // wait until MapStores are disposed.
 
         // then
-        try (var rocksDB = RocksDB.open(new Options().setCreateIfMissing(false), tempDbDir.toFile().getAbsolutePath())) {
-            byte[] bytes = rocksDB.get(toBytes("test2"));
+        byte[] bytes = readRaw(tempDbDir.toFile(), "TestMap", toBytes("test2"));
 
-            assertThat(bytes).isNotNull();
-            String result = fromBytes(bytes, String.class);
-            assertThat(result).isEqualTo("hello2");
-        }
+        assertThat(bytes).isNotNull();
+        String result = fromBytes(bytes, String.class);
+        assertThat(result).isEqualTo("hello2");
     }
 
     @Test
@@ -141,6 +180,44 @@ public class RocksDbMapStoreTest {
         }
     }
 
+    @Test
+    void loads_all_keys_on_start() throws RocksDBException {
+        //given
+        try (var options = new Options().setCreateIfMissing(true);
+             var rocksDB = RocksDB.open(options, tempDbDir.toFile().getAbsolutePath());
+             var columnFamily = rocksDB.createColumnFamily(new ColumnFamilyDescriptor("TestMap".getBytes(UTF_8)))) {
+            for (int i = 0; i < 100; i++) {
+                rocksDB.put(columnFamily, toBytes("key" + i), toBytes("value" + i));
+            }
+        }
+
+        var config = new Config();
+        var mapConfig = new MapConfig("TestMap");
+        var mapStoreConfig = new MapStoreConfig()
+                .setClassName(RocksDbMapStore.class.getName())
+                .setProperty(DATABASE_PATH_PARAM, tempDbDir.toFile().getAbsolutePath())
+                .setProperty(VALUE_CLASS_PARAM, "java.lang.String")
+                .setProperty(KEY_CLASS_PARAM, "java.lang.String")
+                .setProperty(KEY_LOAD_CHUNK_SIZE_PARAM, "7")
+                .setEnabled(true)
+                .setInitialLoadMode(MapStoreConfig.InitialLoadMode.EAGER);
+
+        mapConfig.setMapStoreConfig(mapStoreConfig);
+        config.addMapConfig(mapConfig);
+        var hazelcast = Hazelcast.newHazelcastInstance(config);
+
+        // when
+        IMap<String, String> testMap = hazelcast.getMap("TestMap");
+        int size = testMap.size();
+        String value = testMap.get("key42");
+
+        hazelcast.shutdown();
+
+        // then
+        assertThat(size).isEqualTo(100);
+        assertThat(value).isEqualTo("value42");
+    }
+
     @Test
     void multiple_map_access() throws RocksDBException, InterruptedException {
         //given
@@ -182,20 +259,270 @@ public class RocksDbMapStoreTest {
         Thread.sleep(1500); // wait until MapStores are disposed.
 
         // then
-        try (var rocksDB = RocksDB.open(new Options().setCreateIfMissing(false), rocksDbDir.getAbsolutePath())) {
-            byte[] first = rocksDB.get(toBytes("test-multi-1"));
-            byte[] second = rocksDB.get(toBytes("test-multi-2"));
-            byte[] third = rocksDB.get(toBytes("test-multi-3"));
+        byte[] first = readRaw(rocksDbDir, "TestMap1", toBytes("test-multi-1"));
+        byte[] second = readRaw(rocksDbDir, "TestMap2", toBytes("test-multi-2"));
+        byte[] third = readRaw(rocksDbDir, "TestMap3", toBytes("test-multi-3"));
+        byte[] fromOtherMap = readRaw(rocksDbDir, "TestMap1", toBytes("test-multi-2"));
+
+        assertThat(first)
+                .overridingErrorMessage("first value should not be removed")
+                .isNotNull();
+        assertThat(second)
+                .overridingErrorMessage("second value should not be removed")
+                .isNotNull();
+        assertThat(third)
+                .overridingErrorMessage("third value should not be removed")
+                .isNotNull();
+        assertThat(fromOtherMap)
+                .overridingErrorMessage("maps should not share keys")
+                .isNull();
+    }
 
-            assertThat(first)
-                    .overridingErrorMessage("first value should not be removed")
-                    .isNotNull();
-            assertThat(second)
-                    .overridingErrorMessage("second value should not be removed")
-                    .isNotNull();
-            assertThat(third)
-                    .overridingErrorMessage("third value should not be removed")
-                    .isNotNull();
+    @Test
+    void publishes_metrics() {
+        //given
+        var config = new Config();
+        var mapConfig = new MapConfig("TestMap");
+        var mapStoreConfig = new MapStoreConfig()
+                .setImplementation(new RocksDbMapStore<>(tempDbDir.toFile(), true, String.class))
+                .setEnabled(true)
+                .setWriteBatchSize(1)
+                .setWriteDelaySeconds(0);
+
+        mapConfig.setMapStoreConfig(mapStoreConfig);
+        config.addMapConfig(mapConfig);
+        var hazelcast = Hazelcast.newHazelcastInstance(config);
+
+        // when
+        IMap<String, String> testMap = hazelcast.getMap("TestMap");
+        testMap.put("key", "value");
+        testMap.evictAll();
+        testMap.get("key");
+
+        Map<String, Number> metrics = new HashMap<>();
+        DatabaseMetrics.registryOf(hazelcast).collect(new MetricsCollector() {
+            @Override
+            public void collectLong(MetricDescriptor descriptor, long value) {
+                metrics.put(descriptor.metricString(), value);
+            }
+
+            @Override
+            public void collectDouble(MetricDescriptor descriptor, double value) {
+                metrics.put(descriptor.metricString(), value);
+            }
+
+            @Override
+            public void collectException(MetricDescriptor descriptor, Exception e) {
+            }
+
+            @Override
+            public void collectNoValue(MetricDescriptor descriptor) {
+            }
+        });
+        hazelcast.shutdown();
+
+        // then
+        assertThat(metrics).containsEntry("[name=TestMap,unit=count,metric=rocksdb.map.count,operation=store]", 1L);
+        // put loads the old value too
+        assertThat(metrics.get("[name=TestMap,unit=count,metric=rocksdb.map.count,operation=load]"))
+                .isEqualTo(2L);
+        assertThat(metrics).containsKey("[name=TestMap,unit=ns,metric=rocksdb.map.latencyP99,operation=store]");
+        assertThat(metrics).containsKey("[path=" + tempDbDir.toFile().getAbsolutePath()
+                + ",unit=bytes,metric=rocksdb.database.memtableBytes]");
+    }
+
+    @Test
+    void refuses_to_clear_shared_column_family() throws RocksDBException, InterruptedException {
+        //given
+        try (var rocksDB = RocksDB.open(new Options().setCreateIfMissing(true), tempDbDir.toFile().getAbsolutePath())) {
+            rocksDB.put(toBytes("other"), toBytes("entry of another map"));
+        }
+        var store = new RocksDbMapStore<String, String>(tempDbDir.toFile(), false, String.class);
+        var config = new Config().addMapConfig(new MapConfig("TestMap").setMapStoreConfig(new MapStoreConfig()
+                .setImplementation(store)
+                .setEnabled(true)
+                .setWriteDelaySeconds(0)));
+        var hazelcast = Hazelcast.newHazelcastInstance(config);
+
+        // when
+        IMap<String, String> testMap = hazelcast.getMap("TestMap");
+        testMap.put("key", "value");
+
+        // then
+        assertThatThrownBy(store::clear).isInstanceOf(IllegalStateException.class);
+        assertThat(store.load("other")).isEqualTo("entry of another map");
+        hazelcast.shutdown();
+        Thread.sleep(1000); // wait until MapStores are disposed.
+    }
+
+    @Test
+    void hands_over_partitions_between_members() throws RocksDBException, InterruptedException {
+        //given
+        File firstDir = new File(tempDbDir.toFile(), "first");
+        File secondDir = new File(tempDbDir.toFile(), "second");
+        var first = Hazelcast.newHazelcastInstance(handoffConfig(firstDir));
+        IMap<Integer, String> testMap = first.getMap("TestMap");
+        for (int i = 0; i < 100; i++) {
+            testMap.put(i, "value" + i);
+        }
+
+        // when
+        var second = Hazelcast.newHazelcastInstance(handoffConfig(secondDir));
+        waitForMigrations(first);
+        testMap.evictAll();
+        Map<Integer, String> loadedFromBoth = new HashMap<>();
+        for (int i = 0; i < 100; i++) {
+            loadedFromBoth.put(i, testMap.get(i));
+        }
+        second.shutdown();
+        waitForMigrations(first);
+        testMap.evictAll();
+        Map<Integer, String> loadedFromFirst = new HashMap<>();
+        for (int i = 0; i < 100; i++) {
+            loadedFromFirst.put(i, testMap.get(i));
+        }
+        first.shutdown();
+
+        // then
+        assertThat(loadedFromBoth).hasSize(100).containsEntry(42, "value42").doesNotContainValue(null);
+        assertThat(loadedFromFirst).isEqualTo(loadedFromBoth);
+        assertThat(countRawWhenClosed(firstDir, "TestMap")).isEqualTo(100);
+        assertThat(countRawWhenClosed(secondDir, "TestMap"))
+                .overridingErrorMessage("partitions should be deleted from the member that no longer owns them")
+                .isZero();
+    }
+
+    @Test
+    void keeps_partitions_of_members_sharing_database() throws RocksDBException, InterruptedException {
+        //given
+        File sharedDir = new File(tempDbDir.toFile(), "shared");
+        var first = Hazelcast.newHazelcastInstance(handoffConfig(sharedDir));
+        IMap<Integer, String> testMap = first.getMap("TestMap");
+        for (int i = 0; i < 100; i++) {
+            testMap.put(i, "value" + i);
+        }
+
+        // when
+        var second = Hazelcast.newHazelcastInstance(handoffConfig(sharedDir));
+        waitForMigrations(first);
+        testMap.evictAll();
+        Map<Integer, String> loadedFromBoth = new HashMap<>();
+        for (int i = 0; i < 100; i++) {
+            loadedFromBoth.put(i, testMap.get(i));
+        }
+        second.shutdown();
+        waitForMigrations(first);
+        testMap.evictAll();
+        Map<Integer, String> loadedFromFirst = new HashMap<>();
+        for (int i = 0; i < 100; i++) {
+            loadedFromFirst.put(i, testMap.get(i));
+        }
+        first.shutdown();
+
+        // then
+        assertThat(loadedFromBoth).hasSize(100).containsEntry(42, "value42").doesNotContainValue(null);
+        assertThat(loadedFromFirst).isEqualTo(loadedFromBoth);
+        assertThat(countRawWhenClosed(sharedDir, "TestMap")).isEqualTo(100);
+    }
+
+    private static Config handoffConfig(File dbDir) {
+        var config = PartitionHandoffService.register(new Config().setClusterName("handoff"));
+        config.getNetworkConfig().getJoin().getMulticastConfig().setEnabled(false);
+        config.getNetworkConfig().getJoin().getTcpIpConfig().setEnabled(true).addMember("127.0.0.1");
+        var mapStoreConfig = new MapStoreConfig()
+                .setClassName(RocksDbMapStore.class.getName())
+                .setProperty(DATABASE_PATH_PARAM, dbDir.getAbsolutePath())
+                .setProperty(DATABASE_AUTOCREATION_PARAM, "true")
+                .setProperty(KEY_CLASS_PARAM, "java.lang.Integer")
+                .setProperty(VALUE_CLASS_PARAM, "java.lang.String")
+                .setProperty(PARTITION_PREFIX_PARAM, "true")
+                .setEnabled(true)
+                .setWriteDelaySeconds(0);
+        return config.addMapConfig(new MapConfig("TestMap").setMapStoreConfig(mapStoreConfig));
+    }
+
+    private static void waitForMigrations(HazelcastInstance hazelcast) throws InterruptedException {
+        while (!hazelcast.getPartitionService().isClusterSafe()) {
+            Thread.sleep(100);
+        }
+    }
+
+    /**
+     * Counts keys of the column family, bypassing the connector, once the database is closed by disposed MapStores.
+     */
+    private static long countRawWhenClosed(File dbDir, String columnFamily)
+            throws RocksDBException, InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+        while (true) {
+            try {
+                return countRaw(dbDir, columnFamily);
+            } catch (RocksDBException e) {
+                // the database is locked until the last MapStore using it is disposed
+                if (System.nanoTime() > deadline) {
+                    throw e;
+                }
+                Thread.sleep(100);
+            }
+        }
+    }
+
+    /**
+     * Counts keys of the column family, bypassing the connector.
+     */
+    static long countRaw(File dbDir, String columnFamily) throws RocksDBException {
+        String path = dbDir.getAbsolutePath();
+        List<ColumnFamilyDescriptor> descriptors;
+        try (var options = new Options()) {
+            descriptors = RocksDB.listColumnFamilies(options, path).stream()
+                    .map(ColumnFamilyDescriptor::new)
+                    .toList();
+        }
+        List<ColumnFamilyHandle> handles = new ArrayList<>();
+        try (var options = new DBOptions();
+             var rocksDB = RocksDB.open(options, path, descriptors, handles)) {
+            try {
+                for (int i = 0; i < descriptors.size(); i++) {
+                    if (columnFamily.equals(new String(descriptors.get(i).getName(), UTF_8))) {
+                        long count = 0;
+                        try (var iterator = rocksDB.newIterator(handles.get(i))) {
+                            for (iterator.seekToFirst(); iterator.isValid(); iterator.next()) {
+                                count++;
+                            }
+                        }
+                        return count;
+                    }
+                }
+                return 0;
+            } finally {
+                handles.forEach(ColumnFamilyHandle::close);
+            }
+        }
+    }
+
+    /**
+     * Reads value of given key directly from the column family, bypassing the connector.
+     */
+    static byte[] readRaw(File dbDir, String columnFamily, byte[] key) throws RocksDBException {
+        String path = dbDir.getAbsolutePath();
+        List<ColumnFamilyDescriptor> descriptors;
+        try (var options = new Options()) {
+            descriptors = RocksDB.listColumnFamilies(options, path).stream()
+                    .map(ColumnFamilyDescriptor::new)
+                    .toList();
+        }
+        List<ColumnFamilyHandle> handles = new ArrayList<>();
+        try (var options = new DBOptions();
+             var rocksDB = RocksDB.open(options, path, descriptors, handles)) {
+            try {
+                for (int i = 0; i < descriptors.size(); i++) {
+                    if (columnFamily.equals(new String(descriptors.get(i).getName(), UTF_8))) {
+                        return rocksDB.get(handles.get(i), key);
+                    }
+                }
+                return null;
+            } finally {
+                handles.forEach(ColumnFamilyHandle::close);
+            }
         }
     }
 
@@ -0,0 +1,69 @@
+package com.github.tomaszgaweda.rocksdb;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ValueCacheTest {
+
+    @Test
+    void evicts_entries_not_read_recently() {
+        // given
+        var cache = new ValueCache<Integer, String>(2);
+        cache.put(1, "a");
+        cache.put(2, "b");
+        cache.get(1);
+
+        // when
+        cache.put(3, "c");
+
+        // then
+        assertThat(cache.size()).isEqualTo(2);
+        assertThat(cache.get(1)).isEqualTo("a");
+        assertThat(cache.get(2)).isNull();
+        assertThat(cache.get(3)).isEqualTo("c");
+        assertThat(cache.hits()).isEqualTo(3);
+        assertThat(cache.misses()).isEqualTo(1);
+    }
+
+    @Test
+    void updates_cached_values_in_place() {
+        // given
+        var cache = new ValueCache<Integer, String>(2);
+        cache.put(1, "a");
+        cache.put(2, "b");
+
+        // when
+        for (int i = 0; i < 10; i++) {
+            cache.put(1, "a" + i);
+        }
+
+        // then
+        assertThat(cache.size()).isEqualTo(2);
+        assertThat(cache.get(1)).isEqualTo("a9");
+        assertThat(cache.get(2)).isEqualTo("b");
+    }
+
+    @Test
+    void does_not_fill_values_read_before_a_write_of_the_key() {
+        // given
+        var cache = new ValueCache<Integer, String>(10);
+        var overwritten = cache.reserve(1);
+        var deleted = cache.reserve(2);
+        var notWritten = cache.reserve(3);
+        cache.put(1, "new");
+        cache.invalidate(2);
+        cache.put(4, "other key");
+
+        // when
+        cache.fill(1, "old", overwritten);
+        cache.fill(2, "deleted", deleted);
+        cache.fill(3, "c", notWritten);
+
+        // then
+        assertThat(cache.get(1)).isEqualTo("new");
+        assertThat(cache.get(2)).isNull();
+        assertThat(cache.get(3)).isEqualTo("c");
+        assertThat(cache.reserve(3)).isNull();
+    }
+}
@@ -0,0 +1,55 @@
+package com.github.tomaszgaweda.rocksdb;
+
+import org.junit.jupiter.api.Test;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class WriteDeduplicatorTest {
+
+    @Test
+    void recognizes_only_the_last_recorded_value_of_a_key() {
+        // given
+        var deduplicator = new WriteDeduplicator(1000);
+        long key = WriteDeduplicator.keyHash("key".getBytes(UTF_8));
+        long first = WriteDeduplicator.fingerprint(key, "first".getBytes(UTF_8));
+        long second = WriteDeduplicator.fingerprint(key, "second".getBytes(UTF_8));
+        long otherKey = WriteDeduplicator.keyHash("other".getBytes(UTF_8));
+
+        // when
+        deduplicator.record(key, first);
+        deduplicator.record(key, second);
+
+        // then
+        assertThat(deduplicator.capacity()).isEqualTo(1024);
+        assertThat(deduplicator.isStored(key, first)).isFalse();
+        assertThat(deduplicator.isStored(key, second)).isTrue();
+        assertThat(deduplicator.isStored(otherKey, WriteDeduplicator.fingerprint(otherKey, "second".getBytes(UTF_8))))
+                .isFalse();
+        assertThat(deduplicator.droppedWrites()).isEqualTo(1);
+    }
+
+    @Test
+    void forgets_removed_and_cleared_keys() {
+        // given
+        var deduplicator = new WriteDeduplicator(16);
+        long first = WriteDeduplicator.keyHash("first".getBytes(UTF_8));
+        long second = WriteDeduplicator.keyHash("second".getBytes(UTF_8));
+        long firstValue = WriteDeduplicator.fingerprint(first, "value".getBytes(UTF_8));
+        long secondValue = WriteDeduplicator.fingerprint(second, "value".getBytes(UTF_8));
+        deduplicator.record(first, firstValue);
+        deduplicator.record(second, secondValue);
+
+        // when
+        deduplicator.remove(first);
+
+        // then
+        assertThat(deduplicator.isStored(first, firstValue)).isFalse();
+
+        // when
+        deduplicator.clear();
+
+        // then
+        assertThat(deduplicator.isStored(second, secondValue)).isFalse();
+    }
+}